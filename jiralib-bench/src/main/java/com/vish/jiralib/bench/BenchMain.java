@@ -0,0 +1,28 @@
+package com.vish.jiralib.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * entry point of the benchmarks jar. Takes the usual JMH command line and always adds the GC profiler
+ * (allocation rate, {@code gc.alloc.rate.norm} in bytes per operation) and the {@link RequestCountProfiler}.
+ * <pre>
+ * java -jar target/benchmarks.jar                                  (everything, default parameters)
+ * java -jar target/benchmarks.jar search -p latencyMillis=0,20    (search only, two latencies)
+ * </pre>
+ * @author vish
+ *
+ */
+public class BenchMain {
+	public static void main(String[] args) throws Exception {
+		Options opts = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.addProfiler(RequestCountProfiler.class)
+				.build();
+		new Runner(opts).run();
+	}
+}
@@ -0,0 +1,141 @@
+package com.vish.jiralib.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.vish.jiralib.BulkReport;
+import com.vish.jiralib.IssueResultSet;
+import com.vish.jiralib.Jira;
+
+/**
+ * throughput and latency of the library's request patterns against a {@link StubJiraServer}.
+ * <p>
+ * Sample-time mode reports the latency distribution per operation; run through {@link BenchMain} for
+ * allocation rate and REST requests per operation as well. The stub's latency and payload sizes are JMH
+ * parameters, e.g. {@code -p latencyMillis=0,5,50 -p descriptionBytes=100,10000}.
+ * @author vish
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JiraBenchmark {
+	/** delay of every stub response. */
+	@Param({"5"})
+	public int latencyMillis;
+
+	/** issues in the project; search and bulk transition walk all of them, get and link pick at random. */
+	@Param({"200"})
+	public int issues;
+
+	@Param({"1000"})
+	public int descriptionBytes;
+
+	@Param({"5"})
+	public int commentsPerIssue;
+
+	private StubJiraServer server;
+	private Jira jira;
+	private Jira uncachedJira;
+	private PrintStream stdout;
+
+	@Setup(Level.Trial)
+	public void start() throws Exception {
+		server = new StubJiraServer(issues, descriptionBytes, commentsPerIssue, latencyMillis).start();
+		jira = new Jira(server.getUrl(), "bench", "bench", StubJiraServer.PROJECT, false);
+		uncachedJira = new Jira(server.getUrl(), "bench", "bench", StubJiraServer.PROJECT, false);
+		uncachedJira.getIssueCache().setMaxSize(0);
+		//the library prints every transition, link and comment; keep that out of the measurements
+		stdout = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {}
+			@Override
+			public void write(byte[] b, int off, int len) {}
+		}));
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() throws Exception {
+		System.setOut(stdout);
+		jira.close();
+		uncachedJira.close();
+		server.stop();
+	}
+
+	private String randomKey() {
+		return StubJiraServer.PROJECT + "-" + (1 + ThreadLocalRandom.current().nextInt(issues));
+	}
+
+	/** walk every page of a search. */
+	@Benchmark
+	public void search(Blackhole bh) {
+		for (Issue issue : jira.searchIssues("project = " + StubJiraServer.PROJECT)) {
+			bh.consume(issue);
+		}
+	}
+
+	/** all matching issues as a map of string arrays. */
+	@Benchmark
+	public Map<String, String[]> getIssuesByJQL() throws Exception {
+		return jira.getIssuesByJQL("project = " + StubJiraServer.PROJECT);
+	}
+
+	/** the same fields held column by column, for comparing allocation with {@link #getIssuesByJQL()}. */
+	@Benchmark
+	public IssueResultSet getIssueResultSet() throws Exception {
+		return jira.getIssueResultSet("project = " + StubJiraServer.PROJECT, "summary", "description", "status");
+	}
+
+	/** get a random issue through the issue cache. */
+	@Benchmark
+	public Map<String, String> getIssue() throws Exception {
+		return jira.getIssueByKey(randomKey());
+	}
+
+	/** get a random issue with the issue cache disabled: the cost of every cache miss. */
+	@Benchmark
+	public Map<String, String> getIssueUncached() throws Exception {
+		return uncachedJira.getIssueByKey(randomKey());
+	}
+
+	/** transition every issue of the project. The stub keeps them open, so each invocation does the full run. */
+	@Benchmark
+	public BulkReport bulkTransition() throws Exception {
+		return jira.bulkTransitionIssuesByJQL("project = " + StubJiraServer.PROJECT, StubJiraServer.TRANSITION);
+	}
+
+	/** link two random issues, with the comment that comes with every link. */
+	@Benchmark
+	public void link() throws Exception {
+		jira.linkIssueToIssue(randomKey(), randomKey(), StubJiraServer.LINK_TYPE, "linked by benchmark");
+	}
+
+	/** comment on a random issue. */
+	@Benchmark
+	public void comment() throws Exception {
+		jira.commentOnIssue(randomKey(), "benchmark comment");
+	}
+}
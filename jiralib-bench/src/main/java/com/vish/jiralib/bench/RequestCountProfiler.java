@@ -0,0 +1,61 @@
+package com.vish.jiralib.bench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+import org.openjdk.jmh.runner.Defaults;
+
+/**
+ * JMH profiler reporting REST requests per benchmark operation, as counted by the {@link StubJiraServer}s
+ * of the benchmark JVM: {@code stub.requests.norm} in total and {@code stub.requests.norm:<endpoint>} per endpoint.
+ * These are the numbers to watch for caching and batching changes.
+ * <pre>
+ * java -jar target/benchmarks.jar -prof com.vish.jiralib.bench.RequestCountProfiler
+ * </pre>
+ * @author vish
+ *
+ */
+public class RequestCountProfiler implements InternalProfiler {
+	private Map<String, Long> before;
+
+	@Override
+	public String getDescription() {
+		return "REST requests per operation, counted by the stub JIRA server";
+	}
+
+	@Override
+	public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+		before = StubJiraServer.requestCounts();
+	}
+
+	@Override
+	public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+			IterationResult result) {
+		Map<String, Long> after = StubJiraServer.requestCounts();
+		long ops = result.getMetadata().getAllOps();
+		List<Result> retVal = new ArrayList<Result>();
+		long total = 0;
+		for (Map.Entry<String, Long> e : after.entrySet()) {
+			Long b = before.get(e.getKey());
+			long delta = e.getValue() - (b == null ? 0 : b);
+			total += delta;
+			retVal.add(new ScalarResult(Defaults.PREFIX + "stub.requests.norm:" + e.getKey(), norm(delta, ops),
+					"requests/op", AggregationPolicy.AVG));
+		}
+		retVal.add(new ScalarResult(Defaults.PREFIX + "stub.requests.norm", norm(total, ops), "requests/op", AggregationPolicy.AVG));
+		return retVal;
+	}
+
+	private static double norm(long requests, long ops) {
+		return ops == 0 ? Double.NaN : (double) requests / ops;
+	}
+}
@@ -0,0 +1,301 @@
+package com.vish.jiralib.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * in-process stand-in for the JIRA REST endpoints jiralib uses, so benchmarks run offline and repeatably.
+ * <p>
+ * The server holds one project ({@link #PROJECT}) with issues {@code BENCH-1 .. BENCH-<issues>}. Every issue is
+ * "Open", has one transition "Done", no links, {@code descriptionBytes} of description and {@code commentsPerIssue}
+ * comments. Writes (transitions, links, comments) are accepted and forgotten, so every benchmark invocation sees
+ * the same data. Searches return all issues whatever the JQL. Every request is delayed by {@code latencyMillis}.
+ * <p>
+ * Issue documents are rendered once at start-up, so the server adds little allocation of its own to the
+ * measurements. Requests are counted per endpoint, see {@link #requestCounts()}.
+ * @author vish
+ *
+ */
+public class StubJiraServer {
+	public static final String PROJECT = "BENCH";
+	public static final String TRANSITION = "Done";
+	public static final String LINK_TYPE = "Relates";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String API = "/rest/api/2/";
+	private static final String DATE = "2016-01-01T00:00:00.000+0000";
+	private static final Pattern ISSUE_PATH = Pattern.compile("issue/(?:" + PROJECT + "-(\\d+)|(\\d+))(/transitions|/comment)?");
+	private static final Pattern PAGE_PARAM = Pattern.compile("\"?(startAt|maxResults)\"?[=:]\\s*(\\d+)");
+
+	/** requests to all stub servers of this JVM, by endpoint. Read by {@link RequestCountProfiler}. */
+	private static final ConcurrentMap<String, AtomicLong> REQUESTS = new ConcurrentHashMap<String, AtomicLong>();
+
+	private final int latencyMillis;
+	private final byte[][] issueJson;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final String url;
+
+	/**
+	 * @param issues number of issues in the project.
+	 * @param descriptionBytes length of each issue description.
+	 * @param commentsPerIssue comments embedded in each issue document.
+	 * @param latencyMillis delay before every response, to model the network and server.
+	 * @throws IOException
+	 */
+	public StubJiraServer(int issues, int descriptionBytes, int commentsPerIssue, int latencyMillis) throws IOException {
+		this.latencyMillis = latencyMillis;
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.url = "http://127.0.0.1:" + server.getAddress().getPort();
+		this.issueJson = new byte[issues][];
+		for (int i = 0; i < issues; i++) {
+			issueJson[i] = renderIssue(i + 1, descriptionBytes, commentsPerIssue).getBytes(UTF8);
+		}
+		//requests sleep for the latency, so they need a thread each
+		this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "stub-jira");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		server.setExecutor(executor);
+		server.createContext(API, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					serve(exchange);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+	}
+
+	public StubJiraServer start() {
+		server.start();
+		return this;
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/** @return base url to pass to {@link com.vish.jiralib.Jira}. */
+	public String getUrl() {
+		return url;
+	}
+
+	public int getIssueCount() {
+		return issueJson.length;
+	}
+
+	/** @return total requests served by stub servers in this JVM. */
+	public static long requestCount() {
+		long retVal = 0;
+		for (AtomicLong l : REQUESTS.values()) retVal += l.get();
+		return retVal;
+	}
+
+	/** @return requests served by stub servers in this JVM, by endpoint e.g. "GET search". */
+	public static Map<String, Long> requestCounts() {
+		Map<String, Long> retVal = new TreeMap<String, Long>();
+		for (Map.Entry<String, AtomicLong> e : REQUESTS.entrySet()) retVal.put(e.getKey(), e.getValue().get());
+		return retVal;
+	}
+
+	private static void count(String endpoint) {
+		AtomicLong l = REQUESTS.get(endpoint);
+		if (l == null) {
+			REQUESTS.putIfAbsent(endpoint, new AtomicLong());
+			l = REQUESTS.get(endpoint);
+		}
+		l.incrementAndGet();
+	}
+
+	private void serve(HttpExchange exchange) throws IOException {
+		String method = exchange.getRequestMethod();
+		String path = exchange.getRequestURI().getPath().substring(API.length());
+		String body = read(exchange.getRequestBody());
+		if (latencyMillis > 0) {
+			try {
+				Thread.sleep(latencyMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+
+		if (path.equals("search")) {
+			//JRJC sends long JQL as a POST with the paging in the body
+			String params = "GET".equals(method) ? exchange.getRequestURI().getRawQuery() : body;
+			count(method + " search");
+			search(exchange, params);
+			return;
+		}
+		if (path.equals("project/" + PROJECT)) {
+			count("GET project");
+			send(exchange, 200, project());
+			return;
+		}
+		if (path.equals("issueLinkType")) {
+			count("GET issueLinkType");
+			send(exchange, 200, "{\"issueLinkTypes\":[{\"id\":\"10000\",\"name\":\"" + LINK_TYPE + "\",\"inward\":\"relates to\","
+					+ "\"outward\":\"relates to\",\"self\":\"" + url + API + "issueLinkType/10000\"}]}");
+			return;
+		}
+		if (path.equals("issueLink") && "POST".equals(method)) {
+			count("POST issueLink");
+			send(exchange, 201, "");
+			return;
+		}
+		Matcher m = ISSUE_PATH.matcher(path);
+		if (m.matches()) {
+			//issues are addressed by key, or by id (10000 + n) through the self links
+			int n = m.group(1) != null ? Integer.parseInt(m.group(1)) : Integer.parseInt(m.group(2)) - 10000;
+			String sub = m.group(3);
+			if (n < 1 || n > issueJson.length) {
+				count(method + " issue" + (sub == null ? "" : sub));
+				send(exchange, 404, "{\"errorMessages\":[\"Issue Does Not Exist\"],\"errors\":{}}");
+			} else if (sub == null) {
+				count("GET issue");
+				send(exchange, 200, issueJson[n - 1]);
+			} else if (sub.equals("/transitions")) {
+				count(method + " transitions");
+				if ("GET".equals(method)) send(exchange, 200, transitions());
+				else send(exchange, 204, "");
+			} else {
+				count("POST comment");
+				send(exchange, 201, comment(n, 1));
+			}
+			return;
+		}
+		count(method + " other");
+		send(exchange, 404, "{\"errorMessages\":[\"no stub for " + method + " " + path + "\"],\"errors\":{}}");
+	}
+
+	private void search(HttpExchange exchange, String params) throws IOException {
+		int startAt = 0, maxResults = 50;
+		if (params != null) {
+			Matcher m = PAGE_PARAM.matcher(URLDecoder.decode(params, "UTF-8"));
+			while (m.find()) {
+				if (m.group(1).equals("startAt")) startAt = Integer.parseInt(m.group(2));
+				else maxResults = Integer.parseInt(m.group(2));
+			}
+		}
+		int end = Math.min(issueJson.length, startAt + maxResults);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, 0);
+		OutputStream out = exchange.getResponseBody();
+		out.write(("{\"expand\":\"names,schema\",\"startAt\":" + startAt + ",\"maxResults\":" + maxResults
+				+ ",\"total\":" + issueJson.length + ",\"issues\":[").getBytes(UTF8));
+		for (int i = startAt; i < end; i++) {
+			if (i > startAt) out.write(',');
+			out.write(issueJson[i]);
+		}
+		out.write("]}".getBytes(UTF8));
+		out.close();
+	}
+
+	private String project() {
+		return "{\"self\":\"" + url + API + "project/10000\",\"id\":\"10000\",\"key\":\"" + PROJECT + "\",\"name\":\"Benchmark\","
+				+ "\"description\":\"\",\"lead\":" + user("admin") + ",\"versions\":[],\"roles\":{},"
+				+ "\"components\":[{\"self\":\"" + url + API + "component/10000\",\"id\":\"10000\",\"name\":\"Core\"}],"
+				+ "\"issueTypes\":[" + issueType() + "]}";
+	}
+
+	private String issueType() {
+		return "{\"self\":\"" + url + API + "issuetype/1\",\"id\":\"1\",\"name\":\"Bug\",\"description\":\"\","
+				+ "\"iconUrl\":\"" + url + "/images/bug.png\",\"subtask\":false}";
+	}
+
+	private String status(String id, String name) {
+		return "{\"self\":\"" + url + API + "status/" + id + "\",\"id\":\"" + id + "\",\"name\":\"" + name + "\","
+				+ "\"description\":\"\",\"iconUrl\":\"" + url + "/images/status.png\"}";
+	}
+
+	private String user(String name) {
+		return "{\"self\":\"" + url + API + "user?username=" + name + "\",\"name\":\"" + name + "\",\"displayName\":\"" + name + "\"}";
+	}
+
+	private String transitions() {
+		return "{\"expand\":\"transitions\",\"transitions\":[{\"id\":\"31\",\"name\":\"" + TRANSITION + "\","
+				+ "\"to\":" + status("10001", TRANSITION) + ",\"fields\":{}}]}";
+	}
+
+	private String comment(int issue, int id) {
+		return "{\"self\":\"" + url + API + "issue/" + (10000 + issue) + "/comment/" + id + "\",\"id\":\"" + id + "\","
+				+ "\"author\":" + user("admin") + ",\"body\":\"benchmark comment " + id + "\","
+				+ "\"updateAuthor\":" + user("admin") + ",\"created\":\"" + DATE + "\",\"updated\":\"" + DATE + "\"}";
+	}
+
+	private String renderIssue(int n, int descriptionBytes, int comments) {
+		StringBuilder description = new StringBuilder(descriptionBytes);
+		while (description.length() < descriptionBytes) description.append("lorem ipsum ");
+		description.setLength(descriptionBytes);
+		StringBuilder commentList = new StringBuilder();
+		for (int i = 1; i <= comments; i++) {
+			if (i > 1) commentList.append(',');
+			commentList.append(comment(n, i));
+		}
+		String id = String.valueOf(10000 + n);
+		return "{\"expand\":\"renderedFields,names,schema,transitions,operations,editmeta,changelog\",\"id\":\"" + id + "\","
+				+ "\"self\":\"" + url + API + "issue/" + id + "\",\"key\":\"" + PROJECT + "-" + n + "\",\"fields\":{"
+				+ "\"summary\":\"benchmark issue " + n + "\","
+				+ "\"description\":\"" + description + "\","
+				+ "\"issuetype\":" + issueType() + ","
+				+ "\"project\":{\"self\":\"" + url + API + "project/10000\",\"id\":\"10000\",\"key\":\"" + PROJECT + "\",\"name\":\"Benchmark\"},"
+				+ "\"status\":" + status("1", "Open") + ","
+				+ "\"priority\":{\"self\":\"" + url + API + "priority/3\",\"id\":\"3\",\"name\":\"Major\",\"iconUrl\":\"" + url + "/images/major.png\"},"
+				+ "\"resolution\":null,\"assignee\":" + user("admin") + ",\"reporter\":" + user("admin") + ","
+				+ "\"components\":[{\"self\":\"" + url + API + "component/10000\",\"id\":\"10000\",\"name\":\"Core\"}],"
+				+ "\"labels\":[],\"issuelinks\":[],\"subtasks\":[],\"attachment\":[],"
+				+ "\"comment\":{\"startAt\":0,\"maxResults\":" + comments + ",\"total\":" + comments + ",\"comments\":[" + commentList + "]},"
+				+ "\"created\":\"" + DATE + "\",\"updated\":\"" + DATE + "\"}}";
+	}
+
+	private static String read(InputStream in) throws IOException {
+		StringBuilder retVal = new StringBuilder();
+		byte[] buf = new byte[4096];
+		int n;
+		while ((n = in.read(buf)) > 0) retVal.append(new String(buf, 0, n, UTF8));
+		in.close();
+		return retVal.toString();
+	}
+
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		send(exchange, status, body.getBytes(UTF8));
+	}
+
+	private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		if (body.length == 0) {
+			exchange.sendResponseHeaders(status, -1);
+			return;
+		}
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+}
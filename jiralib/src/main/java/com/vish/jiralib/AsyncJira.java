@@ -0,0 +1,262 @@
+package com.vish.jiralib;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import com.atlassian.jira.rest.client.api.IssueRestClient;
+import com.atlassian.jira.rest.client.api.domain.BasicComponent;
+import com.atlassian.jira.rest.client.api.domain.Comment;
+import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.atlassian.jira.rest.client.api.domain.IssueType;
+import com.atlassian.jira.rest.client.api.domain.SearchResult;
+import com.atlassian.jira.rest.client.api.domain.Transition;
+import com.atlassian.jira.rest.client.api.domain.input.IssueInput;
+import com.atlassian.jira.rest.client.api.domain.input.LinkIssuesInput;
+import com.atlassian.jira.rest.client.api.domain.input.TransitionInput;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.vish.jiralib.JiraMetrics.Operation;
+
+/**
+ * non-blocking companion of {@link Jira}: the same operations, returning {@link CompletableFuture}s.
+ * Get one from {@link Jira#async()}.
+ * <p>
+ * Requests are sent with the asynchronous JIRA Rest Client and never claimed: no thread waits for a response,
+ * so pipelines such as search, then transition, then comment can be composed with {@code thenCompose}.
+ * Calls share the caches, {@link RequestGovernor} and {@link JiraMetrics} of the {@link Jira} instance;
+ * calls over the concurrency limit are queued, not blocked.
+ * <p>
+ * Dependent stages run on JIRA Rest Client I/O threads unless an executor is given ({@code thenApplyAsync} etc.);
+ * keep them short or move blocking work elsewhere.
+ * Failures complete the future exceptionally with the {@code RestClientException} of the last attempt.
+ * @author vish
+ *
+ */
+public class AsyncJira {
+	private final Jira jira;
+	private final IssueRestClient issueClient;
+
+	AsyncJira(Jira jira) {
+		this.jira = jira;
+		this.issueClient = jira.getRestClient().getIssueClient();
+	}
+
+	/** @return the blocking facade this instance belongs to. */
+	public Jira getJira() {
+		return jira;
+	}
+
+	/**
+	 * get an issue with all navigable fields. Served from the {@link IssueCache} if fetched recently, or shared
+	 * with a read of the same issue in flight.
+	 * @param key
+	 * @return
+	 */
+	public CompletableFuture<Issue> getIssue(String key) {
+		IssueCache cache = jira.getIssueCache();
+		Issue cached = cache.get(key);
+		if (cached != null) return CompletableFuture.completedFuture(cached);
+		long generation = cache.generation();
+		RequestCoalescer coalescer = jira.getRequestCoalescer();
+		return coalescer.issues.callAsync(coalescer.issueKey(key),
+				() -> call(Operation.GET_ISSUE_BY_KEY, true, () -> issueClient.getIssue(key))
+						.thenApply(issue -> {
+							cache.put(key, issue, generation);
+							return issue;
+						}));
+	}
+
+	/**
+	 * one page of a JQL search.
+	 * @param jql
+	 * @param maxResults page size. JIRA may cap it lower.
+	 * @param startAt index of the first issue.
+	 * @param fields fields to request, e.g. from {@link IssueProjection#searchFields(String...)}. null for all navigable fields.
+	 * @return
+	 */
+	public CompletableFuture<SearchResult> search(String jql, int maxResults, int startAt, Set<String> fields) {
+		return call(Operation.GET_ISSUE_OBJECTS_BY_JQL, true,
+				() -> jira.getRestClient().getSearchClient().searchJql(jql, maxResults, startAt, fields));
+	}
+
+	/**
+	 * all results of a JQL search, requested page by page of {@value IssueSearch#DEFAULT_PAGE_SIZE}.
+	 * For large results prefer {@link Jira#searchIssues(String, Set)}, which holds at most two pages.
+	 * @param jql
+	 * @param fields null for all navigable fields.
+	 * @return
+	 */
+	public CompletableFuture<List<Issue>> searchAll(String jql, Set<String> fields) {
+		return searchFrom(jql, fields, 0, new ArrayList<Issue>());
+	}
+
+	private CompletableFuture<List<Issue>> searchFrom(String jql, Set<String> fields, int startAt, List<Issue> into) {
+		return search(jql, IssueSearch.DEFAULT_PAGE_SIZE, startAt, fields).thenCompose(page -> {
+			int size = into.size();
+			Iterables.addAll(into, page.getIssues());
+			int next = startAt + into.size() - size;
+			//an empty page ends the walk even if the total says otherwise (issues deleted meanwhile)
+			if (into.size() == size || next >= page.getTotal()) return CompletableFuture.completedFuture(into);
+			return searchFrom(jql, fields, next, into);
+		});
+	}
+
+	/**
+	 * create an issue in the current project, see {@link Jira#createIssue(String, String, String, String)}.
+	 * The first call fetches the project without blocking, and loads its metadata on the {@link Jira} executor.
+	 * @param issueType
+	 * @param component
+	 * @param summary
+	 * @param description
+	 * @return the key of the created issue.
+	 */
+	public CompletableFuture<String> createIssue(String issueType, String component, String summary, String description) {
+		return loadProjectMetadata().thenCompose(v -> {
+			IssueType it = jira.getIssueTypeByName(issueType);
+			BasicComponent comp = jira.getComponentByName(component);
+			if (it == null) return CompletableFuture.failedFuture(new Exception("invalid issue type: " + issueType +
+					". valid types are:" + Arrays.toString(jira.issueTypes.toArray())));
+			if (comp == null) return CompletableFuture.failedFuture(new Exception("invalid component: " + component +
+					". valid values are:" + Arrays.toString(jira.components.toArray())));
+			return createIssue(jira.buildIssueInput(it, comp, summary, description));
+		});
+	}
+
+	/**
+	 * fetch the current project unless its metadata is loaded, sharing a fetch in flight. The metadata is set on the
+	 * {@link Jira} executor: {@link Jira} holds its lock while it fetches the project itself, which must not block
+	 * a JIRA Rest Client I/O thread.
+	 */
+	private CompletableFuture<Void> loadProjectMetadata() {
+		if (jira.isProjectMetadataLoaded()) return CompletableFuture.completedFuture(null);
+		String key = jira.getProjectKey();
+		return jira.getRequestCoalescer().projects.callAsync(key,
+				() -> jira.getGovernor().callAsync(true, () -> jira.getRestClient().getProjectClient().getProject(key)))
+				.thenAcceptAsync(jira::setProjectMetadata, jira.getExecutor());
+	}
+
+	/**
+	 * create an issue from a prepared input, e.g. with fields {@link Jira} does not set.
+	 * @param input
+	 * @return the key of the created issue.
+	 */
+	public CompletableFuture<String> createIssue(IssueInput input) {
+		return call(Operation.CREATE_ISSUE, false, () -> issueClient.createIssue(input))
+				.thenApply(issue -> issue.getKey());
+	}
+
+	/**
+	 * transition an issue by transition name. Transitions come from the {@link TransitionCache} when possible.
+	 * @param issue
+	 * @param transitionName case insensitive.
+	 * @return fails if the issue has no such transition.
+	 */
+	public CompletableFuture<Void> transitionIssue(Issue issue, String transitionName) {
+		return getTransitions(issue).thenCompose(transitions -> {
+			Integer id = jira.findTransitionId(transitions, transitionName);
+			if (id == null) return CompletableFuture.failedFuture(new Exception("transition " + transitionName +
+					" not found! Check whether your JIRA account has required permissions."));
+			return transitionIssue(issue, id);
+		});
+	}
+
+	/**
+	 * transition an issue by key, fetching the issue first unless cached.
+	 * @param key
+	 * @param transitionName case insensitive.
+	 * @return
+	 */
+	public CompletableFuture<Void> transitionIssue(String key, String transitionName) {
+		return getIssue(key).thenCompose(issue -> transitionIssue(issue, transitionName));
+	}
+
+	/**
+	 * @param issue
+	 * @param transitionId
+	 * @return
+	 */
+	public CompletableFuture<Void> transitionIssue(Issue issue, int transitionId) {
+		TransitionInput transition = new TransitionInput(transitionId);
+		return call(Operation.TRANSITION_ISSUE, false, () -> issueClient.transition(issue, transition))
+				.whenComplete((v, e) -> jira.getIssueCache().invalidate(issue.getKey()));
+	}
+
+	private CompletableFuture<List<Transition>> getTransitions(Issue issue) {
+		TransitionCache cache = jira.getTransitionCache();
+		String cacheKey = TransitionCache.keyOf(issue);
+		List<Transition> cached = cache.get(cacheKey);
+		if (cached != null) return CompletableFuture.completedFuture(cached);
+		return jira.getRequestCoalescer().transitions.callAsync(cacheKey,
+				() -> jira.getGovernor().callAsync(true, () -> issueClient.getTransitions(issue))
+						.thenApply(transitions -> {
+							List<Transition> retVal = new ArrayList<Transition>();
+							Iterables.addAll(retVal, transitions);
+							cache.put(cacheKey, retVal);
+							return retVal;
+						}));
+	}
+
+	/**
+	 * add a comment visible to the Users role, see {@link Jira#commentOnIssue(String, String)}.
+	 * @param key
+	 * @param comment
+	 * @return
+	 */
+	public CompletableFuture<Void> commentOnIssue(String key, String comment) {
+		Comment c = Comment.createWithRoleLevel(comment, "Users");
+		URI commentsUri = jira.commentsUri(key);
+		return call(Operation.COMMENT_ON_ISSUE, false, () -> issueClient.addComment(commentsUri, c))
+				.whenComplete((v, e) -> jira.getIssueCache().invalidate(key));
+	}
+
+	/**
+	 * link {@code source} to {@code target}, then comment on {@code source} if {@code comment} is not empty.
+	 * Unlike {@link Jira#linkIssueToIssue(String, String, String, String)} the link type is not validated and
+	 * existing links are not checked: JIRA rejects unknown types.
+	 * @param source
+	 * @param target
+	 * @param linkType
+	 * @param comment null or empty for none.
+	 * @return
+	 */
+	public CompletableFuture<Void> linkIssueToIssue(String source, String target, String linkType, String comment) {
+		LinkIssuesInput input = new LinkIssuesInput(source, target, linkType);
+		CompletableFuture<Void> linked = call(Operation.LINK_ISSUE, false, () -> issueClient.linkIssue(input))
+				.whenComplete((v, e) -> {
+					jira.getIssueCache().invalidate(source);
+					jira.getIssueCache().invalidate(target);
+				});
+		if (comment == null || comment.isEmpty()) return linked;
+		return linked.thenCompose(v -> commentOnIssue(source, comment));
+	}
+
+	/**
+	 * upload a file to an existing issue with the JIRA Rest Client.
+	 * @param key
+	 * @param file
+	 * @return
+	 */
+	public CompletableFuture<Void> addAttachmentToIssue(String key, File file) {
+		URI attachmentsUri = URI.create(jira.url + "/rest/api/2/issue/" + key + "/attachments");
+		return call(Operation.ADD_ATTACHMENT, false, () -> issueClient.addAttachments(attachmentsUri, file))
+				.whenComplete((v, e) -> jira.getIssueCache().invalidate(key));
+	}
+
+	/**
+	 * send a request through the governor and record it under {@code op}.
+	 */
+	private <T> CompletableFuture<T> call(Operation op, boolean idempotent, Supplier<? extends ListenableFuture<T>> send) {
+		JiraMetrics metrics = jira.getMetrics();
+		long start = JiraMetrics.start();
+		return jira.getGovernor().callAsync(idempotent, send).whenComplete((v, e) -> {
+			if (e == null) metrics.succeeded(op, start);
+			else metrics.failed(op, start, e);
+		});
+	}
+}
@@ -0,0 +1,54 @@
+package com.vish.jiralib;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * replaces files in one step, so a reader sees either the old file or the new one, never a partial file.
+ * <p>
+ * The new content goes to a temporary file of its own in the same directory, is forced to disk, and is moved over
+ * the old file with {@link StandardCopyOption#ATOMIC_MOVE}. Concurrent writers never share a temporary file; the
+ * last move wins. Where the platform cannot replace the file (e.g. Windows, while another process has it open
+ * or mapped), {@link #write(File, Content)} fails and the old file is kept.
+ * @author vish
+ *
+ */
+final class AtomicFiles {
+	/** writes the new content of a file. */
+	interface Content {
+		void writeTo(OutputStream out) throws IOException;
+	}
+
+	private AtomicFiles() {
+	}
+
+	/**
+	 * @param file replaced, or created if absent.
+	 * @param content
+	 * @throws IOException if the content could not be written or the file not replaced. The old file is left as it was.
+	 */
+	static void write(File file, Content content) throws IOException {
+		Path target = file.getAbsoluteFile().toPath();
+		Path tmp = Files.createTempFile(target.getParent(), file.getName() + ".", ".tmp");
+		try {
+			FileOutputStream fileOut = new FileOutputStream(tmp.toFile());
+			try {
+				OutputStream out = new BufferedOutputStream(fileOut, 1 << 16);
+				content.writeTo(out);
+				out.flush();
+				fileOut.getChannel().force(false);
+			} finally {
+				fileOut.close();
+			}
+			Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+}
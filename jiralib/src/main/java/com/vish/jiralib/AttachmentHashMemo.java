@@ -0,0 +1,106 @@
+package com.vish.jiralib;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * content hashes of attachments by self URI, so a sync need not download an attachment to compare it again.
+ * Attachments never change, so a hash never goes stale. Holds the {@code capacity} most recently used hashes.
+ * <p>
+ * With a file, the memo is read when created and rewritten by {@link #save()}, so the hashes outlive the process
+ * (e.g. a CI job retried in a fresh JVM). The file holds a {@code <hash> TAB <self URI>} line per attachment, least
+ * recently used first, and is replaced in one step (see {@link AtomicFiles}). An unreadable file is ignored. Processes
+ * sharing the file keep the entries of the last one to save; a lost entry only costs a download.
+ * Thread-safe.
+ * @author vish
+ *
+ */
+final class AttachmentHashMemo {
+	private final File file;
+	private final Map<URI, String> hashes;
+	private boolean changed;
+
+	/**
+	 * @param file read now if it exists; null to keep the hashes in memory only.
+	 * @param capacity
+	 */
+	AttachmentHashMemo(File file, final int capacity) {
+		this.file = file;
+		this.hashes = new LinkedHashMap<URI, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<URI, String> eldest) {
+				return size() > capacity;
+			}
+		};
+		if (file != null && file.isFile()) load();
+	}
+
+	private void load() {
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+			try {
+				for (String line; (line = in.readLine()) != null; ) {
+					int tab = line.indexOf('\t');
+					if (tab > 0) hashes.put(URI.create(line.substring(tab + 1)), line.substring(0, tab));
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			System.err.println("WARNING: ignoring attachment hashes " + file + ": " + e.getMessage());
+		} catch (RuntimeException e) {
+			System.err.println("WARNING: ignoring attachment hashes " + file + ": " + e);
+		}
+	}
+
+	/** @return null if unknown. */
+	synchronized String get(URI self) {
+		return hashes.get(self);
+	}
+
+	synchronized void put(URI self, String hash) {
+		if (!hash.equals(hashes.put(self, hash))) changed = true;
+	}
+
+	synchronized int size() {
+		return hashes.size();
+	}
+
+	/** @return null if the memo is not kept on disk. */
+	File getFile() {
+		return file;
+	}
+
+	/**
+	 * write the hashes to the file, if there is one and hashes were added since it was read or last saved.
+	 * @throws IOException
+	 */
+	synchronized void save() throws IOException {
+		if (file == null || !changed) return;
+		final List<Map.Entry<URI, String>> entries = new ArrayList<Map.Entry<URI, String>>(hashes.entrySet());
+		AtomicFiles.write(file, o -> {
+			Writer out = new BufferedWriter(new OutputStreamWriter(o, StandardCharsets.UTF_8));
+			for (Map.Entry<URI, String> e : entries) {
+				out.write(e.getValue());
+				out.write('\t');
+				out.write(e.getKey().toString());
+				out.write('\n');
+			}
+			out.flush();
+		});
+		changed = false;
+	}
+}
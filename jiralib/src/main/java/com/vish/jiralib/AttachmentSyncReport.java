@@ -0,0 +1,32 @@
+package com.vish.jiralib;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * per-file outcome of an attachment sync, keyed by file name, with the bytes uploaded, the bytes not uploaded because
+ * the issue already had an identical attachment, and the bytes of attachments downloaded to find that out. Uploaded
+ * files are {@link BulkReport.Outcome#SUCCEEDED}, identical ones {@link BulkReport.Outcome#SKIPPED}.
+ * @author vish
+ *
+ */
+public class AttachmentSyncReport extends BulkReport {
+	private final AtomicLong bytesUploaded = new AtomicLong();
+	private final AtomicLong bytesSkipped = new AtomicLong();
+	private final AtomicLong bytesDownloaded = new AtomicLong();
+
+	void addBytesUploaded(long bytes) { bytesUploaded.addAndGet(bytes); }
+	void addBytesSkipped(long bytes) { bytesSkipped.addAndGet(bytes); }
+	void addBytesDownloaded(long bytes) { bytesDownloaded.addAndGet(bytes); }
+
+	public long getBytesUploaded() { return bytesUploaded.get(); }
+	/** @return bytes of files not uploaded, since the issue had them already. */
+	public long getBytesSkipped() { return bytesSkipped.get(); }
+	/** @return bytes of attachments downloaded to compare them with the files, whether they matched or not. */
+	public long getBytesDownloaded() { return bytesDownloaded.get(); }
+
+	@Override
+	public String toString() {
+		return super.toString() + "; " + bytesUploaded + " bytes uploaded, " + bytesSkipped + " bytes skipped, "
+				+ bytesDownloaded + " bytes downloaded to compare";
+	}
+}
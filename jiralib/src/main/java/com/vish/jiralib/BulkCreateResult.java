@@ -0,0 +1,43 @@
+package com.vish.jiralib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * result of a bulk issue creation. Items are identified by their 0-based position in the input.
+ * @author vish
+ *
+ */
+public class BulkCreateResult {
+	private final Map<Integer,String> created = new TreeMap<Integer,String>();
+	private final Map<Integer,String> errors = new TreeMap<Integer,String>();
+
+	synchronized void created(int item, String key) { created.put(item, key); }
+	synchronized void failed(int item, String message) { errors.put(item, message); }
+
+	/** @return keys of created issues, in input order. */
+	public synchronized List<String> getCreatedKeys() {
+		return new ArrayList<String>(created.values());
+	}
+
+	/** @return input position to created issue key. */
+	public synchronized Map<Integer,String> getCreated() {
+		return Collections.unmodifiableMap(new TreeMap<Integer,String>(created));
+	}
+
+	/** @return input position to error message, for items that were rejected or failed. */
+	public synchronized Map<Integer,String> getErrors() {
+		return Collections.unmodifiableMap(new TreeMap<Integer,String>(errors));
+	}
+
+	public synchronized int getCreatedCount() { return created.size(); }
+	public synchronized int getFailedCount() { return errors.size(); }
+
+	@Override
+	public synchronized String toString() {
+		return (created.size() + errors.size()) + " items: " + created.size() + " created, " + errors.size() + " failed";
+	}
+}
@@ -0,0 +1,149 @@
+package com.vish.jiralib;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONObject;
+
+import com.atlassian.jira.rest.client.api.domain.BasicComponent;
+import com.atlassian.jira.rest.client.api.domain.IssueType;
+import com.atlassian.jira.rest.client.api.domain.input.IssueInput;
+import com.atlassian.jira.rest.client.internal.json.gen.IssueInputJsonGenerator;
+
+/**
+ * creates issues in chunks through JIRA's bulk-create resource ({@code POST /rest/api/2/issue/bulk}).
+ * <p>
+ * Specs are read lazily and validated against the project metadata already held by {@link Jira}; invalid specs
+ * are reported and never sent. Up to {@code parallelism} chunks are posted at once, on the executor of the {@link Jira}. Reading the input blocks
+ * while that many chunks are outstanding, so a large file is never fully in memory.
+ * @author vish
+ *
+ */
+class BulkIssueCreator {
+	/** JIRA rejects bulk-create requests with more than 50 issues. */
+	static final int CHUNK_SIZE = 50;
+
+	private final Jira jira;
+	private final int parallelism;
+	private final IssueInputJsonGenerator generator = new IssueInputJsonGenerator();
+
+	BulkIssueCreator(Jira jira, int parallelism) {
+		if (parallelism <= 0) throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+		this.jira = jira;
+		this.parallelism = parallelism;
+	}
+
+	BulkCreateResult create(Iterable<IssueSpec> specs) throws Exception {
+		final BulkCreateResult result = new BulkCreateResult();
+		final Semaphore slots = new Semaphore(parallelism);
+		ExecutorService executor = jira.getExecutor();
+		List<Integer> items = new ArrayList<Integer>();
+		List<IssueInput> inputs = new ArrayList<IssueInput>();
+		int item = 0;
+		try {
+			for (IssueSpec spec : specs) {
+				try {
+					inputs.add(toIssueInput(spec));
+					items.add(item);
+				} catch (IllegalArgumentException e) {
+					result.failed(item, e.getMessage());
+				}
+				item++;
+				if (inputs.size() == CHUNK_SIZE) {
+					submitChunk(executor, slots, items, inputs, result);
+					items = new ArrayList<Integer>();
+					inputs = new ArrayList<IssueInput>();
+				}
+			}
+			if (!inputs.isEmpty()) submitChunk(executor, slots, items, inputs, result);
+		} finally {
+			//wait for the outstanding chunks, also when reading the specs failed
+			slots.acquireUninterruptibly(parallelism);
+			slots.release(parallelism);
+		}
+		return result;
+	}
+
+	private IssueInput toIssueInput(IssueSpec spec) {
+		if (spec.getSummary() == null || spec.getSummary().trim().isEmpty())
+			throw new IllegalArgumentException("summary is empty");
+		IssueType it = jira.getIssueTypeByName(spec.getIssueType());
+		if (it == null) throw new IllegalArgumentException("invalid issue type: " + spec.getIssueType());
+		BasicComponent comp = jira.getComponentByName(spec.getComponent());
+		if (comp == null) throw new IllegalArgumentException("invalid component: " + spec.getComponent());
+		return jira.buildIssueInput(it, comp, spec.getSummary(), spec.getDescription());
+	}
+
+	private void submitChunk(ExecutorService executor, final Semaphore slots,
+			final List<Integer> items, final List<IssueInput> inputs, final BulkCreateResult result) throws InterruptedException {
+		slots.acquire();
+		try {
+			executor.execute(() -> {
+				try {
+					postChunk(items, inputs, result);
+				} catch (Exception e) {
+					failChunk(items, e, result);
+				} finally {
+					slots.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			//e.g. the executor was shut down: the chunk is reported, and the chunks already created are kept in the result
+			slots.release();
+			failChunk(items, e, result);
+		}
+	}
+
+	private static void failChunk(List<Integer> items, Exception e, BulkCreateResult result) {
+		for (Integer item : items) result.failed(item, e.getClass().getSimpleName() + ": " + e.getMessage());
+	}
+
+	/**
+	 * post one chunk. JIRA answers 201 if every issue was created and 400 if some were rejected; in both cases
+	 * {@code issues} lists the created issues in input order and {@code errors} names the rejected elements.
+	 */
+	private void postChunk(List<Integer> items, List<IssueInput> inputs, BulkCreateResult result) throws Exception {
+		JSONArray updates = new JSONArray();
+		for (IssueInput input : inputs) {
+			updates.put(generator.generate(input));
+		}
+		JSONObject body = new JSONObject();
+		body.put("issueUpdates", updates);
+
+		String bulkUrl = jira.url + "/rest/api/2/issue/bulk";
+		if (jira.DEBUG) System.out.println("executing request: POST " + bulkUrl + " (" + inputs.size() + " issues)");
+
+		HttpTransport.Response response = jira.getTransport().postJson(bulkUrl, body.toString());
+		int status = response.getStatus();
+		String text = response.getBody();
+		if (status != 201 && status != 400) {
+			for (Integer item : items) result.failed(item, "bulk create failed: status code: " + status + " " + text);
+			return;
+		}
+		JSONObject json = new JSONObject(text);
+		Set<Integer> rejected = new HashSet<Integer>();
+		JSONArray errors = json.optJSONArray("errors");
+		for (int i = 0; errors != null && i < errors.length(); i++) {
+			JSONObject error = errors.getJSONObject(i);
+			int element = error.optInt("failedElementNumber");
+			rejected.add(element);
+			result.failed(items.get(element), "(" + error.optInt("status") + ") " + error.optJSONObject("elementErrors"));
+		}
+		JSONArray issues = json.optJSONArray("issues");
+		int element = 0;
+		for (int i = 0; issues != null && i < issues.length(); i++) {
+			while (rejected.contains(element)) element++;
+			if (element >= items.size()) break;
+			String key = issues.getJSONObject(i).getString("key");
+			result.created(items.get(element), key);
+			System.out.println(key + " created");
+			element++;
+		}
+	}
+}
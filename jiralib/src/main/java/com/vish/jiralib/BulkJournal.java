@@ -0,0 +1,278 @@
+package com.vish.jiralib;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * append-only record of a bulk operation, so a run that dies halfway can be resumed without redoing finished items.
+ * <p>
+ * The journal holds the operation (e.g. target state and JQL), each item as it is planned, a marker once the plan is
+ * complete, and each item as it is done. Records are a type byte followed by the key (planned) or the key's 4-byte plan
+ * index (done), so a 100k-issue run takes about 1.6 MB, written sequentially.
+ * <p>
+ * Records are buffered and forced to disk every {@value #SYNC_BATCH} records or {@value #SYNC_INTERVAL_MILLIS} ms,
+ * and on {@link #sync()} and {@link #close()}. A crash can lose the last unsynced records and may leave a torn record
+ * at the end of the file, which {@link #resume(File)} cuts off. Items whose completion was lost are done again, so
+ * journaled operations must be safe to repeat. A bulk transition skips an issue already in the status the transition
+ * leads to, as learned from the issues of the same workflow still to be transitioned; if none are left, the issue is
+ * reported as failed and can be checked by hand.
+ * <pre>
+ * BulkJournal journal = BulkJournal.resume(new File("bulk.journal"));
+ * try {
+ *     jira.bulkTransitionIssuesByJQL(jql, "Done", 16, journal);
+ * } finally {
+ *     journal.close();
+ * }
+ * </pre>
+ * Thread-safe.
+ * @author vish
+ *
+ */
+public class BulkJournal implements Closeable {
+	/** records written between forced writes. */
+	public static final int SYNC_BATCH = 512;
+	/** longest time between forced writes while records are being added. */
+	public static final long SYNC_INTERVAL_MILLIS = 1000;
+
+	/** "JLJ" and format version 1. */
+	static final int MAGIC = 0x4a4c4a01;
+	private static final byte PLANNED = 'P';
+	private static final byte DONE = 'D';
+	private static final byte PLAN_COMPLETE = 'E';
+
+	private final File file;
+	private String operation;
+	private final List<String> planned = new ArrayList<String>();
+	private final Map<String, Integer> plannedIndex = new HashMap<String, Integer>();
+	private final BitSet done = new BitSet();
+	private boolean planComplete;
+
+	private FileOutputStream fileOut;
+	private DataOutputStream out;
+	private int unsynced;
+	private long lastSync = System.currentTimeMillis();
+
+	private BulkJournal(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * start a new journal, replacing {@code file}.
+	 * @param file
+	 * @return an empty journal.
+	 * @throws IOException
+	 */
+	public static BulkJournal create(File file) throws IOException {
+		BulkJournal retVal = new BulkJournal(file);
+		retVal.openForAppend(0);
+		return retVal;
+	}
+
+	/**
+	 * continue the journal in {@code file}, or start a new one if there is none.
+	 * @param file
+	 * @return the journal, with the items planned and done so far.
+	 * @throws IOException if the file is not a journal.
+	 */
+	public static BulkJournal resume(File file) throws IOException {
+		BulkJournal retVal = new BulkJournal(file);
+		retVal.openForAppend(file.exists() ? retVal.read() : 0);
+		return retVal;
+	}
+
+	/**
+	 * read the records of the file.
+	 * @return length of the intact part of the file.
+	 */
+	private long read() throws IOException {
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		ByteArrayInputStream buf = new ByteArrayInputStream(bytes);
+		DataInputStream in = new DataInputStream(buf);
+		long intact = 0;
+		try {
+			if (in.readInt() != MAGIC) throw new IOException(file + " is not a bulk journal");
+			operation = in.readUTF();
+			intact = bytes.length - buf.available();
+			while (buf.available() > 0) {
+				byte type = in.readByte();
+				if (type == PLANNED) {
+					addPlanned(in.readUTF());
+				} else if (type == DONE) {
+					int index = in.readInt();
+					if (index < 0 || index >= planned.size()) break;
+					done.set(index);
+				} else if (type == PLAN_COMPLETE) {
+					planComplete = true;
+				} else {
+					break;
+				}
+				intact = bytes.length - buf.available();
+			}
+		} catch (EOFException e) {
+			//torn record at the end: cut off below
+		} catch (UTFDataFormatException e) {
+			//same
+		}
+		return intact;
+	}
+
+	private void openForAppend(long length) throws IOException {
+		if (length == 0) {
+			fileOut = new FileOutputStream(file);
+		} else {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(length);
+			} finally {
+				raf.close();
+			}
+			fileOut = new FileOutputStream(file, true);
+		}
+		out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+	}
+
+	/**
+	 * record the operation this journal belongs to, or check it against the one recorded.
+	 * @param operation e.g. target state and query.
+	 * @throws IllegalStateException if the journal belongs to another operation.
+	 * @throws IOException
+	 */
+	synchronized void begin(String operation) throws IOException {
+		if (this.operation != null) {
+			if (!this.operation.equals(operation))
+				throw new IllegalStateException(file + " belongs to another operation: " + this.operation);
+			return;
+		}
+		this.operation = operation;
+		out.writeInt(MAGIC);
+		out.writeUTF(operation);
+		sync();
+	}
+
+	/**
+	 * record that {@code key} is part of the operation. Keys already planned are ignored.
+	 * @param key
+	 * @throws IOException
+	 */
+	synchronized void planned(String key) throws IOException {
+		if (plannedIndex.containsKey(key)) return;
+		addPlanned(key);
+		out.writeByte(PLANNED);
+		out.writeUTF(key);
+		written();
+	}
+
+	/** record that every item of the operation has been planned. */
+	synchronized void planComplete() throws IOException {
+		if (planComplete) return;
+		planComplete = true;
+		out.writeByte(PLAN_COMPLETE);
+		sync();
+	}
+
+	/**
+	 * record that {@code key} is finished and need not be done again.
+	 * @param key a planned key; others are ignored.
+	 * @throws IOException
+	 */
+	synchronized void done(String key) throws IOException {
+		Integer index = plannedIndex.get(key);
+		if (index == null || done.get(index)) return;
+		done.set(index);
+		out.writeByte(DONE);
+		out.writeInt(index);
+		written();
+	}
+
+	private void addPlanned(String key) {
+		plannedIndex.put(key, planned.size());
+		planned.add(key);
+	}
+
+	private void written() throws IOException {
+		if (++unsynced >= SYNC_BATCH || System.currentTimeMillis() - lastSync >= SYNC_INTERVAL_MILLIS) sync();
+	}
+
+	/**
+	 * write buffered records and force them to disk.
+	 * @throws IOException
+	 */
+	public synchronized void sync() throws IOException {
+		out.flush();
+		fileOut.getChannel().force(false);
+		unsynced = 0;
+		lastSync = System.currentTimeMillis();
+	}
+
+	/** @return the operation recorded, or null for a new journal. */
+	public synchronized String getOperation() {
+		return operation;
+	}
+
+	public synchronized boolean isPlanComplete() {
+		return planComplete;
+	}
+
+	public synchronized boolean isPlanned(String key) {
+		return plannedIndex.containsKey(key);
+	}
+
+	public synchronized boolean isDone(String key) {
+		Integer index = plannedIndex.get(key);
+		return index != null && done.get(index);
+	}
+
+	public synchronized int getPlannedCount() {
+		return planned.size();
+	}
+
+	public synchronized int getDoneCount() {
+		return done.cardinality();
+	}
+
+	/** @return keys planned and not yet done, in plan order. */
+	public synchronized List<String> getRemaining() {
+		List<String> retVal = new ArrayList<String>(planned.size() - done.cardinality());
+		for (int i = done.nextClearBit(0); i < planned.size(); i = done.nextClearBit(i + 1)) {
+			retVal.add(planned.get(i));
+		}
+		return Collections.unmodifiableList(retVal);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/** sync and close the file. */
+	@Override
+	public synchronized void close() throws IOException {
+		if (out == null) return;
+		try {
+			sync();
+		} finally {
+			out.close();
+			out = null;
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return file + ": " + done.cardinality() + " of " + planned.size() + " done" + (planComplete ? "" : ", plan incomplete");
+	}
+}
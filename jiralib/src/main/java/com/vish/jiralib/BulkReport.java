@@ -0,0 +1,79 @@
+package com.vish.jiralib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * per-item outcome of a bulk operation. Items are issue keys, or file names for attachment uploads.
+ * Filled in concurrently while the operation runs.
+ * @author vish
+ *
+ */
+public class BulkReport {
+
+	public static enum Outcome {
+		SUCCEEDED,
+		FAILED,
+		SKIPPED
+	}
+
+	/**
+	 * outcome for a single item. {@code message} holds the REST error for failures and the reason for skips.
+	 */
+	public static class Entry {
+		private final String key;
+		private final Outcome outcome;
+		private final String message;
+		public Entry(String key, Outcome outcome, String message) {
+			this.key = key; this.outcome = outcome; this.message = message;
+		}
+		public String getKey() { return key; }
+		public Outcome getOutcome() { return outcome; }
+		public String getMessage() { return message; }
+		@Override
+		public String toString() {
+			return key + ": " + outcome + (message == null ? "" : " (" + message + ")");
+		}
+	}
+
+	private final List<Entry> entries = new ArrayList<Entry>();
+	private int succeeded, failed, skipped;
+
+	synchronized void add(Entry e) {
+		entries.add(e);
+		switch (e.getOutcome()) {
+		case SUCCEEDED: succeeded++; break;
+		case FAILED: failed++; break;
+		case SKIPPED: skipped++; break;
+		}
+	}
+
+	void succeeded(String key) { add(new Entry(key, Outcome.SUCCEEDED, null)); }
+	void failed(String key, String message) { add(new Entry(key, Outcome.FAILED, message)); }
+	void skipped(String key, String reason) { add(new Entry(key, Outcome.SKIPPED, reason)); }
+
+	/** @return all entries, in completion order. */
+	public synchronized List<Entry> getEntries() {
+		return Collections.unmodifiableList(new ArrayList<Entry>(entries));
+	}
+
+	/** @return entries with the given outcome, in completion order. */
+	public synchronized List<Entry> getEntries(Outcome outcome) {
+		List<Entry> retVal = new ArrayList<Entry>();
+		for (Entry e : entries) {
+			if (e.getOutcome() == outcome) retVal.add(e);
+		}
+		return retVal;
+	}
+
+	public synchronized int getSucceededCount() { return succeeded; }
+	public synchronized int getFailedCount() { return failed; }
+	public synchronized int getSkippedCount() { return skipped; }
+	public synchronized int size() { return entries.size(); }
+
+	@Override
+	public synchronized String toString() {
+		return entries.size() + " items: " + succeeded + " succeeded, " + failed + " failed, " + skipped + " skipped";
+	}
+}
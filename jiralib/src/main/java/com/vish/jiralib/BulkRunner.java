@@ -0,0 +1,135 @@
+package com.vish.jiralib;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * keeps a bounded number of asynchronous REST calls in flight and records the outcome of each one.
+ * <p>
+ * {@link #submit(String, Callable)} blocks while {@code parallelism} calls are outstanding, so a caller
+ * feeding it from a lazy source (e.g. an {@link IssueSearch}) never runs far ahead of the server.
+ * A failing call is recorded in the {@link BulkReport} and does not stop the run.
+ * With a {@link BulkJournal}, succeeded and skipped items are journaled as done.
+ * <p>
+ * Not thread-safe for submission: use one runner per submitting thread.
+ * @author vish
+ *
+ */
+class BulkRunner {
+	/** runs completion callbacks on the thread that completed the future. */
+	static final Executor CALLER_RUNS = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	private final int parallelism;
+	private final Semaphore inFlight;
+	private final BulkReport report;
+	private final BulkJournal journal;
+	/** first journal write that failed, thrown by {@link #await()}. */
+	private volatile IOException journalError;
+
+	BulkRunner(int parallelism) {
+		this(parallelism, null);
+	}
+
+	/**
+	 * @param parallelism
+	 * @param journal null for none.
+	 */
+	BulkRunner(int parallelism, BulkJournal journal) {
+		this(parallelism, journal, new BulkReport());
+	}
+
+	/**
+	 * @param parallelism
+	 * @param journal null for none.
+	 * @param report filled in by the runner, e.g. an {@link AttachmentSyncReport}.
+	 */
+	BulkRunner(int parallelism, BulkJournal journal, BulkReport report) {
+		if (parallelism <= 0) throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+		this.parallelism = parallelism;
+		this.inFlight = new Semaphore(parallelism);
+		this.journal = journal;
+		this.report = report;
+	}
+
+	/**
+	 * start an asynchronous call for {@code key}. Blocks until a slot is free.
+	 * @param key issue key the call is made for. used in the report.
+	 * @param call starts the REST call and returns its future (a JRJC {@code Promise}).
+	 * @throws InterruptedException
+	 */
+	void submit(final String key, Callable<? extends ListenableFuture<?>> call) throws InterruptedException {
+		inFlight.acquire();
+		final ListenableFuture<?> future;
+		try {
+			future = call.call();
+		} catch (Exception e) {
+			inFlight.release();
+			report.failed(key, describe(e));
+			return;
+		}
+		future.addListener(() -> {
+			try {
+				future.get();
+				report.succeeded(key);
+				journalDone(key);
+			} catch (ExecutionException e) {
+				report.failed(key, describe(e.getCause()));
+			} catch (Exception e) {
+				report.failed(key, describe(e));
+			} finally {
+				inFlight.release();
+			}
+		}, CALLER_RUNS);
+	}
+
+	void skip(String key, String reason) {
+		report.skipped(key, reason);
+		journalDone(key);
+	}
+
+	private void journalDone(String key) {
+		if (journal == null) return;
+		try {
+			journal.done(key);
+		} catch (IOException e) {
+			if (journalError == null) journalError = e;
+		}
+	}
+
+	void fail(String key, String reason) {
+		report.failed(key, reason);
+	}
+
+	/**
+	 * wait for every submitted call to complete.
+	 * @return the report.
+	 * @throws InterruptedException
+	 * @throws IOException if the journal could not be written.
+	 */
+	BulkReport await() throws InterruptedException, IOException {
+		inFlight.acquire(parallelism);
+		inFlight.release(parallelism);
+		if (journalError != null) throw journalError;
+		return report;
+	}
+
+	/**
+	 * human-readable message for a failed call, including JIRA's error collection when present.
+	 */
+	static String describe(Throwable t) {
+		if (t instanceof RestClientException && ((RestClientException) t).getErrorCollections() != null)
+			return Jira.restErrorMessage(((RestClientException) t).getErrorCollections());
+		return t.getClass().getSimpleName() + ": " + t.getMessage();
+	}
+}
@@ -0,0 +1,79 @@
+package com.vish.jiralib;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * comment text with per-issue placeholders, e.g. {@code Fixed in {key}'s release, was {status}}.
+ * <p>
+ * A placeholder is a field name of {@link IssueProjection#SUPPORTED_FIELDS} in braces. Other braces are left
+ * alone, so JIRA markup such as <code>{code}</code> or <code>{color:red}</code> passes through. Empty fields
+ * render as nothing. Parsed once; thread-safe.
+ * @author vish
+ *
+ */
+public class CommentTemplate {
+	private final String template;
+	/** literal text and field names, alternating: parts[0] is text, parts[1] a field, ... */
+	private final String[] parts;
+	private final Set<String> fields = new LinkedHashSet<String>();
+
+	public CommentTemplate(String template) {
+		this.template = template;
+		List<String> p = new ArrayList<String>();
+		StringBuilder text = new StringBuilder();
+		int i = 0;
+		while (i < template.length()) {
+			int open = template.indexOf('{', i);
+			int close = open < 0 ? -1 : template.indexOf('}', open);
+			if (close < 0) {
+				text.append(template, i, template.length());
+				break;
+			}
+			String name = template.substring(open + 1, close);
+			text.append(template, i, open);
+			if (IssueProjection.SUPPORTED_FIELDS.contains(name)) {
+				p.add(text.toString());
+				p.add(name);
+				fields.add(name);
+				text.setLength(0);
+				i = close + 1;
+			} else {
+				//not a placeholder: keep the brace, look again after it
+				text.append('{');
+				i = open + 1;
+			}
+		}
+		p.add(text.toString());
+		parts = p.toArray(new String[p.size()]);
+	}
+
+	/** @return fields the placeholders refer to, to request from the search. */
+	public String[] getFields() {
+		return fields.toArray(new String[fields.size()]);
+	}
+
+	/**
+	 * @param issue a projection holding {@link #getFields()}.
+	 * @return the comment for {@code issue}.
+	 */
+	public String render(IssueProjection issue) {
+		StringBuilder retVal = new StringBuilder(template.length() + 32);
+		for (int i = 0; i < parts.length; i++) {
+			if (i % 2 == 0) {
+				retVal.append(parts[i]);
+			} else {
+				String value = IssueProjection.KEY.equals(parts[i]) ? issue.getKey() : issue.get(parts[i]);
+				if (value != null) retVal.append(value);
+			}
+		}
+		return retVal.toString();
+	}
+
+	@Override
+	public String toString() {
+		return template;
+	}
+}
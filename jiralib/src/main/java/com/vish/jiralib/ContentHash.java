@@ -0,0 +1,78 @@
+package com.vish.jiralib;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 of file and attachment contents, as lowercase hex, to tell identical attachments apart from changed ones.
+ * @author vish
+ *
+ */
+final class ContentHash {
+	/** bytes of a file mapped at a time. */
+	static final int MAP_WINDOW = 64 << 20;
+
+	private ContentHash() {
+	}
+
+	/**
+	 * hash a local file through memory-mapped reads, {@value #MAP_WINDOW} bytes at a time, so the contents are not
+	 * copied onto the heap.
+	 * @param file
+	 * @return the hash.
+	 * @throws IOException
+	 */
+	static String of(File file) throws IOException {
+		MessageDigest digest = newDigest();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			for (long pos = 0; pos < size; pos += MAP_WINDOW) {
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_WINDOW, size - pos));
+				digest.update(window);
+			}
+		} finally {
+			raf.close();
+		}
+		return hex(digest.digest());
+	}
+
+	/**
+	 * hash a stream, e.g. an attachment being downloaded. The stream is read to the end but not closed.
+	 * @param in
+	 * @return the hash.
+	 * @throws IOException
+	 */
+	static String of(InputStream in) throws IOException {
+		MessageDigest digest = newDigest();
+		byte[] buf = new byte[64 * 1024];
+		for (int n; (n = in.read(buf)) >= 0; ) {
+			digest.update(buf, 0, n);
+		}
+		return hex(digest.digest());
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			//every JRE has SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,177 @@
+package com.vish.jiralib;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.mime.HttpMultipartMode;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * pooled HTTP client for the REST resources the JIRA Rest Client does not cover (attachments, bulk create).
+ * <p>
+ * One instance is owned by each {@link Jira} and reused for every request, so connections (and their TLS sessions)
+ * are kept alive between calls instead of being set up per request. Connections per route and in total are capped;
+ * requests beyond the cap wait for a free connection. With a {@link RequestGovernor}, requests are also paced
+ * and throttled or failed ones retried, honouring {@code Retry-After}. Thread-safe.
+ * @author vish
+ *
+ */
+public class HttpTransport implements Closeable {
+	public static final int DEFAULT_MAX_PER_ROUTE = 8;
+	public static final int DEFAULT_MAX_TOTAL = 32;
+
+	/**
+	 * status and body of a completed request.
+	 */
+	public static class Response {
+		private final int status;
+		private final String body;
+		private final String retryAfter;
+		Response(int status, String body, String retryAfter) {
+			this.status = status; this.body = body; this.retryAfter = retryAfter;
+		}
+		public int getStatus() { return status; }
+		public String getBody() { return body; }
+		/** @return the Retry-After header, or null. */
+		public String getRetryAfter() { return retryAfter; }
+		public boolean isSuccess() { return status >= 200 && status < 300; }
+		@Override
+		public String toString() { return "status code: " + status + "\nResponse: " + body; }
+	}
+
+	private final PoolingHttpClientConnectionManager pool;
+	private final CloseableHttpClient httpclient;
+	private final String authorization;
+	private volatile RequestGovernor governor;
+
+	/**
+	 * @param authorization value of the Authorization header sent with every request.
+	 * @param maxPerRoute maximum connections to one host.
+	 * @param maxTotal maximum connections overall.
+	 */
+	public HttpTransport(String authorization, int maxPerRoute, int maxTotal) {
+		this.authorization = authorization;
+		pool = new PoolingHttpClientConnectionManager();
+		pool.setDefaultMaxPerRoute(maxPerRoute);
+		pool.setMaxTotal(maxTotal);
+		httpclient = HttpClients.custom()
+				.setConnectionManager(pool)
+				.build();
+	}
+
+	public int getMaxPerRoute() { return pool.getDefaultMaxPerRoute(); }
+	public void setMaxPerRoute(int maxPerRoute) { pool.setDefaultMaxPerRoute(maxPerRoute); }
+	public int getMaxTotal() { return pool.getMaxTotal(); }
+	public void setMaxTotal(int maxTotal) { pool.setMaxTotal(maxTotal); }
+	public RequestGovernor getGovernor() { return governor; }
+	/** @param governor paces and retries every request; null to send each request once, unpaced. */
+	public void setGovernor(RequestGovernor governor) { this.governor = governor; }
+
+	/**
+	 * execute a request with authentication. The response body is read completely, which returns the
+	 * connection to the pool.
+	 * <p>
+	 * With a governor, a throttled (429) request is retried; a request failing with 502/503/504 or an I/O error
+	 * is retried if its method is idempotent. The request entity must be repeatable. When retries are exhausted 
+	 * the last response is returned, or the last I/O error thrown.
+	 * @param request
+	 * @return
+	 * @throws IOException
+	 */
+	public Response execute(HttpUriRequest request) throws IOException {
+		request.setHeader("Authorization", authorization);
+		RequestGovernor g = governor;
+		if (g == null) return send(request);
+		boolean idempotent = !"POST".equals(request.getMethod()) && !"PATCH".equals(request.getMethod());
+		try {
+			for (int attempt = 0; ; attempt++) {
+				if (attempt > 0 && request instanceof HttpRequestBase) ((HttpRequestBase) request).reset();
+				g.acquire();
+				Response response;
+				try {
+					response = send(request);
+				} catch (IOException e) {
+					g.release();
+					long delay = g.retryDelay(OperationMetrics.NO_STATUS, e, idempotent, attempt, -1);
+					if (delay < 0) throw e;
+					Thread.sleep(delay);
+					continue;
+				}
+				g.release();
+				if (response.isSuccess()) {
+					g.succeeded();
+					return response;
+				}
+				long delay = g.retryDelay(response.getStatus(), null, idempotent, attempt, 
+						RequestGovernor.parseRetryAfter(response.getRetryAfter()));
+				if (delay < 0) return response;
+				Thread.sleep(delay);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted waiting to send " + request.getURI());
+		}
+	}
+
+	private Response send(HttpUriRequest request) throws IOException {
+		CloseableHttpResponse response = httpclient.execute(request);
+		try {
+			HttpEntity entity = response.getEntity();
+			String body = entity == null ? "" : EntityUtils.toString(entity, "UTF-8");
+			Header retryAfter = response.getFirstHeader("Retry-After");
+			return new Response(response.getStatusLine().getStatusCode(), body, retryAfter == null ? null : retryAfter.getValue());
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * POST a JSON document.
+	 * @param url
+	 * @param json
+	 * @return
+	 * @throws IOException
+	 */
+	public Response postJson(String url, String json) throws IOException {
+		HttpPost httppost = new HttpPost(url);
+		httppost.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+		return execute(httppost);
+	}
+
+	/**
+	 * upload a file as multipart form field {@code file}. The file is streamed from disk while the request is
+	 * written, not loaded into memory.
+	 * @param url attachments resource of an issue.
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public Response postFile(String url, File file) throws IOException {
+		HttpPost httppost = new HttpPost(url);
+		httppost.setHeader("X-Atlassian-Token", "nocheck");
+		httppost.setEntity(MultipartEntityBuilder.create()
+				.setMode(HttpMultipartMode.BROWSER_COMPATIBLE)
+				.addBinaryBody("file", file, ContentType.DEFAULT_BINARY, file.getName())
+				.build());
+		return execute(httppost);
+	}
+
+	@Override
+	public void close() throws IOException {
+		httpclient.close();
+	}
+}
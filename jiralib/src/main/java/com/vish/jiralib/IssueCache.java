@@ -0,0 +1,144 @@
+package com.vish.jiralib;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.atlassian.jira.rest.client.api.domain.Issue;
+
+/**
+ * bounded cache of fully fetched issues, keyed by issue key.
+ * <p>
+ * Entries are evicted least-recently-used once {@code maxSize} is reached and expire {@code ttlMillis} after
+ * they were fetched. {@link Jira} invalidates an issue after every write it makes to it (transition, comment, link).
+ * Changes made by others are only seen once the entry expires, unless a {@link WebhookReceiver} reports them.
+ * <p>
+ * A fetch that started before an invalidation is not cached (see {@link #put(String, Issue, long)}), so a slow read
+ * cannot put back the state a concurrent write just replaced.
+ * @author vish
+ *
+ */
+public class IssueCache {
+	public static final int DEFAULT_MAX_SIZE = 1000;
+	public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+	private static class Cached {
+		final Issue issue;
+		final long expiresAt;
+		Cached(Issue issue, long expiresAt) {
+			this.issue = issue; this.expiresAt = expiresAt;
+		}
+	}
+
+	private final LinkedHashMap<String, Cached> entries = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+			if (size() > maxSize) {
+				evictions++;
+				return true;
+			}
+			return false;
+		}
+	};
+	private int maxSize = DEFAULT_MAX_SIZE;
+	private long ttlMillis = DEFAULT_TTL_MILLIS;
+	private long hits, misses, evictions;
+	/** incremented by every invalidation. */
+	private long generation;
+
+	private static String normalize(String key) {
+		return key.toUpperCase();
+	}
+
+	/**
+	 * @param key issue key. case insensitive.
+	 * @return the cached issue, or null if absent or expired.
+	 */
+	public synchronized Issue get(String key) {
+		String k = normalize(key);
+		Cached e = entries.get(k);
+		if (e == null || e.expiresAt < System.currentTimeMillis()) {
+			if (e != null) entries.remove(k);
+			misses++;
+			return null;
+		}
+		hits++;
+		return e.issue;
+	}
+
+	/**
+	 * @return a token to pass to {@link #put(String, Issue, long)}. take it before starting the fetch.
+	 */
+	public synchronized long generation() {
+		return generation;
+	}
+
+	/**
+	 * cache an issue, unless an invalidation happened since {@code generation} was taken.
+	 * @param key issue key the issue was fetched with.
+	 * @param issue
+	 * @param generation value of {@link #generation()} before the fetch started.
+	 */
+	public synchronized void put(String key, Issue issue, long generation) {
+		if (generation != this.generation || maxSize == 0) return;
+		entries.put(normalize(key), new Cached(issue, System.currentTimeMillis() + ttlMillis));
+	}
+
+	public synchronized void invalidate(String key) {
+		generation++;
+		entries.remove(normalize(key));
+	}
+
+	/**
+	 * drop the issue with a numeric ID, for events that carry no key (e.g. link webhooks).
+	 * @param id
+	 */
+	public synchronized void invalidateById(long id) {
+		generation++;
+		Iterator<Cached> iter = entries.values().iterator();
+		while (iter.hasNext()) {
+			Long issueId = iter.next().issue.getId();
+			if (issueId != null && issueId == id) iter.remove();
+		}
+	}
+
+	public synchronized void invalidateAll() {
+		generation++;
+		entries.clear();
+	}
+
+	public synchronized int getMaxSize() { return maxSize; }
+
+	/**
+	 * @param maxSize maximum number of cached issues. 0 disables caching.
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		if (maxSize < 0) throw new IllegalArgumentException("max size must not be negative: " + maxSize);
+		this.maxSize = maxSize;
+		if (maxSize == 0) {
+			entries.clear();
+			return;
+		}
+		Iterator<String> iter = entries.keySet().iterator();
+		while (entries.size() > maxSize && iter.hasNext()) {
+			iter.next();
+			iter.remove();
+			evictions++;
+		}
+	}
+
+	public synchronized long getTtlMillis() { return ttlMillis; }
+	public synchronized void setTtlMillis(long ttlMillis) { this.ttlMillis = ttlMillis; }
+	public synchronized int size() { return entries.size(); }
+	public synchronized long getHits() { return hits; }
+	public synchronized long getMisses() { return misses; }
+	public synchronized long getEvictions() { return evictions; }
+
+	@Override
+	public synchronized String toString() {
+		return "IssueCache[size=" + entries.size() + "/" + maxSize + ", hits=" + hits + ", misses=" + misses +
+				", evictions=" + evictions + "]";
+	}
+}
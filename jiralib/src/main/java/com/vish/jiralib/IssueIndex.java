@@ -0,0 +1,410 @@
+package com.vish.jiralib;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * in-memory inverted index over the summary, description, status and components of issues, for text search
+ * without a round trip to JIRA. Usually kept by an {@link IssueMirror}, see {@link IssueMirror#find(String, Order)}.
+ * <p>
+ * Text is split into lower-case runs of letters and digits. Each term has a posting list of document numbers with
+ * the term's positions, held in growable int arrays. An updated issue gets a new document number and its old one is
+ * marked deleted; deleted documents are dropped from the posting lists once they outnumber the live ones.
+ * <p>
+ * Query syntax:
+ * <ul>
+ * <li>{@code timeout} - term, in summary or description</li>
+ * <li>{@code "connection timeout"} - phrase</li>
+ * <li>{@code status:done}, {@code component:"user interface"}, {@code summary:...}, {@code description:...} - one field</li>
+ * <li>{@code a b} or {@code a AND b}, {@code a OR b}, {@code NOT a} or {@code -a}, and parentheses</li>
+ * </ul>
+ * Thread-safe.
+ * @author vish
+ *
+ */
+public class IssueIndex {
+
+	/** result order. */
+	public static enum Order {
+		/** by project, then issue number. */
+		KEY,
+		/** most recently updated first. */
+		UPDATED
+	}
+
+	/** indexed fields and the prefix of their terms. */
+	private static final String[] FIELDS = { IssueProjection.SUMMARY, IssueProjection.DESCRIPTION, IssueProjection.STATUS, IssueProjection.COMPONENTS };
+	private static final char[] FIELD_CODES = { 's', 'd', 't', 'c' };
+	/** fields searched by unqualified terms. */
+	private static final char[] DEFAULT_FIELDS = { 's', 'd' };
+
+	/**
+	 * documents containing one term, in document order, with the term's positions in each.
+	 */
+	static final class Postings {
+		int size;
+		int[] docs = new int[2];
+		/** positions of docs[i] are positions[posStart[i] .. posStart[i+1]). */
+		int[] posStart = new int[3];
+		int[] positions = new int[2];
+
+		void add(int doc, int position) {
+			if (size > 0 && docs[size - 1] == doc) {
+				addPosition(position);
+				return;
+			}
+			if (size == docs.length) docs = Arrays.copyOf(docs, size * 2);
+			if (size + 2 > posStart.length) posStart = Arrays.copyOf(posStart, posStart.length * 2);
+			docs[size] = doc;
+			size++;
+			posStart[size] = posStart[size - 1];
+			addPosition(position);
+		}
+
+		private void addPosition(int position) {
+			int end = posStart[size];
+			if (end == positions.length) positions = Arrays.copyOf(positions, end * 2);
+			positions[end] = position;
+			posStart[size] = end + 1;
+		}
+
+		/** @return index of doc, or negative if absent. */
+		int find(int doc) {
+			return Arrays.binarySearch(docs, 0, size, doc);
+		}
+
+		boolean hasPosition(int i, int position) {
+			for (int p = posStart[i]; p < posStart[i + 1]; p++) {
+				if (positions[p] == position) return true;
+			}
+			return false;
+		}
+	}
+
+	private final Map<String, Postings> terms = new HashMap<String, Postings>();
+	private final Map<String, Integer> docOfKey = new HashMap<String, Integer>();
+	private String[] keys = new String[16];
+	private long[] updated = new long[16];
+	private final BitSet live = new BitSet();
+	private int docCount;
+
+	/**
+	 * add an issue, or replace the indexed copy of it.
+	 * @param issue needs the indexed fields; {@code updated} is used for {@link Order#UPDATED}.
+	 */
+	public synchronized void update(IssueProjection issue) {
+		remove(issue.getKey());
+		int doc = docCount++;
+		if (doc == keys.length) {
+			keys = Arrays.copyOf(keys, doc * 2);
+			updated = Arrays.copyOf(updated, doc * 2);
+		}
+		keys[doc] = issue.getKey();
+		updated[doc] = parseDate(issue.get(IssueProjection.UPDATED));
+		live.set(doc);
+		docOfKey.put(issue.getKey(), doc);
+		for (int f = 0; f < FIELDS.length; f++) {
+			String text = issue.get(FIELDS[f]);
+			if (text == null) continue;
+			int position = 0;
+			//keep separate component names from matching as one phrase
+			for (String value : f == 3 ? text.split(",") : new String[] { text }) {
+				for (String token : tokenize(value)) {
+					postings(FIELD_CODES[f] + token, true).add(doc, position++);
+				}
+				position++;
+			}
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return whether the issue was indexed.
+	 */
+	public synchronized boolean remove(String key) {
+		Integer doc = docOfKey.remove(key);
+		if (doc == null) return false;
+		live.clear(doc);
+		keys[doc] = null;
+		if (docCount - live.cardinality() > Math.max(1024, live.cardinality())) compact();
+		return true;
+	}
+
+	public synchronized int size() {
+		return docOfKey.size();
+	}
+
+	/** @return number of distinct terms, for sizing. */
+	public synchronized int termCount() {
+		return terms.size();
+	}
+
+	/**
+	 * @param query see the class description.
+	 * @param order
+	 * @return keys of matching issues.
+	 * @throws IllegalArgumentException for a malformed query.
+	 */
+	public synchronized List<String> search(String query, Order order) {
+		BitSet hits = new QueryParser(query).parse();
+		hits.and(live);
+		List<Integer> docs = new ArrayList<Integer>(hits.cardinality());
+		for (int doc = hits.nextSetBit(0); doc >= 0; doc = hits.nextSetBit(doc + 1)) docs.add(doc);
+		Collections.sort(docs, order == Order.UPDATED ? byUpdated : byKey);
+		List<String> retVal = new ArrayList<String>(docs.size());
+		for (int doc : docs) retVal.add(keys[doc]);
+		return retVal;
+	}
+
+	private final Comparator<Integer> byKey = (a, b) -> compareKeys(keys[a], keys[b]);
+
+	private final Comparator<Integer> byUpdated = (a, b) -> {
+		int c = Long.compare(updated[b], updated[a]);
+		return c != 0 ? c : compareKeys(keys[a], keys[b]);
+	};
+
+	/** orders PROJ-9 before PROJ-10. */
+	static int compareKeys(String a, String b) {
+		int da = a.lastIndexOf('-'), db = b.lastIndexOf('-');
+		if (da < 0 || db < 0) return a.compareTo(b);
+		int c = a.substring(0, da).compareTo(b.substring(0, db));
+		if (c != 0) return c;
+		try {
+			return Long.compare(Long.parseLong(a.substring(da + 1)), Long.parseLong(b.substring(db + 1)));
+		} catch (NumberFormatException e) {
+			return a.compareTo(b);
+		}
+	}
+
+	private Postings postings(String term, boolean create) {
+		Postings p = terms.get(term);
+		if (p == null && create) {
+			p = new Postings();
+			terms.put(term, p);
+		}
+		return p;
+	}
+
+	/**
+	 * renumber the live documents and drop deleted ones from every posting list.
+	 */
+	private void compact() {
+		int[] newDoc = new int[docCount];
+		int n = 0;
+		for (int doc = 0; doc < docCount; doc++) {
+			newDoc[doc] = live.get(doc) ? n++ : -1;
+		}
+		String[] k = new String[Math.max(16, n)];
+		long[] u = new long[k.length];
+		for (int doc = 0; doc < docCount; doc++) {
+			if (newDoc[doc] < 0) continue;
+			k[newDoc[doc]] = keys[doc];
+			u[newDoc[doc]] = updated[doc];
+			docOfKey.put(keys[doc], newDoc[doc]);
+		}
+		keys = k;
+		updated = u;
+		live.clear();
+		live.set(0, n);
+		docCount = n;
+		List<String> empty = new ArrayList<String>();
+		for (Map.Entry<String, Postings> e : terms.entrySet()) {
+			Postings old = e.getValue();
+			Postings p = new Postings();
+			for (int i = 0; i < old.size; i++) {
+				int doc = newDoc[old.docs[i]];
+				if (doc < 0) continue;
+				for (int j = old.posStart[i]; j < old.posStart[i + 1]; j++) p.add(doc, old.positions[j]);
+			}
+			if (p.size == 0) empty.add(e.getKey());
+			else e.setValue(p);
+		}
+		for (String term : empty) terms.remove(term);
+	}
+
+	static List<String> tokenize(String text) {
+		List<String> retVal = new ArrayList<String>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (word && start < 0) start = i;
+			if (!word && start >= 0) {
+				retVal.add(text.substring(start, i).toLowerCase());
+				start = -1;
+			}
+		}
+		return retVal;
+	}
+
+	/** JIRA dates as printed by {@link IssueProjection}, e.g. 2016-01-31T17:05:00.000+01:00. 0 if absent or unreadable. */
+	private static long parseDate(String date) {
+		if (date == null) return 0;
+		try {
+			return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX").parse(date).getTime();
+		} catch (ParseException e) {
+			return 0;
+		}
+	}
+
+	private BitSet termDocs(char[] fields, String term) {
+		BitSet retVal = new BitSet();
+		for (char f : fields) {
+			Postings p = postings(f + term, false);
+			if (p == null) continue;
+			for (int i = 0; i < p.size; i++) retVal.set(p.docs[i]);
+		}
+		return retVal;
+	}
+
+	private BitSet phraseDocs(char[] fields, List<String> tokens) {
+		if (tokens.size() == 1) return termDocs(fields, tokens.get(0));
+		BitSet retVal = new BitSet();
+		if (tokens.isEmpty()) return retVal;
+		for (char f : fields) {
+			Postings[] lists = new Postings[tokens.size()];
+			boolean missing = false;
+			for (int t = 0; t < lists.length && !missing; t++) {
+				lists[t] = postings(f + tokens.get(t), false);
+				missing = lists[t] == null;
+			}
+			if (missing) continue;
+			Postings first = lists[0];
+			for (int i = 0; i < first.size; i++) {
+				int doc = first.docs[i];
+				int[] idx = new int[lists.length];
+				boolean all = true;
+				for (int t = 1; t < lists.length && all; t++) {
+					idx[t] = lists[t].find(doc);
+					all = idx[t] >= 0;
+				}
+				if (!all) continue;
+				for (int p = first.posStart[i]; p < first.posStart[i + 1]; p++) {
+					int start = first.positions[p];
+					boolean match = true;
+					for (int t = 1; t < lists.length && match; t++) match = lists[t].hasPosition(idx[t], start + t);
+					if (match) {
+						retVal.set(doc);
+						break;
+					}
+				}
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * recursive descent over the query; each rule returns the matching documents.
+	 */
+	private class QueryParser {
+		private final List<String> tokens = new ArrayList<String>();
+		private int pos;
+
+		QueryParser(String query) {
+			int i = 0;
+			while (i < query.length()) {
+				char c = query.charAt(i);
+				if (Character.isWhitespace(c)) {
+					i++;
+				} else if (c == '(' || c == ')' || c == '-' && (i + 1 < query.length() && !Character.isWhitespace(query.charAt(i + 1)))) {
+					tokens.add(String.valueOf(c));
+					i++;
+				} else if (c == '"') {
+					int end = query.indexOf('"', i + 1);
+					if (end < 0) throw new IllegalArgumentException("unterminated phrase in: " + query);
+					tokens.add(query.substring(i, end + 1));
+					i = end + 1;
+				} else {
+					int start = i;
+					while (i < query.length() && !Character.isWhitespace(query.charAt(i)) && "()\"".indexOf(query.charAt(i)) < 0) {
+						i++;
+						//field:"phrase"
+						if (query.charAt(i - 1) == ':' && i < query.length() && query.charAt(i) == '"') {
+							int end = query.indexOf('"', i + 1);
+							if (end < 0) throw new IllegalArgumentException("unterminated phrase in: " + query);
+							i = end + 1;
+							break;
+						}
+					}
+					tokens.add(query.substring(start, i));
+				}
+			}
+		}
+
+		BitSet parse() {
+			if (tokens.isEmpty()) throw new IllegalArgumentException("empty query");
+			BitSet retVal = or();
+			if (pos < tokens.size()) throw new IllegalArgumentException("unexpected " + tokens.get(pos) + " in query");
+			return retVal;
+		}
+
+		private String peek() {
+			return pos < tokens.size() ? tokens.get(pos) : null;
+		}
+
+		private BitSet or() {
+			BitSet retVal = and();
+			while ("OR".equals(peek())) {
+				pos++;
+				retVal.or(and());
+			}
+			return retVal;
+		}
+
+		private BitSet and() {
+			BitSet retVal = unary();
+			for (String t = peek(); t != null && !"OR".equals(t) && !")".equals(t); t = peek()) {
+				if ("AND".equals(t)) pos++;
+				retVal.and(unary());
+			}
+			return retVal;
+		}
+
+		private BitSet unary() {
+			String t = peek();
+			if ("NOT".equals(t) || "-".equals(t)) {
+				pos++;
+				BitSet retVal = (BitSet) live.clone();
+				retVal.andNot(unary());
+				return retVal;
+			}
+			return primary();
+		}
+
+		private BitSet primary() {
+			String t = peek();
+			if (t == null) throw new IllegalArgumentException("query ends unexpectedly");
+			pos++;
+			if ("(".equals(t)) {
+				BitSet retVal = or();
+				if (!")".equals(peek())) throw new IllegalArgumentException("missing )");
+				pos++;
+				return retVal;
+			}
+			char[] fields = DEFAULT_FIELDS;
+			int colon = t.indexOf(':');
+			if (colon > 0 && !t.startsWith("\"")) {
+				fields = new char[] { fieldCode(t.substring(0, colon)) };
+				t = t.substring(colon + 1);
+			}
+			if (t.startsWith("\"") && t.endsWith("\"") && t.length() >= 2) t = t.substring(1, t.length() - 1);
+			return phraseDocs(fields, tokenize(t));
+		}
+
+		private char fieldCode(String field) {
+			String f = field.toLowerCase();
+			if (f.equals("component")) f = IssueProjection.COMPONENTS;
+			for (int i = 0; i < FIELDS.length; i++) {
+				if (FIELDS[i].equals(f)) return FIELD_CODES[i];
+			}
+			throw new IllegalArgumentException("unknown field " + field + ". searchable fields are: " + Arrays.toString(FIELDS));
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package com.vish.jiralib;
+
+/**
+ * one issue link to be created: {@code source} links to {@code target} with {@code linkType}, e.g. TEST-1 blocks TEST-2.
+ * Same fields as {@link Jira#linkIssueToIssue(String, String, String, String)}.
+ * @author vish
+ *
+ */
+public class IssueLinkSpec {
+	private final String source;
+	private final String target;
+	private final String linkType;
+	private final String comment;
+
+	/**
+	 * @param source issue key
+	 * @param target issue key
+	 * @param linkType a valid link type name, e.g. Blocks. Case insensitive.
+	 * @param comment added to {@code source} once linked. null or empty for none.
+	 */
+	public IssueLinkSpec(String source, String target, String linkType, String comment) {
+		this.source = source;
+		this.target = target;
+		this.linkType = linkType;
+		this.comment = comment;
+	}
+
+	public String getSource() { return source; }
+	public String getTarget() { return target; }
+	public String getLinkType() { return linkType; }
+	public String getComment() { return comment; }
+
+	@Override
+	public String toString() {
+		return source + " > " + linkType + " > " + target;
+	}
+}
@@ -0,0 +1,43 @@
+package com.vish.jiralib;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * reads an edge list of {@link IssueLinkSpec}s one at a time from a CSV or JSONL file.
+ * <p>
+ * Columns (CSV header names or JSON keys): {@code source, target, type, comment}.
+ * {@code comment} may be left out. See {@link SpecReader} for the file formats.
+ * @author vish
+ *
+ */
+public class IssueLinkSpecReader extends SpecReader<IssueLinkSpec> {
+
+	private static final String[] COLUMNS = { "source", "target", "type", "comment" };
+
+	public IssueLinkSpecReader(Reader reader, Format format) {
+		super(reader, format, COLUMNS, 3);
+	}
+
+	/**
+	 * open a file. {@code .jsonl} and {@code .json} files are read as JSONL, everything else as CSV.
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static IssueLinkSpecReader open(File file) throws IOException {
+		return new IssueLinkSpecReader(new InputStreamReader(new FileInputStream(file), "UTF-8"), formatOf(file));
+	}
+
+	@Override
+	protected IssueLinkSpec create(String[] values) {
+		return new IssueLinkSpec(trim(values[0]), trim(values[1]), trim(values[2]), values[3]);
+	}
+
+	private static String trim(String s) {
+		return s == null ? null : s.trim();
+	}
+}
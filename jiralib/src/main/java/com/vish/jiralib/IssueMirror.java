@@ -0,0 +1,385 @@
+package com.vish.jiralib;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.google.common.base.Predicate;
+
+/**
+ * local copy of the issues of one project, kept up to date incrementally, for queries that do not need
+ * to go to the server.
+ * <p>
+ * {@link #refresh()} asks JIRA only for issues updated since the last refresh (the watermark), with
+ * {@code updated >=} JQL over a paged search. The first refresh fetches the whole project. Issues are held as
+ * {@link IssueProjection}s of {@link #FIELDS}.
+ * <p>
+ * The mirror lives in a binary file that is memory-mapped when opened, so opening costs one scan of the keys
+ * and issues are decoded only when read. Each refresh rewrites the file (unchanged records are copied as raw
+ * bytes) into a temporary file and moves it over the old one in one step (see {@link AtomicFiles}), so other
+ * processes opening the mirror see the old file or the new one. If the file cannot be replaced, the refresh fails
+ * and the issues fetched stay in memory for the next one.
+ * <p>
+ * Deleted issues, and issues moved to another project, are not noticed by an incremental refresh;
+ * use {@link #rebuild()} now and then. Thread-safe.
+ * <pre>
+ * IssueMirror mirror = jira.openMirror(new File("TEST.mirror"));
+ * mirror.refresh();
+ * Map&lt;String,Integer&gt; byStatus = mirror.countBy(IssueProjection.STATUS);
+ * </pre>
+ * @author vish
+ *
+ */
+public class IssueMirror {
+	/** fields kept for every issue, besides the key. */
+	public static final String[] FIELDS = { IssueProjection.SUMMARY, IssueProjection.DESCRIPTION, IssueProjection.STATUS,
+			IssueProjection.ISSUETYPE, IssueProjection.PRIORITY, IssueProjection.RESOLUTION, IssueProjection.ASSIGNEE,
+			IssueProjection.REPORTER, IssueProjection.COMPONENTS, IssueProjection.CREATED, IssueProjection.UPDATED };
+	/** re-read issues updated this long before the watermark, to cover JQL's minute resolution and clock skew. */
+	public static final long DEFAULT_OVERLAP_MILLIS = 15 * 60 * 1000L;
+
+	/** "JLM" and format version 1. */
+	static final int MAGIC = 0x4a4c4d01;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final Jira jira;
+	private final String projectKey;
+	private final File file;
+	private long overlapMillis = DEFAULT_OVERLAP_MILLIS;
+	private TimeZone serverTimeZone = TimeZone.getDefault();
+
+	/** most recent {@code updated} seen, in ms. -1 before the first refresh. */
+	private long watermark = -1;
+	private long lastRefresh = -1;
+	/** records of the file, read-only. null if there is no file yet. */
+	private ByteBuffer mapped;
+	/** key to record offset in {@link #mapped}, for issues not changed since. */
+	private final Map<String, Integer> offsets = new LinkedHashMap<String, Integer>();
+	/** issues fetched since the file was written. */
+	private final Map<String, IssueProjection> changed = new LinkedHashMap<String, IssueProjection>();
+	/** text index, built on first use and kept current by {@link #put(IssueProjection)}. */
+	private IssueIndex index;
+
+	/**
+	 * open a mirror, reading the file if it exists and belongs to the same project.
+	 * @param jira used by {@link #refresh()}; may be null for read-only use.
+	 * @param projectKey
+	 * @param file
+	 * @throws IOException
+	 */
+	IssueMirror(Jira jira, String projectKey, File file) throws IOException {
+		this.jira = jira;
+		this.projectKey = projectKey;
+		this.file = file;
+		if (file.isFile()) {
+			try {
+				load();
+			} catch (RuntimeException e) {
+				//truncated or corrupt: start over
+				offsets.clear();
+				System.err.println("WARNING: ignoring mirror " + file + ": " + e);
+			}
+		}
+	}
+
+	public String getProjectKey() { return projectKey; }
+	public File getFile() { return file; }
+	public synchronized long getOverlapMillis() { return overlapMillis; }
+	public synchronized void setOverlapMillis(long overlapMillis) { this.overlapMillis = overlapMillis; }
+	/** @return the time zone JQL dates are written in; should be the JIRA user's time zone. */
+	public synchronized TimeZone getServerTimeZone() { return serverTimeZone; }
+	public synchronized void setServerTimeZone(TimeZone serverTimeZone) { this.serverTimeZone = serverTimeZone; }
+	/** @return most recent issue update in the mirror (ms), or -1 if never refreshed. */
+	public synchronized long getWatermark() { return watermark; }
+	/** @return when the mirror was last refreshed (ms), or -1. */
+	public synchronized long getLastRefresh() { return lastRefresh; }
+
+	/**
+	 * fetch issues updated since the watermark (all issues the first time) and save the mirror.
+	 * @return number of issues fetched.
+	 * @throws Exception
+	 */
+	public synchronized int refresh() throws Exception {
+		String jql = "project = \"" + projectKey + "\"";
+		if (watermark >= 0) jql += " AND updated >= \"" + jqlDate(watermark - overlapMillis) + "\"";
+		return fetch(jql + " ORDER BY updated ASC");
+	}
+
+	/**
+	 * drop everything and fetch the whole project again. Removes deleted and moved issues.
+	 * @return number of issues fetched.
+	 * @throws Exception
+	 */
+	public synchronized int rebuild() throws Exception {
+		offsets.clear();
+		changed.clear();
+		mapped = null;
+		watermark = -1;
+		index = null;
+		return fetch("project = \"" + projectKey + "\" ORDER BY updated ASC");
+	}
+
+	private int fetch(String jql) throws Exception {
+		if (jira == null) throw new IllegalStateException("mirror " + file + " was opened read-only");
+		long started = System.currentTimeMillis();
+		int retVal = 0;
+		long max = watermark;
+		for (Issue issue : jira.searchIssues(jql, IssueSearch.DEFAULT_PAGE_SIZE, IssueProjection.searchFields(FIELDS))) {
+			put(IssueProjection.of(issue, FIELDS));
+			if (issue.getUpdateDate() != null) max = Math.max(max, issue.getUpdateDate().getMillis());
+			retVal++;
+		}
+		watermark = max;
+		lastRefresh = started;
+		save();
+		return retVal;
+	}
+
+	synchronized void put(IssueProjection issue) {
+		offsets.remove(issue.getKey());
+		changed.put(issue.getKey(), issue);
+		if (index != null) index.update(issue);
+	}
+
+	/**
+	 * drop an issue, e.g. one deleted on the server. Saved with the next refresh.
+	 * @param key
+	 */
+	synchronized void remove(String key) {
+		offsets.remove(key);
+		changed.remove(key);
+		if (index != null) index.remove(key);
+	}
+
+	private String jqlDate(long millis) {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy/MM/dd HH:mm");
+		format.setTimeZone(serverTimeZone);
+		return format.format(new Date(millis));
+	}
+
+	/**
+	 * @param key
+	 * @return the mirrored issue, or null if not in the mirror.
+	 */
+	public synchronized IssueProjection get(String key) {
+		IssueProjection retVal = changed.get(key);
+		if (retVal != null) return retVal;
+		Integer offset = offsets.get(key);
+		return offset == null ? null : decode(offset);
+	}
+
+	public synchronized int size() {
+		return offsets.size() + changed.size();
+	}
+
+	/** @return all mirrored issues. */
+	public synchronized List<IssueProjection> getAll() {
+		List<IssueProjection> retVal = new ArrayList<IssueProjection>(size());
+		for (int offset : offsets.values()) retVal.add(decode(offset));
+		retVal.addAll(changed.values());
+		return retVal;
+	}
+
+	/**
+	 * @param predicate
+	 * @return mirrored issues matching {@code predicate}.
+	 */
+	public synchronized List<IssueProjection> select(Predicate<IssueProjection> predicate) {
+		List<IssueProjection> retVal = new ArrayList<IssueProjection>();
+		for (IssueProjection issue : getAll()) {
+			if (predicate.apply(issue)) retVal.add(issue);
+		}
+		return retVal;
+	}
+
+	/**
+	 * @param field one of {@link #FIELDS}
+	 * @return number of issues per value of {@code field}, e.g. per status. Empty values count under "".
+	 */
+	public synchronized Map<String, Integer> countBy(String field) {
+		Map<String, Integer> retVal = new TreeMap<String, Integer>();
+		for (IssueProjection issue : getAll()) {
+			String value = issue.get(field);
+			if (value == null) value = "";
+			Integer n = retVal.get(value);
+			retVal.put(value, n == null ? 1 : n + 1);
+		}
+		return retVal;
+	}
+
+	/**
+	 * @return an inverted index over the mirrored issues, built on the first call and updated as issues are
+	 * fetched.
+	 */
+	public synchronized IssueIndex getIndex() {
+		if (index == null) {
+			IssueIndex i = new IssueIndex();
+			for (IssueProjection issue : getAll()) i.update(issue);
+			index = i;
+		}
+		return index;
+	}
+
+	/**
+	 * search the mirror's text, without going to the server.
+	 * @param query see {@link IssueIndex}, e.g. {@code "connection timeout" AND status:open}
+	 * @param order
+	 * @return matching issues.
+	 */
+	public synchronized List<IssueProjection> find(String query, IssueIndex.Order order) {
+		List<IssueProjection> retVal = new ArrayList<IssueProjection>();
+		for (String key : getIndex().search(query, order)) retVal.add(get(key));
+		return retVal;
+	}
+
+	// ---- file format ----
+	// header: int MAGIC, UTF project, long watermark, long lastRefresh, int field count, UTF field names, int record count
+	// record: int length of the rest, then key and one value per field, each as int byte count (-1 for null) and UTF-8 bytes
+
+	/**
+	 * map the file and take its records, replacing those held. Nothing is changed if the file is not usable.
+	 * @return whether the file was taken.
+	 */
+	private boolean load() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buf.remaining() < 4 || buf.getInt() != MAGIC) {
+				System.err.println("WARNING: ignoring mirror " + file + ": unknown format");
+				return false;
+			}
+			String project = readUTF(buf);
+			if (!projectKey.equalsIgnoreCase(project)) {
+				System.err.println("WARNING: ignoring mirror " + file + ": written for project " + project);
+				return false;
+			}
+			long w = buf.getLong();
+			long r = buf.getLong();
+			String[] fields = new String[buf.getInt()];
+			for (int i = 0; i < fields.length; i++) fields[i] = readUTF(buf);
+			if (!Arrays.equals(fields, FIELDS)) {
+				System.err.println("WARNING: ignoring mirror " + file + ": written with fields " + Arrays.toString(fields));
+				return false;
+			}
+			int count = buf.getInt();
+			Map<String, Integer> index = new LinkedHashMap<String, Integer>(count * 2);
+			for (int i = 0; i < count; i++) {
+				int offset = buf.position();
+				int length = buf.getInt();
+				index.put(readString(buf), offset);
+				buf.position(offset + 4 + length);
+			}
+			offsets.clear();
+			offsets.putAll(index);
+			watermark = w;
+			lastRefresh = r;
+			mapped = buf;
+			return true;
+		} finally {
+			//the mapping stays valid after the file is closed
+			raf.close();
+		}
+	}
+
+	private IssueProjection decode(int offset) {
+		ByteBuffer buf = mapped.duplicate();
+		buf.position(offset + 4);
+		String key = readString(buf);
+		String[] values = new String[FIELDS.length];
+		for (int i = 0; i < values.length; i++) values[i] = readString(buf);
+		return IssueProjection.of(key, FIELDS, values);
+	}
+
+	/**
+	 * write the mirror to a temporary file and move it over the old one, then map the new file. The issues held in
+	 * memory are dropped only once the new file is mapped.
+	 * @throws IOException
+	 */
+	synchronized void save() throws IOException {
+		AtomicFiles.write(file, o -> {
+			DataOutputStream out = new DataOutputStream(o);
+			out.writeInt(MAGIC);
+			out.writeUTF(projectKey);
+			out.writeLong(watermark);
+			out.writeLong(lastRefresh);
+			out.writeInt(FIELDS.length);
+			for (String f : FIELDS) out.writeUTF(f);
+			out.writeInt(size());
+			byte[] copy = new byte[256];
+			for (int offset : offsets.values()) {
+				//unchanged: copy the record as is
+				ByteBuffer buf = mapped.duplicate();
+				buf.position(offset);
+				int length = 4 + buf.getInt(offset);
+				if (copy.length < length) copy = new byte[Math.max(length, copy.length * 2)];
+				buf.get(copy, 0, length);
+				out.write(copy, 0, length);
+			}
+			for (IssueProjection issue : changed.values()) {
+				byte[] record = encode(issue);
+				out.writeInt(record.length);
+				out.write(record);
+			}
+			out.flush();
+		});
+		if (!load()) throw new IOException("could not read back " + file);
+		changed.clear();
+	}
+
+	private static byte[] encode(IssueProjection issue) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeString(out, issue.getKey());
+		for (String f : FIELDS) writeString(out, issue.get(f));
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] b = s.getBytes(UTF8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	private static String readString(ByteBuffer buf) {
+		int length = buf.getInt();
+		if (length < 0) return null;
+		byte[] b = new byte[length];
+		buf.get(b);
+		return new String(b, UTF8);
+	}
+
+	/** reads a string written by {@link DataOutputStream#writeUTF(String)} (ASCII header fields). */
+	private static String readUTF(ByteBuffer buf) {
+		byte[] b = new byte[buf.getShort() & 0xffff];
+		buf.get(b);
+		return new String(b, UTF8);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "mirror of " + projectKey + ": " + size() + " issues, watermark "
+				+ (watermark < 0 ? "none" : new Date(watermark).toString());
+	}
+}
@@ -0,0 +1,155 @@
+package com.vish.jiralib;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.atlassian.jira.rest.client.api.domain.BasicComponent;
+import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.google.common.base.Function;
+
+/**
+ * a lightweight, read-only view of selected fields of an issue, as plain strings.
+ * <p>
+ * Used together with the {@code fields} parameter of the JQL search, so that only the requested fields
+ * are transferred and parsed. Field names are JIRA's field IDs, see the constants below.
+ * @author vish
+ *
+ */
+public class IssueProjection {
+	public static final String KEY = "key";
+	public static final String SUMMARY = "summary";
+	public static final String DESCRIPTION = "description";
+	public static final String STATUS = "status";
+	public static final String ISSUETYPE = "issuetype";
+	public static final String PRIORITY = "priority";
+	public static final String RESOLUTION = "resolution";
+	public static final String ASSIGNEE = "assignee";
+	public static final String REPORTER = "reporter";
+	public static final String COMPONENTS = "components";
+	public static final String PROJECT = "project";
+	public static final String CREATED = "created";
+	public static final String UPDATED = "updated";
+
+	/** every field a projection can hold. */
+	public static final Set<String> SUPPORTED_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(
+			KEY, SUMMARY, DESCRIPTION, STATUS, ISSUETYPE, PRIORITY, RESOLUTION, ASSIGNEE, REPORTER, COMPONENTS, PROJECT, CREATED, UPDATED)));
+
+	/** fields the JRJC issue parser cannot do without. always requested. */
+	public static final Set<String> REQUIRED_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(
+			SUMMARY, ISSUETYPE, CREATED, UPDATED, PROJECT, STATUS)));
+
+	private final String key;
+	private final String[] fields;
+	private final String[] values;
+
+	private IssueProjection(String key, String[] fields, String[] values) {
+		this.key = key; this.fields = fields; this.values = values;
+	}
+
+	/**
+	 * @param fields requested field names. See {@link #SUPPORTED_FIELDS}.
+	 * @return the value for the search {@code fields} parameter: the requested fields plus {@link #REQUIRED_FIELDS}.
+	 * @throws IllegalArgumentException for an unsupported field.
+	 */
+	public static Set<String> searchFields(String... fields) {
+		Set<String> retVal = new LinkedHashSet<String>(REQUIRED_FIELDS);
+		for (String f : fields) {
+			if (!SUPPORTED_FIELDS.contains(f))
+				throw new IllegalArgumentException("unsupported field: " + f + ". supported fields are: " + SUPPORTED_FIELDS);
+			//key is always part of the response
+			if (!KEY.equals(f)) retVal.add(f);
+		}
+		return retVal;
+	}
+
+	/**
+	 * @param issue
+	 * @param fields see {@link #SUPPORTED_FIELDS}
+	 * @return projection of {@code issue} to {@code fields}.
+	 */
+	public static IssueProjection of(Issue issue, String... fields) {
+		String[] values = new String[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			values[i] = extract(issue, fields[i]);
+		}
+		return new IssueProjection(issue.getKey(), fields, values);
+	}
+
+	/**
+	 * @return a projection from stored values, e.g. read back from an {@link IssueMirror}. The arrays are not copied.
+	 */
+	static IssueProjection of(String key, String[] fields, String[] values) {
+		return new IssueProjection(key, fields, values);
+	}
+
+	/**
+	 * @param fields see {@link #SUPPORTED_FIELDS}
+	 * @return a function projecting issues to {@code fields}, e.g. for {@code Iterables.transform}.
+	 */
+	public static Function<Issue, IssueProjection> projector(final String... fields) {
+		searchFields(fields);
+		return issue -> of(issue, fields);
+	}
+
+	/**
+	 * @return the string value of a supported field, or null if the field is empty.
+	 */
+	static String extract(Issue issue, String field) {
+		if (KEY.equals(field)) return issue.getKey();
+		if (SUMMARY.equals(field)) return issue.getSummary();
+		if (DESCRIPTION.equals(field)) return issue.getDescription();
+		if (STATUS.equals(field)) return issue.getStatus() == null ? null : issue.getStatus().getName();
+		if (ISSUETYPE.equals(field)) return issue.getIssueType() == null ? null : issue.getIssueType().getName();
+		if (PRIORITY.equals(field)) return issue.getPriority() == null ? null : issue.getPriority().getName();
+		if (RESOLUTION.equals(field)) return issue.getResolution() == null ? null : issue.getResolution().getName();
+		if (ASSIGNEE.equals(field)) return issue.getAssignee() == null ? null : issue.getAssignee().getName();
+		if (REPORTER.equals(field)) return issue.getReporter() == null ? null : issue.getReporter().getName();
+		if (PROJECT.equals(field)) return issue.getProject() == null ? null : issue.getProject().getKey();
+		if (CREATED.equals(field)) return issue.getCreationDate() == null ? null : issue.getCreationDate().toString();
+		if (UPDATED.equals(field)) return issue.getUpdateDate() == null ? null : issue.getUpdateDate().toString();
+		if (COMPONENTS.equals(field)) {
+			if (issue.getComponents() == null) return null;
+			StringBuilder sb = new StringBuilder();
+			Iterator<BasicComponent> iter = issue.getComponents().iterator();
+			while (iter.hasNext()) {
+				sb.append(iter.next().getName());
+				if (iter.hasNext()) sb.append(',');
+			}
+			return sb.toString();
+		}
+		throw new IllegalArgumentException("unsupported field: " + field);
+	}
+
+	public String getKey() { return key; }
+
+	/**
+	 * @param field a field this projection was made with.
+	 * @return the value, or null if the field is empty or was not projected.
+	 */
+	public String get(String field) {
+		for (int i = 0; i < fields.length; i++) {
+			if (fields[i].equals(field)) return values[i];
+		}
+		return null;
+	}
+
+	/** @return projected fields in request order, plus {@code key}. */
+	public Map<String,String> toMap() {
+		Map<String,String> retVal = new LinkedHashMap<String,String>();
+		retVal.put(KEY, key);
+		for (int i = 0; i < fields.length; i++) {
+			retVal.put(fields[i], values[i]);
+		}
+		return retVal;
+	}
+
+	@Override
+	public String toString() {
+		return toMap().toString();
+	}
+}
@@ -0,0 +1,300 @@
+package com.vish.jiralib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.atlassian.jira.rest.client.api.domain.Issue;
+
+/**
+ * selected fields of many issues, stored column by column.
+ * <p>
+ * Each field is one column: a {@code String[]} for free text (summary, description, dates), or for low-cardinality
+ * fields ({@link #DICTIONARY_FIELDS}) an {@code int[]} of codes into a per-column dictionary, so a status shared by
+ * 100k issues is held once. Adding an issue allocates nothing but the occasional array growth; reading through a
+ * {@link Cursor} allocates nothing at all.
+ * <p>
+ * Field names as in {@link IssueProjection}. Not thread-safe while issues are being added.
+ * @author vish
+ *
+ */
+public class IssueResultSet {
+	/** fields stored dictionary-encoded. */
+	public static final Set<String> DICTIONARY_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(
+			IssueProjection.STATUS, IssueProjection.ISSUETYPE, IssueProjection.PRIORITY, IssueProjection.RESOLUTION,
+			IssueProjection.ASSIGNEE, IssueProjection.REPORTER, IssueProjection.COMPONENTS, IssueProjection.PROJECT)));
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final String[] fields;
+	private final Column[] columns;
+	private String[] keys = new String[INITIAL_CAPACITY];
+	private int size;
+
+	/**
+	 * an empty result set.
+	 * @param fields see {@link IssueProjection#SUPPORTED_FIELDS}. {@code key} is always stored and need not be listed.
+	 * @throws IllegalArgumentException for an unsupported field.
+	 */
+	public IssueResultSet(String... fields) {
+		IssueProjection.searchFields(fields);
+		this.fields = fields.clone();
+		this.columns = new Column[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			columns[i] = DICTIONARY_FIELDS.contains(fields[i]) ? new DictionaryColumn() : new TextColumn();
+		}
+	}
+
+	/**
+	 * @param issues e.g. an {@link IssueSearch} requested with {@link IssueProjection#searchFields(String...)}.
+	 * @param fields
+	 * @return the issues projected to {@code fields}.
+	 */
+	public static IssueResultSet of(Iterable<Issue> issues, String... fields) {
+		IssueResultSet retVal = new IssueResultSet(fields);
+		for (Issue issue : issues) retVal.add(issue);
+		return retVal;
+	}
+
+	public void add(Issue issue) {
+		int row = addKey(issue.getKey());
+		for (int i = 0; i < columns.length; i++) {
+			columns[i].set(row, IssueProjection.extract(issue, fields[i]));
+		}
+	}
+
+	/**
+	 * add a row from stored values.
+	 * @param key
+	 * @param values one per field, in field order. null for empty.
+	 */
+	void add(String key, String... values) {
+		if (values.length != columns.length) throw new IllegalArgumentException(values.length + " values for " + columns.length + " fields");
+		int row = addKey(key);
+		for (int i = 0; i < columns.length; i++) {
+			columns[i].set(row, values[i]);
+		}
+	}
+
+	private int addKey(String key) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			for (Column c : columns) c.grow(size * 2);
+		}
+		keys[size] = key;
+		return size++;
+	}
+
+	/** @return number of issues. */
+	public int size() {
+		return size;
+	}
+
+	/** @return the fields, in column order. */
+	public String[] getFields() {
+		return fields.clone();
+	}
+
+	/**
+	 * @param field
+	 * @return column index of {@code field}, or -1 if not stored.
+	 */
+	public int columnOf(String field) {
+		for (int i = 0; i < fields.length; i++) {
+			if (fields[i].equals(field)) return i;
+		}
+		return -1;
+	}
+
+	public String getKey(int row) {
+		checkRow(row);
+		return keys[row];
+	}
+
+	/**
+	 * @param row
+	 * @param column see {@link #columnOf(String)}
+	 * @return the value, or null if empty.
+	 */
+	public String get(int row, int column) {
+		checkRow(row);
+		return columns[column].get(row);
+	}
+
+	/** @return whether {@code column} is dictionary-encoded, see {@link #getCode(int, int)}. */
+	public boolean isDictionaryEncoded(int column) {
+		return columns[column] instanceof DictionaryColumn;
+	}
+
+	/**
+	 * @param row
+	 * @param column a dictionary-encoded column.
+	 * @return index of the value in {@link #getDictionary(int)}, or -1 if empty. Equal values have equal codes,
+	 * so grouping and counting need no string comparison.
+	 */
+	public int getCode(int row, int column) {
+		checkRow(row);
+		return dictionaryColumn(column).codes[row];
+	}
+
+	/**
+	 * @param column a dictionary-encoded column.
+	 * @return distinct values of the column, in order of first appearance.
+	 */
+	public List<String> getDictionary(int column) {
+		return Collections.unmodifiableList(dictionaryColumn(column).values);
+	}
+
+	/**
+	 * @param row
+	 * @return {@code key} and the fields of one row, in column order.
+	 */
+	public Map<String,String> toMap(int row) {
+		checkRow(row);
+		Map<String,String> retVal = new LinkedHashMap<String,String>();
+		retVal.put(IssueProjection.KEY, keys[row]);
+		for (int i = 0; i < columns.length; i++) {
+			retVal.put(fields[i], columns[i].get(row));
+		}
+		return retVal;
+	}
+
+	/** @return one row as a projection, e.g. for {@link CommentTemplate} or {@link IssueWriter}. */
+	public IssueProjection getProjection(int row) {
+		checkRow(row);
+		String[] values = new String[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			values[i] = columns[i].get(row);
+		}
+		return IssueProjection.of(keys[row], fields, values);
+	}
+
+	/** @return a cursor before the first row. */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	private void checkRow(int row) {
+		if (row < 0 || row >= size) throw new IndexOutOfBoundsException("row " + row + " of " + size);
+	}
+
+	private DictionaryColumn dictionaryColumn(int column) {
+		if (!(columns[column] instanceof DictionaryColumn)) throw new IllegalArgumentException(fields[column] + " is not dictionary-encoded");
+		return (DictionaryColumn) columns[column];
+	}
+
+	@Override
+	public String toString() {
+		return size + " issues, fields " + Arrays.toString(fields);
+	}
+
+	/**
+	 * walks the rows in order. One cursor may be reused with {@link #reset()}.
+	 */
+	public final class Cursor {
+		private int row = -1;
+
+		/** @return whether the cursor moved to another row. */
+		public boolean next() {
+			if (row + 1 >= size) {
+				row = size;
+				return false;
+			}
+			row++;
+			return true;
+		}
+
+		public void reset() {
+			row = -1;
+		}
+
+		public int getRow() {
+			return row;
+		}
+
+		public String getKey() {
+			checkPosition();
+			return keys[row];
+		}
+
+		/** see {@link IssueResultSet#get(int, int)}. */
+		public String get(int column) {
+			checkPosition();
+			return columns[column].get(row);
+		}
+
+		/** see {@link IssueResultSet#getCode(int, int)}. */
+		public int getCode(int column) {
+			checkPosition();
+			return dictionaryColumn(column).codes[row];
+		}
+
+		private void checkPosition() {
+			if (row < 0 || row >= size) throw new NoSuchElementException();
+		}
+	}
+
+	private static abstract class Column {
+		abstract void set(int row, String value);
+		abstract String get(int row);
+		abstract void grow(int capacity);
+	}
+
+	private static class TextColumn extends Column {
+		private String[] values = new String[INITIAL_CAPACITY];
+
+		@Override
+		void set(int row, String value) {
+			values[row] = value;
+		}
+
+		@Override
+		String get(int row) {
+			return values[row];
+		}
+
+		@Override
+		void grow(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+	}
+
+	private static class DictionaryColumn extends Column {
+		private int[] codes = new int[INITIAL_CAPACITY];
+		private final List<String> values = new ArrayList<String>();
+		private final Map<String, Integer> codesByValue = new HashMap<String, Integer>();
+
+		@Override
+		void set(int row, String value) {
+			if (value == null) {
+				codes[row] = -1;
+				return;
+			}
+			Integer code = codesByValue.get(value);
+			if (code == null) {
+				code = values.size();
+				values.add(value);
+				codesByValue.put(value, code);
+			}
+			codes[row] = code;
+		}
+
+		@Override
+		String get(int row) {
+			int code = codes[row];
+			return code < 0 ? null : values.get(code);
+		}
+
+		@Override
+		void grow(int capacity) {
+			codes = Arrays.copyOf(codes, capacity);
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package com.vish.jiralib;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.atlassian.jira.rest.client.api.SearchRestClient;
+import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.atlassian.jira.rest.client.api.domain.SearchResult;
+import com.google.common.collect.Iterables;
+
+/**
+ * a lazy view over all results of a JQL search.
+ * <p>
+ * Results are fetched page by page, walking {@code startAt} until the total reported by JIRA is reached.
+ * As soon as a page is handed out, the request for the following page is sent, so the next page
+ * is on its way while the caller works on the current one. At most two pages are held in memory.
+ * <p>
+ * If a field set is given, only those fields are requested (search {@code fields} parameter), which keeps
+ * both the transfer and the JSON parsing small. Fields not requested are empty in the returned issues.
+ * <p>
+ * With a {@link RequestGovernor}, page requests are paced and failed pages retried. With a {@link RequestCoalescer},
+ * a page another search has in flight (same JQL, page size, start and fields) is shared rather than requested again.
+ * <p>
+ * Every call to {@link #iterator()} runs the search again from the start.
+ * REST errors surface as {@link RestClientException} from {@link Iterator#hasNext()}.
+ * @author vish
+ *
+ */
+public class IssueSearch implements Iterable<Issue> {
+	/** issues requested per page. JIRA may cap this lower (jira.search.views.default.max). */
+	public static final int DEFAULT_PAGE_SIZE = 100;
+
+	private final SearchRestClient searchClient;
+	private final String jql;
+	private final int pageSize;
+	/** fields to request. null requests JIRA's default (all navigable fields). */
+	private final Set<String> fields;
+	/** null to send every page request once, unpaced. */
+	private final RequestGovernor governor;
+	/** null to never share pages. */
+	private final RequestCoalescer coalescer;
+	/** total reported by the most recently fetched page. -1 until a page has been fetched. */
+	private volatile int total = -1;
+
+	public IssueSearch(SearchRestClient searchClient, String jql, int pageSize) {
+		this(searchClient, jql, pageSize, null);
+	}
+
+	/**
+	 * @param searchClient
+	 * @param jql
+	 * @param pageSize issues requested per REST call.
+	 * @param fields fields to request, e.g. from {@link IssueProjection#searchFields(String...)}. null for all navigable fields.
+	 */
+	public IssueSearch(SearchRestClient searchClient, String jql, int pageSize, Set<String> fields) {
+		this(searchClient, jql, pageSize, fields, null, null);
+	}
+
+	IssueSearch(SearchRestClient searchClient, String jql, int pageSize, Set<String> fields, RequestGovernor governor,
+			RequestCoalescer coalescer) {
+		if (pageSize <= 0) throw new IllegalArgumentException("page size must be positive: " + pageSize);
+		this.searchClient = searchClient;
+		this.jql = jql;
+		this.pageSize = pageSize;
+		this.fields = fields == null ? null : Collections.unmodifiableSet(new LinkedHashSet<String>(fields));
+		this.governor = governor;
+		this.coalescer = coalescer;
+	}
+
+	public String getJql() { return jql; }
+	public int getPageSize() { return pageSize; }
+	public Set<String> getFields() { return fields; }
+
+	/**
+	 * @return total number of matching issues as reported by JIRA, or -1 if nothing has been fetched yet.
+	 */
+	public int getTotal() { return total; }
+
+	/**
+	 * send the request for a page, or join the one in flight. Not claimed here.
+	 */
+	private CompletableFuture<SearchResult> fetchPage(final int startAt) {
+		if (coalescer == null || governor == null) return sendPage(startAt);
+		return coalescer.pages.callAsync(coalescer.pageKey(jql, pageSize, startAt, fields), () -> sendPage(startAt));
+	}
+
+	private CompletableFuture<SearchResult> sendPage(final int startAt) {
+		if (governor == null) return RequestGovernor.toCompletableFuture(searchClient.searchJql(jql, pageSize, startAt, fields));
+		return governor.callAsync(true, () -> searchClient.searchJql(jql, pageSize, startAt, fields));
+	}
+
+	/**
+	 * wait for a page sent by {@link #fetchPage(int)}. Failed pages were retried by the governor already.
+	 */
+	private static SearchResult claimPage(CompletableFuture<SearchResult> sent) {
+		try {
+			return sent.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) throw cause;
+			if (e.getCause() instanceof Error cause) throw cause;
+			throw new RestClientException(e.getCause());
+		}
+	}
+
+	@Override
+	public Iterator<Issue> iterator() {
+		return new PageIterator();
+	}
+
+	/**
+	 * iterates one page at a time, keeping the request for the following page in flight.
+	 */
+	private class PageIterator implements Iterator<Issue> {
+		private CompletableFuture<SearchResult> pending = fetchPage(0);
+		private Iterator<Issue> current;
+
+		@Override
+		public boolean hasNext() {
+			while (current == null || !current.hasNext()) {
+				if (pending == null) return false;
+				SearchResult page = claimPage(pending);
+				pending = null;
+				total = page.getTotal();
+				int received = Iterables.size(page.getIssues());
+				int nextStart = page.getStartIndex() + received;
+				//an empty page means the result set shrank under us; stop rather than loop.
+				if (received > 0 && nextStart < page.getTotal()) {
+					pending = fetchPage(nextStart);
+				}
+				current = page.getIssues().iterator();
+			}
+			return true;
+		}
+
+		@Override
+		public Issue next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			return current.next();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("search results are read-only");
+		}
+	}
+}
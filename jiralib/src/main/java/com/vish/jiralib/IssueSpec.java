@@ -0,0 +1,37 @@
+package com.vish.jiralib;
+
+/**
+ * the input for one issue to be created in the current project.
+ * Same fields as {@link Jira#createIssue(String, String, String, String)}.
+ * @author vish
+ *
+ */
+public class IssueSpec {
+	private final String issueType;
+	private final String component;
+	private final String summary;
+	private final String description;
+
+	/**
+	 * @param issueType a valid issue type. Case insensitive.
+	 * @param component a valid component. Case insensitive.
+	 * @param summary issue summary
+	 * @param description issue description
+	 */
+	public IssueSpec(String issueType, String component, String summary, String description) {
+		this.issueType = issueType;
+		this.component = component;
+		this.summary = summary;
+		this.description = description;
+	}
+
+	public String getIssueType() { return issueType; }
+	public String getComponent() { return component; }
+	public String getSummary() { return summary; }
+	public String getDescription() { return description; }
+
+	@Override
+	public String toString() {
+		return "[" + issueType + ", " + component + "] " + summary;
+	}
+}
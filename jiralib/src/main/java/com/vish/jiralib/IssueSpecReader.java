@@ -0,0 +1,39 @@
+package com.vish.jiralib;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * reads {@link IssueSpec}s one at a time from a CSV or JSONL file.
+ * <p>
+ * Columns (CSV header names or JSON keys): {@code issuetype, component, summary, description}.
+ * {@code description} may be left out. See {@link SpecReader} for the file formats.
+ * @author vish
+ *
+ */
+public class IssueSpecReader extends SpecReader<IssueSpec> {
+
+	private static final String[] COLUMNS = { "issuetype", "component", "summary", "description" };
+
+	public IssueSpecReader(Reader reader, Format format) {
+		super(reader, format, COLUMNS, 3);
+	}
+
+	/**
+	 * open a file. {@code .jsonl} and {@code .json} files are read as JSONL, everything else as CSV.
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static IssueSpecReader open(File file) throws IOException {
+		return new IssueSpecReader(new InputStreamReader(new FileInputStream(file), "UTF-8"), formatOf(file));
+	}
+
+	@Override
+	protected IssueSpec create(String[] values) {
+		return new IssueSpec(values[0], values[1], values[2], values[3]);
+	}
+}
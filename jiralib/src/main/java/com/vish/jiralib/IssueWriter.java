@@ -0,0 +1,203 @@
+package com.vish.jiralib;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * writes {@link IssueProjection}s one row at a time as a table, TSV, CSV or JSONL.
+ * <p>
+ * Rows go straight to a buffered writer, so memory use does not grow with the number of issues
+ * when fed from an {@link IssueSearch}.
+ * <ul>
+ * <li>TABLE: for reading on a terminal. Header row, values cut at {@value #TABLE_WIDTH} characters.</li>
+ * <li>TSV: header row, tabs and line breaks inside values written as {@code \t}, {@code \n}, {@code \r}, backslash as {@code \\}.</li>
+ * <li>CSV: header row, values quoted with {@code "} when needed, quotes doubled.</li>
+ * <li>JSONL: one object per issue; empty fields are {@code null}.</li>
+ * </ul>
+ * @author vish
+ *
+ */
+public class IssueWriter implements Closeable, Flushable {
+	public static enum Format { TABLE, TSV, CSV, JSONL }
+
+	/** characters shown per value in {@link Format#TABLE}. */
+	public static final int TABLE_WIDTH = 40;
+
+	private final Writer out;
+	private final Format format;
+	private final String[] columns;
+	private boolean headerWritten;
+
+	/**
+	 * @param out buffered if it is not a {@link BufferedWriter} already.
+	 * @param format
+	 * @param columns field names, see {@link IssueProjection#SUPPORTED_FIELDS}; {@code key} for the issue key.
+	 */
+	public IssueWriter(Writer out, Format format, String... columns) {
+		if (columns.length == 0) throw new IllegalArgumentException("no columns");
+		this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out, 1 << 16);
+		this.format = format;
+		this.columns = columns.clone();
+	}
+
+	/**
+	 * @param file created or overwritten, as UTF-8.
+	 * @param format
+	 * @param columns
+	 * @return
+	 * @throws IOException
+	 */
+	public static IssueWriter open(File file, Format format, String... columns) throws IOException {
+		return open(new FileOutputStream(file), format, columns);
+	}
+
+	/** @param out written as UTF-8, e.g. {@code System.out}. */
+	public static IssueWriter open(OutputStream out, Format format, String... columns) throws IOException {
+		return new IssueWriter(new OutputStreamWriter(out, "UTF-8"), format, columns);
+	}
+
+	public Format getFormat() { return format; }
+	public String[] getColumns() { return columns.clone(); }
+
+	/**
+	 * write the header row now, e.g. for an empty result. Otherwise written before the first issue.
+	 * @throws IOException
+	 */
+	public void writeHeader() throws IOException {
+		if (headerWritten) return;
+		headerWritten = true;
+		if (format == Format.JSONL) return;
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) separator();
+			value(format == Format.TABLE ? columns[i].toUpperCase() : columns[i]);
+		}
+		out.write('\n');
+	}
+
+	public void write(IssueProjection issue) throws IOException {
+		writeHeader();
+		if (format == Format.JSONL) out.write('{');
+		for (int i = 0; i < columns.length; i++) {
+			String value = IssueProjection.KEY.equals(columns[i]) ? issue.getKey() : issue.get(columns[i]);
+			if (i > 0) separator();
+			if (format == Format.JSONL) {
+				jsonString(columns[i]);
+				out.write(':');
+				if (value == null) out.write("null");
+				else jsonString(value);
+			} else {
+				value(value == null ? "" : value);
+			}
+		}
+		if (format == Format.JSONL) out.write('}');
+		out.write('\n');
+	}
+
+	/**
+	 * @param issues
+	 * @return number of issues written.
+	 * @throws IOException
+	 */
+	public int writeAll(Iterable<IssueProjection> issues) throws IOException {
+		int retVal = 0;
+		for (IssueProjection issue : issues) {
+			write(issue);
+			retVal++;
+		}
+		writeHeader();
+		return retVal;
+	}
+
+	private void separator() throws IOException {
+		switch (format) {
+		case TABLE: out.write("\t\t"); break;
+		case TSV: out.write('\t'); break;
+		default: out.write(','); break;
+		}
+	}
+
+	private void value(String value) throws IOException {
+		switch (format) {
+		case TABLE:
+			if (value.length() > TABLE_WIDTH) {
+				out.write(value, 0, TABLE_WIDTH);
+				out.write("...");
+			} else {
+				out.write(value);
+			}
+			break;
+		case TSV:
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				switch (c) {
+				case '\t': out.write("\\t"); break;
+				case '\n': out.write("\\n"); break;
+				case '\r': out.write("\\r"); break;
+				case '\\': out.write("\\\\"); break;
+				default: out.write(c);
+				}
+			}
+			break;
+		case CSV:
+			boolean quote = false;
+			for (int i = 0; i < value.length() && !quote; i++) {
+				char c = value.charAt(i);
+				quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+			}
+			if (!quote) {
+				out.write(value);
+				break;
+			}
+			out.write('"');
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"') out.write('"');
+				out.write(c);
+			}
+			out.write('"');
+			break;
+		default:
+			throw new IllegalStateException(format.toString());
+		}
+	}
+
+	private void jsonString(String s) throws IOException {
+		out.write('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"': out.write("\\\""); break;
+			case '\\': out.write("\\\\"); break;
+			case '\n': out.write("\\n"); break;
+			case '\r': out.write("\\r"); break;
+			case '\t': out.write("\\t"); break;
+			default:
+				if (c < 0x20) {
+					out.write("\\u00");
+					out.write(Character.forDigit(c >> 4, 16));
+					out.write(Character.forDigit(c & 0xf, 16));
+				} else {
+					out.write(c);
+				}
+			}
+		}
+		out.write('"');
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -1,36 +1,43 @@
 package com.vish.jiralib;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.FileEntity;
-import org.apache.http.entity.mime.MultipartEntity;
-import org.apache.http.entity.mime.content.FileBody;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.client.methods.HttpGet;
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
 
-import com.atlassian.httpclient.apache.httpcomponents.MultiPartEntityBuilder;
 import com.atlassian.jira.rest.client.api.IssueRestClient;
 import com.atlassian.jira.rest.client.api.JiraRestClient;
 import com.atlassian.jira.rest.client.api.RestClientException;
+import com.atlassian.jira.rest.client.api.domain.Attachment;
 import com.atlassian.jira.rest.client.api.domain.BasicComponent;
 import com.atlassian.jira.rest.client.api.domain.BasicIssue;
 import com.atlassian.jira.rest.client.api.domain.BasicProject;
-import com.atlassian.jira.rest.client.api.domain.BasicStatus;
 import com.atlassian.jira.rest.client.api.domain.Comment;
-import com.atlassian.jira.rest.client.api.domain.Filter;
 import com.atlassian.jira.rest.client.api.domain.Issue;
 import com.atlassian.jira.rest.client.api.domain.IssueLink;
 import com.atlassian.jira.rest.client.api.domain.IssueLinkType;
@@ -49,6 +56,16 @@ import com.atlassian.jira.rest.client.api.domain.input.TransitionInput;
 import com.atlassian.jira.rest.client.api.domain.util.ErrorCollection;
 import com.atlassian.jira.rest.client.internal.async.AsynchronousJiraRestClientFactory;
 import com.atlassian.jira.rest.client.internal.json.IssueErrorJsonParser;
+import com.atlassian.util.concurrent.Promise;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.vish.jiralib.JiraMetrics.Operation;
 
 /**
  * a common JIRA Rest client. works in any situation where JIRA needs to be used programmatically.
@@ -61,56 +78,209 @@ import com.atlassian.jira.rest.client.internal.json.IssueErrorJsonParser;
  * @author vish
  *
  */
-public class Jira {
+public class Jira implements Closeable {
 	boolean DEBUG = true;
-	/** Jira Rest Client */
-	public static JiraRestClient restClient;
-	/** a list of valid issuetypes for the project. Is updated by constructor. */
+	/** Jira Rest Client. owned by this instance, or shared by all sessions of a {@link JiraSessionPool}. */
+	private final JiraRestClient restClient;
+	/** a list of valid issuetypes for the project. Loaded on first use, see {@link #getIssueTypes()}. */
 	public List<IssueType> issueTypes = new ArrayList<IssueType>();
-	/** a list of valid components for the project. Is updated by constructor. */
+	/** a list of valid components for the project. Loaded on first use, see {@link #getComponents()}. */
 	public List<BasicComponent> components = new ArrayList<BasicComponent>();
+	/** {@link #issueTypes} and {@link #components} by lowercase name. */
+	private final Map<String,IssueType> issueTypesByName = new HashMap<String,IssueType>();
+	private final Map<String,BasicComponent> componentsByName = new HashMap<String,BasicComponent>();
 
-	/** a list of Strings containing valid issue link names. is updated by constructor. */
+	/** a list of Strings containing valid issue link names. Loaded on first use, see {@link #getIssueLinkTypes()}. */
 	public List<String> issueLinkTypes = new ArrayList<String>();
-	/** the current project. set by constructor. */
+	/** the current project. Loaded on first use, see {@link #getProject()}. */
 	public Project project;
+	/** key of the current project. */
+	private final String projectKey;
+	/** in-flight or completed metadata requests. null until first needed. */
+	private Promise<Project> projectPromise;
+	private Promise<Iterable<IssuelinksType>> issueLinkTypesPromise;
+	/** whether {@link #issueTypes}/{@link #components} resp. {@link #issueLinkTypes} are populated. */
+	/** volatile: read without the lock by {@link #isProjectMetadataLoaded()}. */
+	private volatile boolean projectMetadataLoaded;
+	private boolean issueLinkTypesLoaded;
+	/** optional on-disk copy of the metadata. */
+	private File metadataSnapshot;
+	private long metadataSnapshotTtl;
 	/** jira base url */
 	public String url;
 	/** base64 encoded authentication */
 	private String jiraAttachmentAuth; 
+	/** pooled HTTP client for requests outside the JIRA Rest Client. */
+	private final HttpTransport transport;
+	/** runs blocking work of library-level fan-out (bulk operations, multi-key fetches, traversals, uploads). */
+	private volatile ListeningExecutorService executor;
+	/** whether {@link #executor} was created by this instance, and is shut down with it. */
+	private volatile boolean ownsExecutor;
+	/** whether transport and executor belong to this instance (false for {@link JiraSessionPool} sessions). */
+	private final boolean ownsResources;
+	/** default number of in-flight REST calls for bulk operations. */
+	public static final int DEFAULT_BULK_PARALLELISM = 8;
+	private volatile int bulkParallelism = DEFAULT_BULK_PARALLELISM;
+	/** name of JIRA's default link type for duplicates. */
+	public static final String DUPLICATE_LINK_TYPE = "Duplicate";
+	/** default issue limit of {@link #getDuplicatesForIssue(Issue)}. */
+	public static final int DEFAULT_MAX_LINKED_ISSUES = 10000;
+	/** attachment hashes remembered, in memory or in {@link #setAttachmentHashMemo(File)}; an attachment whose hash was dropped is downloaded again to compare. */
+	public static final int MAX_ATTACHMENT_HASHES = 10000;
+	/** issues whose links are read per search request by {@link #traverseLinks(Collection, String, Direction, int, int)}. */
+	static final int LINK_BATCH_SIZE = 50;
+	/** edges per round of {@link #linkIssues(Iterable, int)}: existing links are prefetched per round. */
+	static final int LINK_CHUNK_SIZE = 1000;
+	/** fields requested when only links are needed. */
+	private static final Set<String> LINK_FIELDS = linkFields();
+	/** fields returned by the map-based getters. */
+	private static final String[] ISSUE_MAP_FIELDS = { IssueProjection.SUMMARY, IssueProjection.DESCRIPTION, IssueProjection.STATUS };
+	/** transitions per (project, issuetype, status). */
+	private final TransitionCache transitionCache;
+	/** recently fetched issues. invalidated by writes made through this instance. */
+	private final IssueCache issueCache;
+	/** calls, errors and latency per operation. */
+	private final JiraMetrics metrics;
+	/** pacing and retry of every REST call. */
+	private final RequestGovernor governor;
+	/** shares identical reads in flight. */
+	private final RequestCoalescer coalescer;
+	/** created on first use; stateless, so a race creates a harmless duplicate. */
+	private volatile AsyncJira async;
+	/** content hash per attachment uploaded or downloaded by this session, or read from the memo file. */
+	private volatile AttachmentHashMemo attachmentHashes = new AttachmentHashMemo(null, MAX_ATTACHMENT_HASHES);
 
 	/**
 	 * constructor. initialize JIRA REST Client. 
 	 * <p>
-	 * updates current project. gets latest list of components and issuetypes.
+	 * No REST call is made here. Project metadata (project, issuetypes, components, issue link types) 
+	 * is fetched the first time an operation needs it; see {@link #preloadMetadata()} and {@link #setMetadataSnapshot(File, long)}.
 	 * @param url
 	 * @param u
 	 * @param p
 	 * @throws Exception 
 	 */
 	public Jira(String url, String u, String p, String proj, boolean debug) throws Exception {
-		jiraAttachmentAuth = new String(org.apache.commons.codec.binary.Base64.encodeBase64((u+":"+p).getBytes()));
-		AsynchronousJiraRestClientFactory factory = new AsynchronousJiraRestClientFactory();
-		URI jiraServerUri = null;
+		this(url, createRestClient(url, u, p), basicCredentials(u, p), null, proj, debug);
+	}
+
+	/**
+	 * constructor for sessions of a {@link JiraSessionPool}: client, transport, executor and caches are 
+	 * taken from the pool. With a null pool the instance creates and owns its own.
+	 */
+	Jira(String url, JiraRestClient restClient, String credentials, JiraSessionPool pool, String proj, boolean debug) {
+		System.out.println("project: " + proj);
 		this.url = url;
 		this.DEBUG = debug;
+		this.projectKey = proj;
+		this.restClient = restClient;
+		this.jiraAttachmentAuth = credentials;
+		if (pool == null) {
+			ownsResources = true;
+			transport = new HttpTransport(getAuthorizationHeader(), HttpTransport.DEFAULT_MAX_PER_ROUTE, HttpTransport.DEFAULT_MAX_TOTAL);
+			executor = MoreExecutors.listeningDecorator(JiraExecutors.newExecutor("jiralib"));
+			ownsExecutor = true;
+			transitionCache = new TransitionCache();
+			issueCache = new IssueCache();
+			metrics = new JiraMetrics();
+			governor = new RequestGovernor();
+			transport.setGovernor(governor);
+			coalescer = new RequestCoalescer(issueCache);
+		} else {
+			ownsResources = false;
+			transport = pool.getTransport();
+			executor = pool.getExecutor();
+			transitionCache = pool.getTransitionCache();
+			issueCache = pool.getIssueCache();
+			metrics = pool.getMetrics();
+			governor = pool.getGovernor();
+			coalescer = pool.getRequestCoalescer();
+		}
+	}
+
+	/**
+	 * @return a JIRA Rest Client with basic authentication, or null (after printing the error) for an invalid url.
+	 */
+	static JiraRestClient createRestClient(String url, String u, String p) {
+		AsynchronousJiraRestClientFactory factory = new AsynchronousJiraRestClientFactory();
 		try {
-			System.out.println("project: " + proj);
-			jiraServerUri = new URI(this.url);
-			restClient = factory.createWithBasicHttpAuthentication(jiraServerUri, u, p);
-			//initialize current project
-			project = restClient.getProjectClient().getProject(proj).claim();
-			//update issuetypes and components
-			updateProjectComponents();
-			updateProjectIssueTypes();
-			updateIssueLinkTypes();
+			return factory.createWithBasicHttpAuthentication(new URI(url), u, p);
 		} catch (URISyntaxException e) {
 			System.err.println("ERR:" + e.getMessage());
+			return null;
+		}
+	}
+
+	/** @return base64 encoded {@code user:password}. */
+	static String basicCredentials(String u, String p) {
+		return new String(org.apache.commons.codec.binary.Base64.encodeBase64((u+":"+p).getBytes()));
+	}
+
+	private static Set<String> linkFields() {
+		Set<String> retVal = new LinkedHashSet<String>(IssueProjection.REQUIRED_FIELDS);
+		retVal.add("issuelinks");
+		return Collections.unmodifiableSet(retVal);
+	}
+
+	/**
+	 * @param prefix
+	 * @return a factory for daemon threads named {@code prefix-N}, so library threads never keep the JVM alive.
+	 */
+	static ThreadFactory daemonThreads(final String prefix) {
+		return new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+
+	/**
+	 * @return the JIRA Rest Client used by this instance, for calls this class does not wrap.
+	 */
+	public JiraRestClient getRestClient() {
+		return restClient;
+	}
+
+	/**
+	 * @return the non-blocking form of this instance's operations, sharing its client, caches, governor and metrics.
+	 */
+	public AsyncJira async() {
+		AsyncJira retVal = async;
+		if (retVal == null) async = retVal = new AsyncJira(this);
+		return retVal;
+	}
+
+	/**
+	 * @return executor for library-level fan-out.
+	 */
+	ListeningExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * run library-level fan-out (bulk operations, multi-key fetches, traversals, uploads) on {@code executor} from 
+	 * now on, instead of the default of {@link JiraExecutors}. The caller keeps ownership of it: {@link #close()} does 
+	 * not shut it down. The executor it replaces is shut down if this instance created it.
+	 * @param executor
+	 */
+	public void setExecutor(ExecutorService executor) {
+		ListeningExecutorService old;
+		boolean owned;
+		synchronized (this) {
+			old = this.executor;
+			owned = ownsExecutor;
+			this.executor = MoreExecutors.listeningDecorator(executor);
+			ownsExecutor = false;
 		}
+		if (owned) old.shutdown();
 	}
 
 	public List<BasicProject> getProjects() throws Exception {
-		Iterator<BasicProject> iter = restClient.getProjectClient().getAllProjects().claim().iterator();
+		Iterator<BasicProject> iter = claim(true, () -> restClient.getProjectClient().getAllProjects()).iterator();
 		List<BasicProject> retVal = new ArrayList<BasicProject>();
 		while (iter.hasNext()) {
 			retVal.add(iter.next());
@@ -121,9 +291,19 @@ public class Jira {
 	/**
 	 * parse JIRA Rest errors and get error message and status. Then fail with Exception.
 	 * 
+	 * The REST exception is kept as cause, so that the HTTP status stays available (see {@link JiraMetrics#statusOf(Throwable)}).
+	 * @param e
+	 */
+	private void parseJiraRestError(RestClientException e) throws Exception {
+		throw new Exception(restErrorMessage(e.getErrorCollections()), e);
+	}
+
+	/**
+	 * format JIRA Rest errors (status and messages) as a single line.
 	 * @param e use method {@link RestClientException#getErrorCollections()}
+	 * @return
 	 */
-	private void parseJiraRestError(Collection<ErrorCollection> e) throws Exception {
+	static String restErrorMessage(Collection<ErrorCollection> e) {
 		Iterator<ErrorCollection> iter = e.iterator();
 		String msg = "REST Exception:";
 		while (iter.hasNext()) {
@@ -131,7 +311,7 @@ public class Jira {
 			msg += " (" + coll.getStatus() + ")";
 			msg += " " + coll.getErrorMessages() + " ";
 		}
-		throw new Exception(msg);
+		return msg;
 	}
 
 	/**
@@ -141,27 +321,79 @@ public class Jira {
 	 * key - issue ID<br>
 	 * summary - issue summary<br>
 	 * description<br>
-	 * status - status of issue<br>
+	 * status - status name<br>
 	 * @throws Exception
 	 */
 	public Map<String,String> getIssueByKey(String key) throws Exception {
+		long start = JiraMetrics.start();
+		try {
+			Map<String,String> retVal = doGetIssueByKey(key);
+			metrics.succeeded(Operation.GET_ISSUE_BY_KEY, start);
+			return retVal;
+		} catch (Exception e) {
+			metrics.failed(Operation.GET_ISSUE_BY_KEY, start, e);
+			throw e;
+		}
+	}
+
+	private Map<String,String> doGetIssueByKey(String key) throws Exception {
 		System.out.println("getIssue() " + key);
-		Map<String,String> issueFields = new HashMap<String,String>();
-		try {
-			Issue issue = getIssueObjectByName(key);
-			issueFields.put("key",issue.getKey());
-			issueFields.put("summary",issue.getSummary());
-			issueFields.put("description",issue.getDescription());
-			BasicStatus status = issue.getStatus();
-			issueFields.put("status",status.toString());
+		try {
+			//a cached full issue is free; otherwise fetch only the fields we return.
+			Issue issue = issueCache.get(key);
+			if (issue == null) issue = getIssueFields(key, IssueProjection.searchFields(ISSUE_MAP_FIELDS));
+			Map<String,String> issueFields = IssueProjection.of(issue, ISSUE_MAP_FIELDS).toMap();
 			if (DEBUG) System.out.println(issueFields.toString());
 			return issueFields;
 		} catch (RestClientException e) {
-			parseJiraRestError(e.getErrorCollections());
+			parseJiraRestError(e);
 			throw new Exception ("error fetching issue");
 		}
 	}
 
+	/**
+	 * Retrieve selected fields of an issue. Only these fields are transferred.
+	 * @param key a valid JIRA issue key.
+	 * @param fields field names, see {@link IssueProjection#SUPPORTED_FIELDS}.
+	 * @return {@code Map<String,String>} with key {@code key} and one entry per requested field.
+	 * @throws Exception
+	 */
+	public Map<String,String> getIssueByKey(String key, String... fields) throws Exception {
+		long start = JiraMetrics.start();
+		try {
+			Map<String,String> retVal = doGetIssueFieldsByKey(key, fields);
+			metrics.succeeded(Operation.GET_ISSUE_BY_KEY, start);
+			return retVal;
+		} catch (Exception e) {
+			metrics.failed(Operation.GET_ISSUE_BY_KEY, start, e);
+			throw e;
+		}
+	}
+
+	private Map<String,String> doGetIssueFieldsByKey(String key, String[] fields) throws Exception {
+		try {
+			Map<String,String> issueFields = IssueProjection.of(getIssueFields(key, IssueProjection.searchFields(fields)), fields).toMap();
+			if (DEBUG) System.out.println(issueFields.toString());
+			return issueFields;
+		} catch (RestClientException e) {
+			parseJiraRestError(e);
+			throw new Exception ("error fetching issue");
+		}
+	}
+
+	/**
+	 * fetch an issue with only {@code fields} populated, using a single-issue JQL search. Not cached.
+	 * @param key
+	 * @param fields
+	 * @return
+	 * @throws Exception if there is no such issue.
+	 */
+	private Issue getIssueFields(String key, Set<String> fields) throws Exception {
+		Iterator<Issue> iter = new IssueSearch(restClient.getSearchClient(), "key = \"" + key + "\"", 1, fields, governor, coalescer).iterator();
+		if (!iter.hasNext()) throw new Exception ("issue " + key + " not found");
+		return iter.next();
+	}
+
 
 	/**
 	 * feed in a valid JQL and get issues as a Map.
@@ -171,79 +403,390 @@ public class Jira {
 	 * values:String[summary,description,status]<br>
 	 * summary - issue summary<br>
 	 * description<br>
-	 * status - status of issue<br>
+	 * status - status name<br>
+	 * An adapter over {@link #getIssueResultSet(String, String...)}, which holds large results more compactly.
 	 * @throws Exception
 	 */
 	public Map<String,String[]> getIssuesByJQL(String jql) throws Exception {
-		List<Issue> issues = getIssueObjectsByJQL(jql);
-		Map<String,String[]> issueFields = new HashMap<String,String[]>();
+		long start = JiraMetrics.start();
+		try {
+			Map<String,String[]> retVal = doGetIssuesByJQL(jql);
+			metrics.succeeded(Operation.GET_ISSUES_BY_JQL, start);
+			return retVal;
+		} catch (Exception e) {
+			metrics.failed(Operation.GET_ISSUES_BY_JQL, start, e);
+			throw e;
+		}
+	}
 
-		for (Issue issue : issues) {
-			BasicStatus status = issue.getStatus();
-			issueFields.put(issue.getKey(), new String[]{
-					issue.getSummary(),
-					issue.getDescription(),
-					status.toString()
-			});
+	private Map<String,String[]> doGetIssuesByJQL(String jql) throws Exception {
+		IssueResultSet issues = doGetIssueResultSet(jql, ISSUE_MAP_FIELDS);
+		Map<String,String[]> issueFields = new HashMap<String,String[]>(issues.size() * 4 / 3 + 1);
+		IssueResultSet.Cursor c = issues.cursor();
+		while (c.next()) {
+			issueFields.put(c.getKey(), new String[] { c.get(0), c.get(1), c.get(2) });
 		}
 		return issueFields;
 	}
 
 	/**
-	 * return issue objects as a List. Search by JQL.
+	 * search by JQL and hold selected fields of all matching issues column by column, with low-cardinality fields
+	 * dictionary-encoded. Only the requested fields are transferred. Much smaller than a map or list of issues for 
+	 * large results; see {@link IssueResultSet}.
+	 * @param jql
+	 * @param fields field names, see {@link IssueProjection#SUPPORTED_FIELDS}.
+	 * @return
+	 * @throws Exception
+	 */
+	public IssueResultSet getIssueResultSet(String jql, String... fields) throws Exception {
+		long start = JiraMetrics.start();
+		try {
+			IssueResultSet retVal = doGetIssueResultSet(jql, fields);
+			metrics.succeeded(Operation.GET_ISSUE_RESULT_SET, start);
+			return retVal;
+		} catch (Exception e) {
+			metrics.failed(Operation.GET_ISSUE_RESULT_SET, start, e);
+			throw e;
+		}
+	}
+
+	private IssueResultSet doGetIssueResultSet(String jql, String... fields) throws Exception {
+		IssueResultSet retVal = new IssueResultSet(fields);
+		try {
+			for (Issue issue : searchIssues(jql, IssueProjection.searchFields(fields))) {
+				retVal.add(issue);
+			}
+		} catch (RestClientException e) {
+			parseJiraRestError(e);
+		}
+		if (DEBUG) System.out.println(retVal);
+		return retVal;
+	}
+
+	/**
+	 * return issue objects as a List. Search by JQL. All result pages are fetched. 
+	 * For large result sets prefer {@link #searchIssues(String)}, which does not hold the whole list in memory.
 	 * @param jql
 	 * @return
 	 * @throws Exception
 	 */
 	public List<Issue> getIssueObjectsByJQL(String jql) throws Exception {
+		long start = JiraMetrics.start();
+		try {
+			List<Issue> retVal = doGetIssueObjectsByJQL(jql);
+			metrics.succeeded(Operation.GET_ISSUE_OBJECTS_BY_JQL, start);
+			return retVal;
+		} catch (Exception e) {
+			metrics.failed(Operation.GET_ISSUE_OBJECTS_BY_JQL, start, e);
+			throw e;
+		}
+	}
+
+	private List<Issue> doGetIssueObjectsByJQL(String jql) throws Exception {
 		List<Issue> retVal = new ArrayList<Issue>();
 		try {
-			if (DEBUG) System.out.println("JQL:" + jql);
-			SearchResult result = restClient.getSearchClient().searchJql(jql).claim();
-			if (DEBUG) System.out.println(result.getTotal() + " results");
-			if (result.getTotal() == 0) return retVal;
-			if (result.getTotal() > result.getMaxResults())
-				System.out.println("WARNING: " + result.getTotal() + " results, printing only first " + result.getMaxResults());
-			Iterator<Issue> iter = result.getIssues().iterator();
+			IssueSearch search = searchIssues(jql);
+			Iterator<Issue> iter = search.iterator();
 			while (iter.hasNext()) {
 				retVal.add(iter.next());
 			}
+			if (DEBUG) System.out.println(search.getTotal() + " results");
 			return retVal;
 		} catch (RestClientException e) {
-			parseJiraRestError(e.getErrorCollections());
+			parseJiraRestError(e);
 			return null;
 		}
 	}
 
 	/**
-	 * Private method. Called by constructor.
+	 * search by JQL and iterate over <b>all</b> matching issues, page by page. 
+	 * The next page is requested while the current one is being consumed. 
+	 * Nothing is fetched until iteration starts.
+	 * <p>
+	 * REST errors are thrown as {@link RestClientException} during iteration.
+	 * @param jql
+	 * @return an {@link IssueSearch} over all matching issues.
+	 */
+	public IssueSearch searchIssues(String jql) {
+		return searchIssues(jql, IssueSearch.DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * same as {@link #searchIssues(String)} with a custom page size.
+	 * @param jql
+	 * @param pageSize issues requested per REST call.
+	 * @return
+	 */
+	public IssueSearch searchIssues(String jql, int pageSize) {
+		return searchIssues(jql, pageSize, null);
+	}
+
+	/**
+	 * same as {@link #searchIssues(String)}, requesting only {@code fields}. Other fields of the returned issues are empty.
+	 * @param jql
+	 * @param fields e.g. from {@link IssueProjection#searchFields(String...)}. null for all navigable fields.
+	 * @return
+	 */
+	public IssueSearch searchIssues(String jql, Set<String> fields) {
+		return searchIssues(jql, IssueSearch.DEFAULT_PAGE_SIZE, fields);
+	}
+
+	/**
+	 * same as {@link #searchIssues(String)}, with a custom page size and field set.
+	 * @param jql
+	 * @param pageSize issues requested per REST call.
+	 * @param fields null for all navigable fields.
+	 * @return
+	 */
+	public IssueSearch searchIssues(String jql, int pageSize, Set<String> fields) {
+		if (DEBUG) System.out.println("JQL:" + jql + (fields == null ? "" : " fields:" + fields));
+		return new IssueSearch(restClient.getSearchClient(), jql, pageSize, fields, governor, coalescer);
+	}
+
+	/**
+	 * search by JQL and iterate over lightweight projections of all matching issues. 
+	 * Only the requested fields are transferred and parsed.
+	 * @param jql
+	 * @param fields field names, see {@link IssueProjection#SUPPORTED_FIELDS}.
+	 * @return
+	 */
+	public Iterable<IssueProjection> searchProjections(String jql, String... fields) {
+		return Iterables.transform(searchIssues(jql, IssueProjection.searchFields(fields)), IssueProjection.projector(fields));
+	}
+
+	/**
+	 * run a filter ID and iterate over all resulting issues. See {@link #searchIssues(String)}.
+	 * @param filterId
+	 * @return
+	 * @throws Exception if the filter cannot be fetched.
+	 */
+	public IssueSearch searchIssuesByFilterId(long filterId) throws Exception {
+		return searchIssues(getJqlByFilterId(filterId));
+	}
+
+	/**
+	 * use an on-disk snapshot of the project metadata. If {@code file} holds a snapshot for this project younger 
+	 * than {@code ttlMillis}, it is used instead of fetching the metadata; otherwise it is rewritten after each fetch.
+	 * Call before the first operation.
+	 * @param file
+	 * @param ttlMillis
+	 */
+	public synchronized void setMetadataSnapshot(File file, long ttlMillis) {
+		this.metadataSnapshot = file;
+		this.metadataSnapshotTtl = ttlMillis;
+		MetadataSnapshot snapshot = MetadataSnapshot.read(file, projectKey, ttlMillis);
+		if (snapshot == null) return;
+		if (DEBUG) System.out.println("using metadata snapshot " + file);
+		if (snapshot.issueTypes != null && !projectMetadataLoaded) {
+			for (IssueType it : snapshot.issueTypes) addIssueType(it);
+			for (BasicComponent comp : snapshot.components) addComponent(comp);
+			projectMetadataLoaded = true;
+		}
+		if (snapshot.issueLinkTypes != null && !issueLinkTypesLoaded) {
+			issueLinkTypes.addAll(snapshot.issueLinkTypes);
+			issueLinkTypesLoaded = true;
+		}
+	}
+
+	/**
+	 * fetch all project metadata now, with the requests running concurrently. 
+	 * Use this to fail early on an invalid project, or to pay the metadata cost up front.
+	 * @throws Exception
+	 */
+	public void preloadMetadata() throws Exception {
+		synchronized (this) {
+			if (!projectMetadataLoaded) startProjectFetch();
+			if (!issueLinkTypesLoaded) startIssueLinkTypesFetch();
+		}
+		ensureProjectMetadata();
+		ensureIssueLinkTypes();
+	}
+
+	/** @return the key of the current project. Makes no REST call. */
+	public String getProjectKey() {
+		return projectKey;
+	}
+
+	/**
+	 * @return the current project. Fetched on first call.
+	 * @throws Exception
+	 */
+	public synchronized Project getProject() throws Exception {
+		if (project == null) {
+			startProjectFetch();
+			try {
+				project = governor.claim(projectPromise, true, () -> restClient.getProjectClient().getProject(projectKey).claim());
+			} catch (RestClientException e) {
+				projectPromise = null;
+				parseJiraRestError(e);
+			}
+		}
+		return project;
+	}
+
+	/**
+	 * @return valid issuetypes of the current project. Fetched on first call.
+	 * @throws Exception
+	 */
+	public List<IssueType> getIssueTypes() throws Exception {
+		ensureProjectMetadata();
+		return issueTypes;
+	}
+
+	/**
+	 * @return valid components of the current project. Fetched on first call.
+	 * @throws Exception
+	 */
+	public List<BasicComponent> getComponents() throws Exception {
+		ensureProjectMetadata();
+		return components;
+	}
+
+	/**
+	 * @return names of valid issue link types. Fetched on first call.
+	 * @throws Exception
+	 */
+	public List<String> getIssueLinkTypes() throws Exception {
+		ensureIssueLinkTypes();
+		return issueLinkTypes;
+	}
+
+	private synchronized void startProjectFetch() {
+		if (projectPromise == null) {
+			governor.pace();
+			projectPromise = restClient.getProjectClient().getProject(projectKey);
+		}
+	}
+
+	private synchronized void startIssueLinkTypesFetch() {
+		if (issueLinkTypesPromise == null) {
+			governor.pace();
+			issueLinkTypesPromise = restClient.getMetadataClient().getIssueLinkTypes();
+		}
+	}
+
+	/** @return whether issuetypes and components are loaded. Makes no REST call and never blocks. */
+	boolean isProjectMetadataLoaded() {
+		return projectMetadataLoaded;
+	}
+
+	/**
+	 * load issuetypes and components, from the project, unless already loaded (or read from the snapshot).
 	 * @throws Exception
 	 */
-	private void updateProjectIssueTypes() throws Exception {
+	synchronized void ensureProjectMetadata() throws Exception {
+		if (projectMetadataLoaded) return;
+		setProjectMetadata(getProject());
+	}
+
+	/**
+	 * load issuetypes and components from a fetched project, unless already loaded. Used by {@link AsyncJira},
+	 * which fetches the project without blocking.
+	 * @param p the current project.
+	 */
+	synchronized void setProjectMetadata(Project p) {
+		if (projectMetadataLoaded) return;
+		project = p;
+		updateProjectComponents();
+		updateProjectIssueTypes();
+		projectMetadataLoaded = true;
+		writeMetadataSnapshot();
+	}
+
+	/**
+	 * forget issuetypes and components, e.g. after the project was changed on the server. They are fetched again
+	 * on next use.
+	 */
+	synchronized void resetProjectMetadata() {
+		project = null;
+		projectPromise = null;
+		projectMetadataLoaded = false;
+		issueTypes.clear();
+		issueTypesByName.clear();
+		components.clear();
+		componentsByName.clear();
+	}
+
+	/**
+	 * use issue link types already loaded elsewhere for the same server (link types are not per project).
+	 * @param linkTypes
+	 */
+	synchronized void seedIssueLinkTypes(List<String> linkTypes) {
+		if (issueLinkTypesLoaded) return;
+		issueLinkTypes.addAll(linkTypes);
+		issueLinkTypesLoaded = true;
+	}
+
+	/** @return issue link types if already loaded, else null. Makes no REST call. */
+	synchronized List<String> loadedIssueLinkTypes() {
+		return issueLinkTypesLoaded ? issueLinkTypes : null;
+	}
+
+	private synchronized void ensureIssueLinkTypes() throws Exception {
+		if (issueLinkTypesLoaded) return;
+		startIssueLinkTypesFetch();
+		try {
+			updateIssueLinkTypes();
+		} catch (RestClientException e) {
+			issueLinkTypesPromise = null;
+			parseJiraRestError(e);
+		}
+		issueLinkTypesLoaded = true;
+		writeMetadataSnapshot();
+	}
+
+	private synchronized void writeMetadataSnapshot() {
+		if (metadataSnapshot == null) return;
+		MetadataSnapshot snapshot = new MetadataSnapshot(projectKey);
+		if (projectMetadataLoaded) {
+			snapshot.issueTypes = issueTypes;
+			snapshot.components = components;
+		}
+		if (issueLinkTypesLoaded) snapshot.issueLinkTypes = issueLinkTypes;
+		try {
+			snapshot.write(metadataSnapshot);
+		} catch (IOException e) {
+			System.err.println("WARNING: could not write metadata snapshot " + metadataSnapshot + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Private method. Called on first use of project metadata.
+	 */
+	private void updateProjectIssueTypes() {
 		Iterator<IssueType> iter = project.getIssueTypes().iterator();
 		while (iter.hasNext()) {
-			issueTypes.add(iter.next());
+			addIssueType(iter.next());
 		}
 	}
 
+	private void addIssueType(IssueType it) {
+		issueTypes.add(it);
+		issueTypesByName.put(it.getName().toLowerCase(), it);
+	}
+
 	/**
-	 * Private method. Called by constructor.
-	 * @throws Exception
+	 * Private method. Called on first use of project metadata.
 	 */
-	private void updateProjectComponents() throws Exception {
+	private void updateProjectComponents() {
 		Iterator<BasicComponent> iter = project.getComponents().iterator();
 		while (iter.hasNext()) {
-			components.add(iter.next());
+			addComponent(iter.next());
 		}
 	}
+
+	private void addComponent(BasicComponent comp) {
+		components.add(comp);
+		componentsByName.put(comp.getName().toLowerCase(), comp);
+	}
 	
 	
 	/**
-	 * Private method. Called by constructor.
+	 * Private method. Called on first use of issue link types.
 	 * @throws Exception
 	 */
 	private void updateIssueLinkTypes() throws Exception {
-		Iterator<IssuelinksType> iter = restClient.getMetadataClient().getIssueLinkTypes().claim().iterator();
+		Iterator<IssuelinksType> iter = governor.claim(issueLinkTypesPromise, true, () -> restClient.getMetadataClient().getIssueLinkTypes().claim()).iterator();
 		while (iter.hasNext()) {
 			IssuelinksType issueLinksType = iter.next();
 			issueLinkTypes.add(issueLinksType.getName());
@@ -254,38 +797,262 @@ public class Jira {
 	 * do a bulk-transition on issues found by filter Id.
 	 * @param filterId
 	 * @param targetState
+	 * @return per-issue outcome.
 	 * @throws Exception
 	 */
-	public void bulkTransitionIssuesByFilterId(long filterId, String targetState) throws Exception {
-		List<Issue> issues = getIssueObjectsByFilterId(filterId);
-		doBulkTransition(issues, targetState);
+	public BulkReport bulkTransitionIssuesByFilterId(long filterId, String targetState) throws Exception {
+		return bulkTransitionIssuesByFilterId(filterId, targetState, bulkParallelism);
+	}
+
+	/**
+	 * do a bulk-transition on issues found by filter Id, with up to {@code parallelism} transitions in flight.
+	 * @param filterId
+	 * @param targetState
+	 * @param parallelism
+	 * @return per-issue outcome.
+	 * @throws Exception
+	 */
+	public BulkReport bulkTransitionIssuesByFilterId(long filterId, String targetState, int parallelism) throws Exception {
+		return doBulkTransition(searchIssuesByFilterId(filterId), targetState, parallelism, null);
+	}
+
+	/**
+	 * same as {@link #bulkTransitionIssuesByFilterId(long, String, int)}, recording progress in {@code journal}.
+	 * If the journal holds an earlier run of the same filter and target state, issues it finished are not fetched
+	 * or transitioned again.
+	 * @param filterId
+	 * @param targetState
+	 * @param parallelism
+	 * @param journal a new journal, or one resumed with {@link BulkJournal#resume(java.io.File)}.
+	 * @return per-issue outcome of the issues handled in this run.
+	 * @throws IllegalStateException if the journal belongs to another operation.
+	 * @throws Exception
+	 */
+	public BulkReport bulkTransitionIssuesByFilterId(final long filterId, String targetState, int parallelism, BulkJournal journal) throws Exception {
+		journal.begin("transition\t" + targetState + "\tfilter\t" + filterId);
+		return doBulkTransition(journaledIssues(journal, () -> searchIssuesByFilterId(filterId)), targetState, parallelism, journal);
 	}
 
 	/**
 	 * perform a bulk transition on issues found by JQL.
 	 * @param jql
 	 * @param targetState a valid target state. e.g. "Done". Case insensitive.
+	 * @return per-issue outcome.
+	 * @throws Exception
+	 */
+	public BulkReport bulkTransitionIssuesByJQL(String jql, String targetState) throws Exception {
+		return bulkTransitionIssuesByJQL(jql, targetState, bulkParallelism);
+	}
+
+	/**
+	 * perform a bulk transition on issues found by JQL, with up to {@code parallelism} transitions in flight.
+	 * @param jql
+	 * @param targetState a valid target state. e.g. "Done". Case insensitive.
+	 * @param parallelism
+	 * @return per-issue outcome.
+	 * @throws Exception
+	 */
+	public BulkReport bulkTransitionIssuesByJQL(String jql, String targetState, int parallelism) throws Exception {
+		return doBulkTransition(searchIssues(jql), targetState, parallelism, null);
+	}
+
+	/**
+	 * same as {@link #bulkTransitionIssuesByJQL(String, String, int)}, recording progress in {@code journal}.
+	 * If the journal holds an earlier run of the same JQL and target state, issues it finished are not fetched
+	 * or transitioned again.
+	 * @param jql
+	 * @param targetState
+	 * @param parallelism
+	 * @param journal a new journal, or one resumed with {@link BulkJournal#resume(java.io.File)}.
+	 * @return per-issue outcome of the issues handled in this run.
+	 * @throws IllegalStateException if the journal belongs to another operation.
 	 * @throws Exception
 	 */
-	public void bulkTransitionIssuesByJQL(String jql, String targetState) throws Exception {
-		List<Issue> issues = getIssueObjectsByJQL(jql);
-		doBulkTransition(issues, targetState);
+	public BulkReport bulkTransitionIssuesByJQL(final String jql, String targetState, int parallelism, BulkJournal journal) throws Exception {
+		journal.begin("transition\t" + targetState + "\tjql\t" + jql);
+		return doBulkTransition(journaledIssues(journal, () -> searchIssues(jql)), targetState, parallelism, journal);
+	}
+
+	/**
+	 * the issues of a journaled operation still to be done. Once the journal's plan is complete, only the remaining
+	 * issues are fetched, by key; before that the query is run again and issues already done are left out.
+	 * Issues are planned in the journal as they are returned.
+	 */
+	private Iterable<Issue> journaledIssues(final BulkJournal journal, Callable<Iterable<Issue>> query) throws Exception {
+		if (journal.getPlannedCount() > 0) 
+			System.out.println("resuming " + journal);
+		if (journal.isPlanComplete()) return issuesByKey(journal.getRemaining());
+		final Iterable<Issue> issues = query.call();
+		return new Iterable<Issue>() {
+			@Override
+			public Iterator<Issue> iterator() {
+				final Iterator<Issue> iter = issues.iterator();
+				return new AbstractIterator<Issue>() {
+					@Override
+					protected Issue computeNext() {
+						try {
+							while (iter.hasNext()) {
+								Issue issue = iter.next();
+								if (journal.isDone(issue.getKey())) continue;
+								journal.planned(issue.getKey());
+								return issue;
+							}
+							journal.planComplete();
+						} catch (IOException e) {
+							throw new RuntimeException("cannot write " + journal.getFile(), e);
+						}
+						return endOfData();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * fetch issues by key, {@value #LINK_BATCH_SIZE} per search request, one batch at a time.
+	 * Issues that no longer exist are left out.
+	 */
+	private Iterable<Issue> issuesByKey(final List<String> keys) {
+		return new Iterable<Issue>() {
+			@Override
+			public Iterator<Issue> iterator() {
+				return new AbstractIterator<Issue>() {
+					private int next;
+					private Iterator<Issue> batch = Collections.<Issue>emptyIterator();
+					@Override
+					protected Issue computeNext() {
+						while (!batch.hasNext()) {
+							if (next >= keys.size()) return endOfData();
+							List<String> batchKeys = keys.subList(next, Math.min(keys.size(), next + LINK_BATCH_SIZE));
+							next += batchKeys.size();
+							try {
+								batch = fetchIssueBatch(batchKeys).iterator();
+							} catch (RuntimeException e) {
+								throw e;
+							} catch (Exception e) {
+								throw new RuntimeException(e);
+							}
+						}
+						return batch.next();
+					}
+				};
+			}
+		};
+	}
+
+	private List<Issue> fetchIssueBatch(List<String> keys) throws Exception {
+		List<Issue> retVal = new ArrayList<Issue>(keys.size());
+		try {
+			for (Issue issue : searchIssues(keyInJql(keys), keys.size())) retVal.add(issue);
+		} catch (RestClientException e) {
+			//JQL rejects the whole batch if one key does not exist: read those issues one by one
+			if (JiraMetrics.statusOf(e) != 400) throw e;
+			retVal.clear();
+			for (String key : keys) {
+				Issue issue = getIssueObjectIfExists(key);
+				if (issue != null) retVal.add(issue);
+			}
+		}
+		return retVal;
 	}
 
-	private void doBulkTransition(List<Issue> issues, String targetState) throws Exception {
-		//check validity of transitions only for first issue
-		//get transition info for first issue. 
-		int transitionId = -1;
-		if (issues.size() > 0) { 
-			transitionId = getTransitionIdByName(issues.get(0), targetState);
+	private static String keyInJql(List<String> keys) {
+		StringBuilder jql = new StringBuilder("key in (");
+		for (int i = 0; i < keys.size(); i++) jql.append(i == 0 ? "\"" : ", \"").append(keys.get(i)).append('"');
+		return jql.append(')').toString();
+	}
+
+	/**
+	 * transition issues as they arrive from the search, keeping {@code parallelism} async transitions in flight.
+	 * Issues already where the transition leads are skipped: in a status named {@code targetState}, or in the status
+	 * the transition's {@code to} field names for their workflow. Issues the transition is not available to are decided
+	 * at the end of the run, once other issues of their workflow have shown the destination.
+	 * Failures are recorded and do not stop the run.
+	 * <p>
+	 * The transition ID is resolved per (project, issuetype, status) through the {@link TransitionCache}, 
+	 * so mixed result sets are handled with one metadata call per group.
+	 * @param journal null for none.
+	 */
+	private BulkReport doBulkTransition(Iterable<Issue> issues, final String targetState, int parallelism, BulkJournal journal) throws Exception {
+		long start = JiraMetrics.start();
+		try {
+			BulkReport retVal = runBulkTransition(issues, targetState, parallelism, journal);
+			metrics.succeeded(Operation.BULK_TRANSITION, start);
+			return retVal;
+		} catch (Exception e) {
+			metrics.failed(Operation.BULK_TRANSITION, start, e);
+			throw e;
 		}
-		if (DEBUG) System.out.println("transition ID: " + transitionId);
-		//loop through issues and transition them.
-		for (Issue issue : issues) {
-			System.out.println(issue.getKey()+ ": " + issue.getStatus().getName() + " > " + targetState);
-			transitionIssue(issue,transitionId);
+	}
+
+	private BulkReport runBulkTransition(Iterable<Issue> issues, final String targetState, int parallelism, BulkJournal journal) throws Exception {
+		BulkRunner runner = new BulkRunner(parallelism, journal);
+		TransitionTarget target = new TransitionTarget(targetState);
+		//issues the transition is not available to, decided once the run has seen where it leads
+		List<Issue> deferred = new ArrayList<Issue>();
+		BulkReport report;
+		try {
+			for (final Issue issue : issues) {
+				String workflow = TransitionCache.workflowOf(issue);
+				String status = issue.getStatus().getName();
+				if (target.isReached(workflow, String.valueOf(issue.getStatus().getId()), status)) {
+					runner.skip(issue.getKey(), "already in " + status);
+					continue;
+				}
+				Integer transitionId;
+				String destination;
+				try {
+					transitionId = findTransitionId(getTransitions(issue), targetState);
+					destination = transitionId == null ? null : getTransitionDestination(issue, transitionId);
+				} catch (RestClientException | IOException | JSONException e) {
+					runner.fail(issue.getKey(), BulkRunner.describe(e));
+					continue;
+				}
+				if (transitionId == null) {
+					if (target.isKnown(workflow)) runner.fail(issue.getKey(), transitionNotAvailable(issue, targetState));
+					else deferred.add(issue);
+					continue;
+				}
+				if (destination != null) target.learned(workflow, destination);
+				System.out.println(issue.getKey()+ ": " + status + " > " + targetState);
+				final TransitionInput transition = new TransitionInput(transitionId);
+				//a blocking governed call per transition, so throttled ones are retried and concurrency adapts
+				runner.submit(issue.getKey(), () -> {
+					ListenableFuture<Void> f = executor.submit(() -> claim(false, () -> restClient.getIssueClient().transition(issue, transition)));
+					f.addListener(invalidateIssue(issue.getKey()), BulkRunner.CALLER_RUNS);
+					return f;
+				});
+			}
+			for (Issue issue : deferred) {
+				String status = issue.getStatus().getName();
+				if (target.isReached(TransitionCache.workflowOf(issue), String.valueOf(issue.getStatus().getId()), status))
+					runner.skip(issue.getKey(), "already in " + status);
+				else
+					runner.fail(issue.getKey(), transitionNotAvailable(issue, targetState));
+			}
+		} catch (RestClientException e) {
+			parseJiraRestError(e);
+		} finally {
+			report = runner.await();
 		}
+		if (journal != null) journal.sync();
+		System.out.println("bulk transition > " + targetState + ": " + report);
+		return report;
+	}
+
+	private static String transitionNotAvailable(Issue issue, String targetState) {
+		return "transition " + targetState + " not available from " + issue.getStatus().getName() + " for " + issue.getIssueType().getName();
+	}
 
+	/** @return number of REST calls bulk operations keep in flight by default. */
+	public int getBulkParallelism() { return bulkParallelism; }
+
+	/**
+	 * @param bulkParallelism number of REST calls bulk operations keep in flight by default.
+	 */
+	public void setBulkParallelism(int bulkParallelism) {
+		if (bulkParallelism <= 0) throw new IllegalArgumentException("parallelism must be positive: " + bulkParallelism);
+		this.bulkParallelism = bulkParallelism;
 	}
 
 	/**
@@ -295,15 +1062,24 @@ public class Jira {
 	 * @throws Exception
 	 */
 	public List<Issue> getIssueObjectsByFilterId(long filterId) throws Exception {
+		return getIssueObjectsByJQL(getJqlByFilterId(filterId));
+	}
+
+	/**
+	 * get the JQL behind a saved filter.
+	 * @param filterId
+	 * @return
+	 * @throws Exception
+	 */
+	public String getJqlByFilterId(final long filterId) throws Exception {
 		System.out.println("Getting issues using filter-id: " + filterId);
 		String jql = null;
 		try {
-			Filter filter = restClient.getSearchClient().getFilter(filterId).claim();
-			jql = filter.getJql();			
+			jql = coalescer.filters.call(filterId, () -> claim(true, () -> restClient.getSearchClient().getFilter(filterId)).getJql());
 		} catch (RestClientException e) {
-			parseJiraRestError(e.getErrorCollections()); 
+			parseJiraRestError(e); 
 		}
-		return getIssueObjectsByJQL(jql);
+		return jql;
 	}
 
 
@@ -313,27 +1089,90 @@ public class Jira {
 	 * @param transitionId
 	 * @throws Exception
 	 */
-	public void transitionIssue(Issue issue,int transitionId) throws Exception {
-		String status = issue.getStatus().getName();
-		TransitionInput transition = new TransitionInput(transitionId);
-		restClient.getIssueClient().transition(issue, transition).claim();
+	public void transitionIssue(final Issue issue,int transitionId) throws Exception {
+		final TransitionInput transition = new TransitionInput(transitionId);
+		long start = JiraMetrics.start();
+		try {
+			claim(false, () -> restClient.getIssueClient().transition(issue, transition));
+			metrics.succeeded(Operation.TRANSITION_ISSUE, start);
+		} catch (Exception e) {
+			metrics.failed(Operation.TRANSITION_ISSUE, start, e);
+			throw e;
+		} finally {
+			issueCache.invalidate(issue.getKey());
+		}
 	}
 
 	/**
-	 * get list of transitions for an issue.
+	 * get list of transitions for an issue. Served from the {@link TransitionCache} when another issue 
+	 * of the same project, issuetype and status was looked up recently.
 	 * @param issue
 	 * @return
 	 * @throws Exception
 	 */
-	private List<Transition> getTransitions(Issue issue) throws Exception {
-		Iterator<Transition> iter = restClient.getIssueClient().getTransitions(issue).claim().iterator();
-		List<Transition> retVal = new ArrayList<Transition>();
-		while (iter.hasNext()) {
-			retVal.add(iter.next());
+	private List<Transition> getTransitions(final Issue issue) throws Exception {
+		final String cacheKey = TransitionCache.keyOf(issue);
+		List<Transition> retVal = transitionCache.get(cacheKey);
+		if (retVal != null) return retVal;
+		return coalescer.transitions.call(cacheKey, () -> {
+			Iterator<Transition> iter = claim(true, () -> restClient.getIssueClient().getTransitions(issue)).iterator();
+			List<Transition> transitions = new ArrayList<Transition>();
+			while (iter.hasNext()) {
+				transitions.add(iter.next());
+			}
+			transitionCache.put(cacheKey, transitions);
+			return transitions;
+		});
+	}
+
+	/**
+	 * get the status a transition leads to, from the {@code to} field of the transitions resource, which the JIRA Rest
+	 * Client leaves out. Cached in the {@link TransitionCache} with the transitions.
+	 * @param issue
+	 * @param transitionId a transition available to the issue.
+	 * @return the destination status ID, or null if JIRA does not say.
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private String getTransitionDestination(Issue issue, int transitionId) throws IOException, JSONException {
+		String cacheKey = TransitionCache.keyOf(issue);
+		String retVal = transitionCache.getDestination(cacheKey, transitionId);
+		if (retVal != null) return retVal;
+		HttpTransport.Response response = transport.execute(
+				new HttpGet(url + "/rest/api/2/issue/" + issue.getKey() + "/transitions?transitionId=" + transitionId));
+		if (!response.isSuccess()) throw new IOException("transitions of " + issue.getKey() + " not read: " + response);
+		JSONArray transitions = new JSONObject(response.getBody()).getJSONArray("transitions");
+		for (int i = 0; i < transitions.length(); i++) {
+			JSONObject t = transitions.getJSONObject(i);
+			JSONObject to = t.optJSONObject("to");
+			if (to != null && String.valueOf(transitionId).equals(t.optString("id"))) retVal = to.optString("id", null);
 		}
+		if (retVal != null) transitionCache.putDestination(cacheKey, transitionId, retVal);
 		return retVal;
 	}
 
+	/**
+	 * @return the transition cache of this instance, e.g. to change the TTL or invalidate after a workflow change.
+	 */
+	public TransitionCache getTransitionCache() {
+		return transitionCache;
+	}
+
+	/**
+	 * @param transitions
+	 * @param name transition name. Case insensitive.
+	 * @return the transition ID, or null if no transition has that name.
+	 */
+	Integer findTransitionId(List<Transition> transitions, String name) {
+		for (Transition t : transitions) {
+			if (DEBUG) System.out.println("transition:" + t);
+			if (t.getName().equalsIgnoreCase(name)) {
+				return t.getId();
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * This method gets you the transition ID for a given issue and a given transition name. This is for use in transitioning issues
 	 * between states. <p>
@@ -344,50 +1183,168 @@ public class Jira {
 	 * @throws Exception
 	 */
 	public int getTransitionIdByName(Issue issue,String name) throws Exception {
-		Iterator<Transition> iter = restClient.getIssueClient().getTransitions(issue).get().iterator();
-		while (iter.hasNext()) {
-			Transition t = iter.next();
-			if (DEBUG) System.out.println("transition:" + t);
-			if (t.getName().toLowerCase().equals(name.toLowerCase())) {
-				return t.getId();
+		Integer transitionId = findTransitionId(getTransitions(issue), name);
+		if (transitionId != null) return transitionId;
+		throw new Exception ("transition " + name + " not found! Check whether your JIRA account has required permissions.");
+	}
+
+	/**
+	 * get {@link IssueType} object of the current project from string. Call {@link #ensureProjectMetadata()} first.
+	 * @param issueType the issue-type as a string e.g "Bug". Case-insensitive.
+	 * @return null if the project has no such issue type.
+	 */
+	IssueType getIssueTypeByName(String issueType) {
+		return issueType == null ? null : issueTypesByName.get(issueType.toLowerCase());
+	}
+
+	/**
+	 * get {@link BasicComponent} object of the current project from string. Call {@link #ensureProjectMetadata()} first.
+	 * @param comp component name. Case-insensitive.
+	 * @return null if the project has no such component.
+	 */
+	BasicComponent getComponentByName(String comp) {
+		return comp == null ? null : componentsByName.get(comp.toLowerCase());
+	}
+
+	/**
+	 * Private method. Given issue name (i.e issue Key) return an Issue object.
+	 * Served from the {@link IssueCache} if the issue was fetched recently; concurrent callers for the same key
+	 * share one request (see {@link RequestCoalescer}).
+	 * @param key
+	 * @return
+	 * @throws Exception
+	 */
+	protected Issue getIssueObjectByName(final String key) throws Exception {
+		Issue issue = issueCache.get(key);
+		if (issue != null) return issue;
+		final long generation = issueCache.generation();
+		return coalescer.issues.call(coalescer.issueKey(key), () -> {
+			Issue fetched = claim(true, () -> restClient.getIssueClient().getIssue(key));
+			issueCache.put(key, fetched, generation);
+			return fetched;
+		});
+	}
+
+	/**
+	 * Given issue key return an Issue object, with additional expansions (e.g. changelog). Not cached.
+	 * @param key
+	 * @param expand
+	 * @return
+	 * @throws Exception
+	 */
+	public Issue getIssueObjectByName(final String key, final Iterable<IssueRestClient.Expandos> expand) throws Exception {
+		try {
+			return claim(true, () -> restClient.getIssueClient().getIssue(key, expand));
+		} catch (RestClientException e) {
+			parseJiraRestError(e);
+			return null;
+		}
+	}
+
+	/**
+	 * fetch several issues concurrently, one task per key on the executor (see {@link #setExecutor(ExecutorService)}).
+	 * Issues in the {@link IssueCache} are not fetched again; calls are paced by the {@link RequestGovernor}.
+	 * @param keys
+	 * @return issues by key, in the order of {@code keys}. Issues that do not exist or are not visible are left out.
+	 * @throws Exception the first other failure.
+	 */
+	public Map<String, Issue> getIssueObjectsByKeys(Collection<String> keys) throws Exception {
+		long start = JiraMetrics.start();
+		try {
+			Map<String, Issue> retVal = doGetIssueObjectsByKeys(keys);
+			metrics.succeeded(Operation.GET_ISSUE_OBJECTS_BY_KEYS, start);
+			return retVal;
+		} catch (Exception e) {
+			metrics.failed(Operation.GET_ISSUE_OBJECTS_BY_KEYS, start, e);
+			throw e;
+		}
+	}
+
+	private Map<String, Issue> doGetIssueObjectsByKeys(Collection<String> keys) throws Exception {
+		List<String> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+		List<ListenableFuture<Issue>> futures = JiraExecutors.fanOut(executor, distinct, bulkParallelism, key -> () -> getIssueObjectIfExists(key));
+		Map<String, Issue> retVal = new LinkedHashMap<>();
+		try {
+			for (int i = 0; i < distinct.size(); i++) {
+				Issue issue = futures.get(i).get();
+				if (issue != null) retVal.put(distinct.get(i), issue);
 			}
+		} catch (ExecutionException e) {
+			for (ListenableFuture<Issue> f : futures) f.cancel(true);
+			if (e.getCause() instanceof Exception cause) throw cause;
+			throw e;
 		}
-		throw new Exception ("transition " + name + " not found! Check whether your JIRA account has required permissions.");
+		return retVal;
+	}
+
+	/** @return the issue, or null if JIRA answers 404. */
+	private Issue getIssueObjectIfExists(String key) throws Exception {
+		try {
+			return getIssueObjectByName(key);
+		} catch (RestClientException e) {
+			if (JiraMetrics.statusOf(e) == 404) return null;
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the read coalescing of this instance, for statistics.
+	 */
+	public RequestCoalescer getRequestCoalescer() {
+		return coalescer;
+	}
+
+	/**
+	 * @return the issue cache of this instance, for hit/miss statistics, sizing and manual invalidation.
+	 */
+	public IssueCache getIssueCache() {
+		return issueCache;
 	}
 
 	/**
-	 * get {@link IssueType} object from string.
-	 * @param p {@link Project} object referencing current JIRA project.
-	 * @param issueType the issue-type as a string e.g "Bug". Case-insensitive.
+	 * open the local mirror of the current project kept in {@code file}, see {@link IssueMirror}. 
+	 * Makes no REST call; call {@link IssueMirror#refresh()} to bring it up to date.
+	 * @param file created on first refresh.
 	 * @return
-	 * @throws Exception
+	 * @throws IOException
 	 */
-	private IssueType getIssueTypeByName(Project p, String issueType) throws Exception {
-		for (IssueType it : issueTypes) {
-			if (it.getName().toLowerCase().equals(issueType.toLowerCase())) {
-				return it;
-			}
-		}
-		return (IssueType) null;
+	public IssueMirror openMirror(File file) throws IOException {
+		return new IssueMirror(this, projectKey, file);
 	}
 
-	private BasicComponent getComponentByName(Project p, String comp) throws Exception {
-		for (BasicComponent it : components) {
-			if (it.getName().toLowerCase().equals(comp.toLowerCase())) {
-				return it;
-			}
-		}
-		return (BasicComponent) null;
+	/**
+	 * @return per-operation metrics of this instance (shared by the sessions of a {@link JiraSessionPool}).
+	 * See {@link JiraMetrics#registerMBeans(String)} to publish them over JMX.
+	 */
+	public JiraMetrics getMetrics() {
+		return metrics;
 	}
 
 	/**
-	 * Private method. Given issue name (i.e issue Key) return an Issue object.
-	 * @param key
+	 * @return the governor pacing and retrying this instance's REST calls (shared by the sessions of a 
+	 * {@link JiraSessionPool}), e.g. to set a rate limit.
+	 */
+	public RequestGovernor getGovernor() {
+		return governor;
+	}
+
+	/**
+	 * send a JIRA Rest Client request through the {@link RequestGovernor} and wait for its result.
+	 * @param idempotent whether the request may be repeated after a transient server error.
+	 * @param request sends the request; called again for each retry.
 	 * @return
-	 * @throws Exception
+	 * @throws Exception the {@link RestClientException} of the last attempt.
 	 */
-	protected Issue getIssueObjectByName(String key) throws Exception {
-		return restClient.getIssueClient().getIssue(key).claim();
+	private <T> T claim(boolean idempotent, final Callable<Promise<T>> request) throws Exception {
+		return governor.call(idempotent, () -> request.call().claim());
+	}
+
+	/**
+	 * @param key
+	 * @return a task that drops {@code key} from the {@link IssueCache}. used as completion listener for async writes.
+	 */
+	private Runnable invalidateIssue(final String key) {
+		return () -> issueCache.invalidate(key);
 	}
 
 
@@ -404,15 +1361,28 @@ public class Jira {
 			String component,
 			String summary,
 			String description) throws Exception {
-		System.out.println("createIssue(): proj: " + project.getKey() + 
+		long start = JiraMetrics.start();
+		try {
+			String retVal = doCreateIssue(issueType, component, summary, description);
+			metrics.succeeded(Operation.CREATE_ISSUE, start);
+			return retVal;
+		} catch (Exception e) {
+			metrics.failed(Operation.CREATE_ISSUE, start, e);
+			throw e;
+		}
+	}
+
+	private String doCreateIssue(String issueType, String component, String summary, String description) throws Exception {
+		System.out.println("createIssue(): proj: " + projectKey + 
 				", type: " + issueType + 
 				", component: " + component + 
 				(DEBUG? 
 						", summary: " + summary + 
 						", description: " + description 
 						: ""));
-		IssueType it = getIssueTypeByName(project, issueType);
-		BasicComponent comp = getComponentByName(project, component);
+		ensureProjectMetadata();
+		IssueType it = getIssueTypeByName(issueType);
+		BasicComponent comp = getComponentByName(component);
 
 		//error handling
 		if (it == null) throw new Exception ("invalid issue type: " + issueType + 
@@ -420,64 +1390,334 @@ public class Jira {
 		if (comp == null) throw new Exception ("invalid component: " + component + 
 				". valid values are:" + Arrays.toString(components.toArray()));
 
-		IssueInputBuilder builder = new IssueInputBuilder(project, it);
-		IssueInput issueInput = builder	
+		final IssueInput input = buildIssueInput(it, comp, summary, description);
+		BasicIssue issue = claim(false, () -> restClient.getIssueClient().createIssue(input));
+		System.out.println(issue.getKey() + " created");	
+		return issue.getKey();
+	}
+
+	IssueInput buildIssueInput(IssueType it, BasicComponent comp, String summary, String description) {
+		IssueInputBuilder builder = new IssueInputBuilder(projectKey, it.getId());
+		return builder	
 				.setComponents(comp)
 				.setDescription(description)
 				.setSummary(summary)
 
 				.build()
 				;
-		BasicIssue issue = restClient.getIssueClient().createIssue(issueInput).claim();
-		System.out.println(issue.getKey() + " created");	
-		return issue.getKey();
 	}
 
 	/**
-	 * add attachment to existing issue. 
+	 * Create many issues in the current project using JIRA's bulk-create resource. 
+	 * Specs are validated against the project's issue types and components and sent in chunks of 
+	 * {@value BulkIssueCreator#CHUNK_SIZE}, with several chunks in flight. A failing item does not stop the run.
+	 * @param specs read lazily, e.g. an {@link IssueSpecReader}.
+	 * @return created keys and per-item errors.
+	 * @throws Exception
+	 */
+	public BulkCreateResult createIssues(Iterable<IssueSpec> specs) throws Exception {
+		return createIssues(specs, bulkParallelism);
+	}
+
+	/**
+	 * same as {@link #createIssues(Iterable)} with up to {@code parallelism} chunks in flight.
+	 * @param specs
+	 * @param parallelism
+	 * @return
+	 * @throws Exception
+	 */
+	public BulkCreateResult createIssues(Iterable<IssueSpec> specs, int parallelism) throws Exception {
+		long start = JiraMetrics.start();
+		try {
+			BulkCreateResult retVal = doCreateIssues(specs, parallelism);
+			metrics.succeeded(Operation.CREATE_ISSUES, start);
+			return retVal;
+		} catch (Exception e) {
+			metrics.failed(Operation.CREATE_ISSUES, start, e);
+			throw e;
+		}
+	}
+
+	private BulkCreateResult doCreateIssues(Iterable<IssueSpec> specs, int parallelism) throws Exception {
+		System.out.println("createIssues(): proj: " + projectKey);
+		ensureProjectMetadata();
+		BulkCreateResult result = new BulkIssueCreator(this, parallelism).create(specs);
+		System.out.println("createIssues(): " + result);
+		return result;
+	}
+
+	/**
+	 * @return value of the HTTP Authorization header for requests made outside the JIRA Rest Client.
+	 */
+	String getAuthorizationHeader() {
+		return "Basic " + jiraAttachmentAuth;
+	}
+
+	/**
+	 * add attachment to existing issue. The file is streamed over a pooled connection.
 	 * @param issueKey
 	 * @param fullfilename
 	 * @throws IOException
 	 */
 	public void addAttachmentToIssue(String issueKey, File fullfilename) throws IOException {
-		boolean useMultiPartEntity = true;
-		CloseableHttpClient httpclient = HttpClients.createDefault();
-
-		HttpPost httppost = new HttpPost(url + "/rest/api/latest/issue/" + issueKey + "/attachments");
-		httppost.setHeader("X-Atlassian-Token", "nocheck");
-		httppost.setHeader("Authorization", "Basic "+ jiraAttachmentAuth);
-
-		//	    File fileToUpload = new File(fullfilename);
-		//TODO multipartentity kept giving me FileNotFoundException
-		if (useMultiPartEntity) {
-			FileBody fileBody = new FileBody(fullfilename);
-			MultipartEntity entity = new MultipartEntity();
-			entity.addPart("file", fileBody);
-			MultiPartEntityBuilder builder = new MultiPartEntityBuilder(entity);
-			builder.build();
-			httppost.setEntity(entity);
-		} else {
-			FileEntity fileEntity = new FileEntity(fullfilename);
-			httppost.setEntity(fileEntity);
+		long start = JiraMetrics.start();
+		HttpTransport.Response response;
+		try {
+			response = uploadAttachment(issueKey, fullfilename);
+		} catch (IOException e) {
+			metrics.failed(Operation.ADD_ATTACHMENT, start, e);
+			throw e;
+		}
+		if(response.getStatus() == 200) {
+			metrics.succeeded(Operation.ADD_ATTACHMENT, start);
+			if (DEBUG) System.out.println("file attached!"); 
+		}
+		else {
+			metrics.failed(Operation.ADD_ATTACHMENT, start, response.getStatus());
+			System.err.println("file not attached: " + response);
+		}
+	}
+
+	private HttpTransport.Response uploadAttachment(String issueKey, File file) throws IOException {
+		String attachmentsUrl = url + "/rest/api/latest/issue/" + issueKey + "/attachments";
+		if (DEBUG) System.out.println("executing request: POST " + attachmentsUrl + " " + file);
+		try {
+			return transport.postFile(attachmentsUrl, file);
+		} finally {
+			issueCache.invalidate(issueKey);
+		}
+	}
+
+	/**
+	 * upload several files to an existing issue, in parallel over the connection pool.
+	 * @param issueKey
+	 * @param files
+	 * @return per-file outcome, keyed by file name. A failed upload does not stop the others.
+	 * @throws Exception
+	 */
+	public BulkReport addAttachmentsToIssue(final String issueKey, Collection<File> files) throws Exception {
+		long start = JiraMetrics.start();
+		try {
+			BulkReport retVal = doAddAttachmentsToIssue(issueKey, files);
+			metrics.succeeded(Operation.ADD_ATTACHMENTS, start);
+			return retVal;
+		} catch (Exception e) {
+			metrics.failed(Operation.ADD_ATTACHMENTS, start, e);
+			throw e;
+		}
+	}
+
+	private BulkReport doAddAttachmentsToIssue(final String issueKey, Collection<File> files) throws Exception {
+		//one upload per pooled connection
+		BulkRunner runner = new BulkRunner(transport.getMaxPerRoute());
+		for (final File file : files) {
+			runner.submit(file.getName(), () -> executor.submit(() -> {
+				HttpTransport.Response response = uploadAttachment(issueKey, file);
+				if (response.getStatus() != 200) throw new IOException("file not attached: " + response);
+				return response;
+			}));
+		}
+		BulkReport report = runner.await();
+		System.out.println("attachments for " + issueKey + ": " + report);
+		return report;
+	}
+
+	/**
+	 * upload every regular file in a directory (not recursive) to an existing issue. 
+	 * See {@link #addAttachmentsToIssue(String, Collection)}.
+	 * @param issueKey
+	 * @param directory
+	 * @return per-file outcome, keyed by file name.
+	 * @throws Exception
+	 */
+	public BulkReport addAttachmentDirectoryToIssue(String issueKey, File directory) throws Exception {
+		return addAttachmentsToIssue(issueKey, regularFiles(directory));
+	}
+
+	private static List<File> regularFiles(File directory) throws IOException {
+		File[] entries = directory.listFiles();
+		if (entries == null) throw new IOException("not a readable directory: " + directory);
+		List<File> files = new ArrayList<File>();
+		for (File f : entries) {
+			if (f.isFile()) files.add(f);
+		}
+		return files;
+	}
+
+	/**
+	 * upload those of {@code files} the issue does not have yet, in parallel over the connection pool. A file counts
+	 * as attached if an attachment has the same name, size and content hash; a changed file is added next to the
+	 * older attachment of the same name, which is kept.
+	 * <p>
+	 * Only files matching an attachment by name and size are hashed, through memory-mapped reads. The attachment is
+	 * then downloaded once to hash it, unless its hash is remembered: this session uploaded or compared it recently
+	 * (see {@link #MAX_ATTACHMENT_HASHES}), or it is in the memo file (see {@link #setAttachmentHashMemo(File)}).
+	 * Downloading is skipped whenever name or size already differ. Without a memo file, a new session therefore pays
+	 * a download instead of an upload for a file matching an attachment; the report counts both.
+	 * @param issueKey
+	 * @param files
+	 * @return per-file outcome, keyed by file name, with the bytes uploaded and skipped.
+	 * @throws Exception if the issue cannot be read. Failed uploads are reported and do not stop the others.
+	 */
+	public AttachmentSyncReport syncAttachments(final String issueKey, Collection<File> files) throws Exception {
+		long start = JiraMetrics.start();
+		try {
+			AttachmentSyncReport retVal = doSyncAttachments(issueKey, files);
+			metrics.succeeded(Operation.SYNC_ATTACHMENTS, start);
+			return retVal;
+		} catch (Exception e) {
+			metrics.failed(Operation.SYNC_ATTACHMENTS, start, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * {@link #syncAttachments(String, Collection)} for every regular file in a directory (not recursive).
+	 * @param issueKey
+	 * @param directory
+	 * @return per-file outcome, keyed by file name, with the bytes uploaded and skipped.
+	 * @throws Exception
+	 */
+	public AttachmentSyncReport syncAttachmentDirectory(String issueKey, File directory) throws Exception {
+		return syncAttachments(issueKey, regularFiles(directory));
+	}
+
+	private AttachmentSyncReport doSyncAttachments(final String issueKey, Collection<File> files) throws Exception {
+		Issue issue = getIssueObjectByName(issueKey);
+		final Map<String, List<Attachment>> attached = new HashMap<String, List<Attachment>>();
+		if (issue.getAttachments() != null) {
+			for (Attachment a : issue.getAttachments()) {
+				List<Attachment> sameName = attached.get(a.getFilename());
+				if (sameName == null) attached.put(a.getFilename(), sameName = new ArrayList<Attachment>());
+				sameName.add(a);
+			}
+		}
+		//compare every file up front, in parallel; uploads start as comparisons complete, in file order
+		final AttachmentSyncReport report = new AttachmentSyncReport();
+		List<File> fileList = new ArrayList<File>(files);
+		//hashes of the files compared, reused for the hashes of those uploaded
+		final Map<File, String> fileHashes = new ConcurrentHashMap<File, String>();
+		List<ListenableFuture<Attachment>> identical = JiraExecutors.fanOut(executor, fileList, transport.getMaxPerRoute(),
+				file -> () -> findIdenticalAttachment(file, attached.get(file.getName()), fileHashes, report));
+		BulkRunner runner = new BulkRunner(transport.getMaxPerRoute(), null, report);
+		for (int i = 0; i < fileList.size(); i++) {
+			final File file = fileList.get(i);
+			Attachment same;
+			try {
+				same = identical.get(i).get();
+			} catch (ExecutionException e) {
+				runner.fail(file.getName(), BulkRunner.describe(e.getCause()));
+				continue;
+			}
+			if (same != null) {
+				report.addBytesSkipped(file.length());
+				runner.skip(file.getName(), "identical to " + same.getSelf());
+				continue;
+			}
+			runner.submit(file.getName(), () -> executor.submit(() -> {
+				HttpTransport.Response response = uploadAttachment(issueKey, file);
+				if (response.getStatus() != 200) throw new IOException("file not attached: " + response);
+				report.addBytesUploaded(file.length());
+				rememberAttachmentHash(response, file, fileHashes.get(file));
+				return response;
+			}));
 		}
+		AttachmentSyncReport retVal = (AttachmentSyncReport) runner.await();
+		saveAttachmentHashes();
+		System.out.println("attachment sync for " + issueKey + ": " + retVal);
+		return retVal;
+	}
 
-		if (DEBUG) System.out.println("executing request: " + httppost.getRequestLine());	     
-		CloseableHttpResponse response;
+	/**
+	 * @param candidates attachments with the file's name. null for none.
+	 * @param fileHashes receives the hash of {@code file} if it was hashed.
+	 * @param report counts the bytes downloaded to compare.
+	 * @return an attachment with the same size and content, or null.
+	 */
+	private Attachment findIdenticalAttachment(File file, List<Attachment> candidates, Map<File, String> fileHashes,
+			AttachmentSyncReport report) throws Exception {
+		if (candidates == null) return null;
+		String hash = null;
+		for (Attachment a : candidates) {
+			if (a.getSize() != file.length()) continue;
+			if (hash == null) fileHashes.put(file, hash = ContentHash.of(file));
+			if (hash.equals(attachmentHash(a, report))) return a;
+		}
+		return null;
+	}
 
+	private String attachmentHash(final Attachment attachment, AttachmentSyncReport report) throws Exception {
+		String retVal = attachmentHashes.get(attachment.getSelf());
+		if (retVal != null) return retVal;
+		InputStream in = claim(true, () -> restClient.getIssueClient().getAttachment(attachment.getContentUri()));
+		CountingInputStream counted = new CountingInputStream(in);
 		try {
-			response = httpclient.execute(httppost);
+			retVal = ContentHash.of(counted);
 		} finally {
-			httpclient.close();
+			in.close();
+			report.addBytesDownloaded(counted.getCount());
 		}
+		attachmentHashes.put(attachment.getSelf(), retVal);
+		return retVal;
+	}
 
-		if(response.getStatusLine().getStatusCode() == 200) {
-			if (DEBUG) System.out.println("file attached!"); 
+	/**
+	 * remember the hash of a file just uploaded, so a later sync need not download it.
+	 * @param response JIRA's answer: the new attachments, as a JSON array.
+	 * @param hash of {@code file} if it was hashed to compare it; null to hash it now.
+	 */
+	private void rememberAttachmentHash(HttpTransport.Response response, File file, String hash) {
+		try {
+			JSONArray created = new JSONArray(response.getBody());
+			if (created.length() != 1) return;
+			attachmentHashes.put(URI.create(created.getJSONObject(0).getString("self")), hash != null ? hash : ContentHash.of(file));
+		} catch (JSONException e) {
+			if (DEBUG) System.out.println("cannot read attachment response: " + e.getMessage());
+		} catch (IOException e) {
+			if (DEBUG) System.out.println("cannot hash " + file + ": " + e.getMessage());
 		}
-		else {
-			System.err.println("file not attached: status code: " + response.getStatusLine().getStatusCode() + 
-					"\nResponse: " + response.toString());
+	}
+
+	/**
+	 * keep the attachment hashes of {@link #syncAttachments(String, Collection)} in {@code file}, so a sync in a new
+	 * process (e.g. a retried CI job) need not download attachments it has compared or uploaded before. The file is
+	 * read now and rewritten after each sync. Call before the first sync; hashes this session remembered so far are
+	 * dropped.
+	 * @param file null to remember hashes in memory only.
+	 */
+	public void setAttachmentHashMemo(File file) {
+		attachmentHashes = new AttachmentHashMemo(file, MAX_ATTACHMENT_HASHES);
+	}
+
+	private void saveAttachmentHashes() {
+		AttachmentHashMemo memo = attachmentHashes;
+		try {
+			memo.save();
+		} catch (IOException e) {
+			System.err.println("WARNING: could not write attachment hashes " + memo.getFile() + ": " + e.getMessage());
 		}
 	}
+
+	/**
+	 * @return the pooled HTTP client used for attachments and bulk create, e.g. to change connection limits.
+	 */
+	public HttpTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * release pooled connections and threads. The instance must not be used afterwards.
+	 * Sessions of a {@link JiraSessionPool} leave the shared resources to the pool.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!ownsResources) return;
+		metrics.unregisterMBeans();
+		if (ownsExecutor) executor.shutdown();
+		transport.close();
+		//the JIRA Rest Client is Closeable in later JRJC versions
+		if (restClient instanceof Closeable) ((Closeable) restClient).close();
+	}
 	
 	/**
 	 * <ul>
@@ -489,6 +1729,7 @@ public class Jira {
 	 * @throws Exception
 	 */
 	private void validateIssueLink(String linkType) throws Exception {
+		ensureIssueLinkTypes();
 		
 		//first check if desired link type is valid. 
 		if (!issueLinkTypes.contains(linkType)) 
@@ -577,8 +1818,138 @@ public class Jira {
 		return retVal;
 	}
 	
-	public void getDuplicatesForIssue(Issue sourceIssue) {
-		
+	/**
+	 * @param sourceIssue
+	 * @return keys of the issues linked to {@code sourceIssue} by {@value #DUPLICATE_LINK_TYPE} links in either 
+	 * direction, directly or through other duplicates. 
+	 * @throws Exception
+	 */
+	public List<String> getDuplicatesForIssue(Issue sourceIssue) throws Exception {
+		LinkGraph graph = traverseLinks(Collections.singleton(sourceIssue.getKey()), DUPLICATE_LINK_TYPE, null, 
+				Integer.MAX_VALUE, DEFAULT_MAX_LINKED_ISSUES);
+		List<String> retVal = new ArrayList<String>(graph.getKeys());
+		retVal.remove(sourceIssue.getKey());
+		return retVal;
+	}
+
+	/**
+	 * breadth-first walk of the issue links reachable from {@code roots}. 
+	 * <p>
+	 * The issues of each level are fetched in parallel, {@value #LINK_BATCH_SIZE} per search request and 
+	 * with only the {@code issuelinks} field; issues in the {@link IssueCache} are not fetched again. 
+	 * Each issue is expanded once however many paths lead to it.
+	 * <pre>
+	 * LinkGraph g = jira.traverseLinks(keys, "Duplicate", null, 5, 5000);
+	 * for (List&lt;String&gt; cluster : g.getClusters()) ...
+	 * LinkGraph blockers = jira.traverseLinks(Arrays.asList("TEST-1"), "Blocks", Direction.INBOUND, Integer.MAX_VALUE, 5000);
+	 * </pre>
+	 * @param roots issue keys to start from.
+	 * @param linkType follow only links of this type, e.g. Duplicate. Case insensitive. null for all.
+	 * @param direction follow links only in this direction, seen from the issue being expanded. null for both.
+	 * @param maxDepth links to follow from a root at most.
+	 * @param maxIssues issues to collect at most, roots included. 
+	 * @return the issues reached and the links followed; see {@link LinkGraph#isTruncated()} and {@link LinkGraph#getMissing()}.
+	 * @throws Exception
+	 */
+	public LinkGraph traverseLinks(Collection<String> roots, String linkType, Direction direction, int maxDepth, int maxIssues) throws Exception {
+		long start = JiraMetrics.start();
+		try {
+			LinkGraph retVal = doTraverseLinks(roots, linkType, direction, maxDepth, maxIssues);
+			metrics.succeeded(Operation.TRAVERSE_LINKS, start);
+			return retVal;
+		} catch (Exception e) {
+			metrics.failed(Operation.TRAVERSE_LINKS, start, e);
+			throw e;
+		}
+	}
+
+	private LinkGraph doTraverseLinks(Collection<String> roots, String linkType, Direction direction, int maxDepth, int maxIssues) throws Exception {
+		if (maxIssues > LinkGraph.MAX_NODES) 
+			throw new IllegalArgumentException("at most " + LinkGraph.MAX_NODES + " issues can be collected: " + maxIssues);
+		LinkGraph graph = new LinkGraph();
+		List<String> frontier = new ArrayList<String>();
+		for (String key : roots) {
+			if (graph.size() >= maxIssues) {
+				graph.truncated();
+				break;
+			}
+			if (graph.add(key, 0)) frontier.add(key);
+		}
+		for (int depth = 0; !frontier.isEmpty(); depth++) {
+			Map<String, Iterable<IssueLink>> links = fetchIssueLinks(frontier);
+			List<String> next = new ArrayList<String>();
+			for (String key : frontier) {
+				Iterable<IssueLink> issueLinks = links.get(key);
+				if (issueLinks == null) {
+					graph.missing(key);
+					continue;
+				}
+				for (IssueLink link : issueLinks) {
+					IssueLinkType type = link.getIssueLinkType();
+					if (linkType != null && !linkType.equalsIgnoreCase(type.getName())) continue;
+					if (direction != null && !direction.equals(type.getDirection())) continue;
+					String target = link.getTargetIssueKey();
+					if (!graph.contains(target)) {
+						if (depth >= maxDepth || graph.size() >= maxIssues) {
+							graph.truncated();
+							continue;
+						}
+						graph.add(target, depth + 1);
+						next.add(target);
+					}
+					if (type.getDirection() == Direction.OUTBOUND) graph.link(key, target, type.getName());
+					else graph.link(target, key, type.getName());
+				}
+			}
+			if (DEBUG) System.out.println("links: level " + depth + ": " + frontier.size() + " issues, " + next.size() + " new");
+			frontier = next;
+		}
+		return graph;
+	}
+
+	/**
+	 * @param keys
+	 * @return links per issue key; issues that do not exist or are not visible are absent.
+	 * @throws Exception
+	 */
+	private Map<String, Iterable<IssueLink>> fetchIssueLinks(List<String> keys) throws Exception {
+		final Map<String, Iterable<IssueLink>> retVal = new ConcurrentHashMap<String, Iterable<IssueLink>>();
+		List<String> toFetch = new ArrayList<String>();
+		for (String key : keys) {
+			Issue cached = issueCache.get(key);
+			if (cached != null) retVal.put(key, linksOf(cached));
+			else toFetch.add(key);
+		}
+		List<ListenableFuture<Void>> batches = JiraExecutors.fanOut(executor, Lists.partition(toFetch, LINK_BATCH_SIZE), bulkParallelism,
+				batch -> () -> {
+					fetchIssueLinkBatch(batch, retVal);
+					return null;
+				});
+		try {
+			Futures.allAsList(batches).get();
+		} catch (ExecutionException e) {
+			for (ListenableFuture<Void> f : batches) f.cancel(true);
+			if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+			throw e;
+		}
+		return retVal;
+	}
+
+	private void fetchIssueLinkBatch(List<String> keys, Map<String, Iterable<IssueLink>> into) throws Exception {
+		try {
+			for (Issue issue : searchIssues(keyInJql(keys), keys.size(), LINK_FIELDS)) into.put(issue.getKey(), linksOf(issue));
+		} catch (RestClientException e) {
+			//JQL rejects the whole batch if one key does not exist: read those issues one by one
+			if (JiraMetrics.statusOf(e) != 400) throw e;
+			for (String key : keys) {
+				Issue issue = getIssueObjectIfExists(key);
+				if (issue != null) into.put(key, linksOf(issue));
+			}
+		}
+	}
+
+	private static Iterable<IssueLink> linksOf(Issue issue) {
+		return issue.getIssueLinks() == null ? Collections.<IssueLink>emptyList() : issue.getIssueLinks();
 	}
 	
 	/**
@@ -588,10 +1959,100 @@ public class Jira {
 	 * @throws Exception
 	 */
 	public void commentOnIssue(String issueKey, String comment) throws Exception {
+		long start = JiraMetrics.start();
+		try {
+			addComment(issueKey, commentsUri(issueKey), comment);
+			metrics.succeeded(Operation.COMMENT_ON_ISSUE, start);
+		} catch (Exception e) {
+			metrics.failed(Operation.COMMENT_ON_ISSUE, start, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * comment on every issue found by JQL, see {@link #commentOnIssuesByJQL(String, CommentTemplate, int)}.
+	 * @param jql
+	 * @param template comment text with placeholders, see {@link CommentTemplate}.
+	 * @return per-issue outcome.
+	 * @throws Exception
+	 */
+	public BulkReport commentOnIssuesByJQL(String jql, String template) throws Exception {
+		return commentOnIssuesByJQL(jql, new CommentTemplate(template), bulkParallelism);
+	}
+
+	/**
+	 * comment on every issue found by a filter, see {@link #commentOnIssuesByJQL(String, CommentTemplate, int)}.
+	 * @param filterId
+	 * @param template
+	 * @param parallelism
+	 * @return per-issue outcome.
+	 * @throws Exception
+	 */
+	public BulkReport commentOnIssuesByFilterId(long filterId, CommentTemplate template, int parallelism) throws Exception {
+		return commentOnIssuesByJQL(getJqlByFilterId(filterId), template, parallelism);
+	}
+
+	/**
+	 * comment on every issue found by JQL, keeping {@code parallelism} comments in flight. 
+	 * Only the fields the template refers to are fetched, and the issues are not fetched one by one.
+	 * Failures are recorded and do not stop the run.
+	 * @param jql
+	 * @param template rendered per issue, e.g. {@code "Released in 1.2. {summary} was {status}."}
+	 * @param parallelism
+	 * @return per-issue outcome.
+	 * @throws Exception if the search fails.
+	 */
+	public BulkReport commentOnIssuesByJQL(String jql, CommentTemplate template, int parallelism) throws Exception {
+		long start = JiraMetrics.start();
+		try {
+			BulkReport retVal = runBulkComment(searchProjections(jql, template.getFields()), template, parallelism);
+			metrics.succeeded(Operation.COMMENT_ON_ISSUES, start);
+			return retVal;
+		} catch (Exception e) {
+			metrics.failed(Operation.COMMENT_ON_ISSUES, start, e);
+			throw e;
+		}
+	}
+
+	private BulkReport runBulkComment(Iterable<IssueProjection> issues, CommentTemplate template, int parallelism) throws Exception {
+		BulkRunner runner = new BulkRunner(parallelism);
+		BulkReport report;
+		try {
+			for (IssueProjection issue : issues) {
+				String key = issue.getKey();
+				String comment = template.render(issue);
+				//a blocking governed call per comment, so throttled ones are retried and concurrency adapts
+				runner.submit(key, () -> executor.submit(() -> {
+					addComment(key, commentsUri(key), comment);
+					return null;
+				}));
+			}
+		} catch (RestClientException e) {
+			parseJiraRestError(e);
+		} finally {
+			//also when the search or the template fails: comments in flight are waited for
+			report = runner.await();
+		}
+		System.out.println("bulk comment: " + report);
+		return report;
+	}
+
+	/**
+	 * @param issueKey
+	 * @return the comment resource of the issue, as returned by {@link Issue#getCommentsUri()}, without fetching the issue.
+	 */
+	URI commentsUri(String issueKey) {
+		return URI.create(url + "/rest/api/2/issue/" + issueKey + "/comment");
+	}
+
+	private void addComment(String issueKey, final URI commentURI, String comment) throws Exception {
 		System.out.println("comment: " + issueKey + ": " + comment);
-		Comment c = createCommentFromString(comment,"Users");
-		URI commentURI = getIssueObjectByName(issueKey).getCommentsUri();
-		restClient.getIssueClient().addComment(commentURI, c).claim();	
+		final Comment c = createCommentFromString(comment,"Users");
+		try {
+			claim(false, () -> restClient.getIssueClient().addComment(commentURI, c));
+		} finally {
+			issueCache.invalidate(issueKey);
+		}
 	}
 	
 	/**
@@ -603,6 +2064,17 @@ public class Jira {
 	 * @throws Exception
 	 */
 	public void linkIssueToIssue(String sourceIssue, String targetIssue, String linkType, String comment) throws Exception {
+		long start = JiraMetrics.start();
+		try {
+			doLinkIssueToIssue(sourceIssue, targetIssue, linkType, comment);
+			metrics.succeeded(Operation.LINK_ISSUE, start);
+		} catch (Exception e) {
+			metrics.failed(Operation.LINK_ISSUE, start, e);
+			throw e;
+		}
+	}
+
+	private void doLinkIssueToIssue(String sourceIssue, String targetIssue, String linkType, String comment) throws Exception {
 		validateIssueLink(linkType);
 		if (areIssuesLinked(sourceIssue,targetIssue)) {
 			System.out.println("WARNING: skipping issue link creation; "
@@ -610,8 +2082,127 @@ public class Jira {
 			return;
 		}
 		System.out.print("link: " + sourceIssue + " > " + linkType + " > " + targetIssue + ", comment: " + comment);
-		LinkIssuesInput linkIssuesInput = new LinkIssuesInput(sourceIssue, targetIssue, linkType);
-		restClient.getIssueClient().linkIssue(linkIssuesInput).claim();
-		commentOnIssue(sourceIssue, comment);
+		createLink(sourceIssue, targetIssue, linkType, comment);
+	}
+
+	/**
+	 * create links from an edge list, see {@link #linkIssues(Iterable, int)}.
+	 * @param links
+	 * @return per-link outcome.
+	 * @throws Exception
+	 */
+	public BulkReport linkIssues(Iterable<IssueLinkSpec> links) throws Exception {
+		return linkIssues(links, bulkParallelism);
+	}
+
+	/**
+	 * create links from an edge list, keeping {@code parallelism} links in flight.
+	 * <p>
+	 * The list is read in chunks of {@value #LINK_CHUNK_SIZE}. For each chunk the existing links of all source
+	 * issues are fetched in parallel batched searches (see {@link #traverseLinks(Collection, String, Direction, int, int)}), 
+	 * and links of the same type already present between source and target, in either direction, are skipped, as are 
+	 * repeated edges. The rest are created, each followed by its comment, if any. Failures are recorded and do not 
+	 * stop the run.
+	 * @param links read lazily, e.g. an {@link IssueLinkSpecReader}.
+	 * @param parallelism
+	 * @return per-link outcome, by {@link IssueLinkSpec#toString()}.
+	 * @throws Exception
+	 */
+	public BulkReport linkIssues(Iterable<IssueLinkSpec> links, int parallelism) throws Exception {
+		long start = JiraMetrics.start();
+		try {
+			BulkReport retVal = runBulkLink(links, parallelism);
+			metrics.succeeded(Operation.LINK_ISSUES, start);
+			return retVal;
+		} catch (Exception e) {
+			metrics.failed(Operation.LINK_ISSUES, start, e);
+			throw e;
+		}
+	}
+
+	private BulkReport runBulkLink(Iterable<IssueLinkSpec> links, int parallelism) throws Exception {
+		ensureIssueLinkTypes();
+		Map<String, String> typeNames = new HashMap<String, String>();
+		for (String t : issueLinkTypes) typeNames.put(t.toLowerCase(), t);
+		BulkRunner runner = new BulkRunner(parallelism);
+		Set<String> seen = new HashSet<String>();
+		List<IssueLinkSpec> chunk = new ArrayList<IssueLinkSpec>(LINK_CHUNK_SIZE);
+		BulkReport report;
+		try {
+			for (IssueLinkSpec link : links) {
+				chunk.add(link);
+				if (chunk.size() == LINK_CHUNK_SIZE) {
+					submitLinks(chunk, typeNames, seen, runner);
+					chunk.clear();
+				}
+			}
+			submitLinks(chunk, typeNames, seen, runner);
+		} catch (RestClientException e) {
+			parseJiraRestError(e);
+		} finally {
+			//also when the specs are malformed or a prefetch fails: links and comments in flight are waited for
+			report = runner.await();
+			System.out.println("bulk link: " + report);
+		}
+		return report;
+	}
+
+	private void submitLinks(List<IssueLinkSpec> chunk, Map<String, String> typeNames, Set<String> seen, BulkRunner runner) throws Exception {
+		Set<String> sources = new LinkedHashSet<String>();
+		for (IssueLinkSpec link : chunk) {
+			//search results carry keys in upper case
+			if (link.getSource() != null) sources.add(link.getSource().toUpperCase());
+		}
+		Map<String, Iterable<IssueLink>> existing = fetchIssueLinks(new ArrayList<String>(sources));
+		for (final IssueLinkSpec link : chunk) {
+			String id = link.toString();
+			if (link.getSource() == null || link.getTarget() == null || link.getLinkType() == null) {
+				runner.fail(id, "source, target and type are required");
+				continue;
+			}
+			final String type = typeNames.get(link.getLinkType().toLowerCase());
+			if (type == null) {
+				runner.fail(id, "link type " + link.getLinkType() + " is not one of " + issueLinkTypes);
+				continue;
+			}
+			if (!seen.add(link.getSource().toUpperCase() + ' ' + link.getTarget().toUpperCase() + ' ' + type)) {
+				runner.skip(id, "listed before");
+				continue;
+			}
+			Iterable<IssueLink> sourceLinks = existing.get(link.getSource().toUpperCase());
+			if (sourceLinks == null) {
+				runner.fail(id, link.getSource() + " does not exist or is not visible");
+				continue;
+			}
+			if (isLinked(sourceLinks, link.getTarget(), type)) {
+				runner.skip(id, "already linked");
+				continue;
+			}
+			runner.submit(id, () -> executor.submit(() -> {
+				createLink(link.getSource(), link.getTarget(), type, link.getComment());
+				return null;
+			}));
+		}
+	}
+
+	private static boolean isLinked(Iterable<IssueLink> links, String target, String linkType) {
+		for (IssueLink l : links) {
+			if (l.getTargetIssueKey().equalsIgnoreCase(target) && l.getIssueLinkType().getName().equalsIgnoreCase(linkType)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * create one link, then comment on the source issue if {@code comment} is not empty.
+	 */
+	private void createLink(String sourceIssue, String targetIssue, String linkType, String comment) throws Exception {
+		final LinkIssuesInput linkIssuesInput = new LinkIssuesInput(sourceIssue, targetIssue, linkType);
+		try {
+			claim(false, () -> restClient.getIssueClient().linkIssue(linkIssuesInput));
+		} finally {
+			issueCache.invalidate(sourceIssue);
+			issueCache.invalidate(targetIssue);
+		}
+		if (comment != null && !comment.isEmpty()) addComment(sourceIssue, commentsUri(sourceIssue), comment);
 	}
 }
@@ -4,11 +4,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import com.atlassian.jira.rest.client.api.domain.Issue;
 
@@ -17,12 +19,23 @@ import bsh.StringUtil;
 public class JiraCmd {
 
 	private Jira jira;
-	private String jiraproject, searchInput, issueKey, commentString, targetState;
+	private String jiraproject, searchInput, issueKey, commentString, targetState, specFile;
+	private int parallelism = Jira.DEFAULT_BULK_PARALLELISM;
+	private boolean local, resume;
+	private IssueIndex.Order order = IssueIndex.Order.KEY;
+	private IssueWriter.Format format = IssueWriter.Format.TABLE;
+	private String[] columns = { IssueProjection.KEY, IssueProjection.SUMMARY, IssueProjection.STATUS };
+	private File outFile;
+	/** where find writes its rows. */
+	private PrintStream stdout = System.out;
 	private actions action;
 	private static enum actions {
 		bulk,
 		find,
-		comment, get
+		comment, bulkcomment, get,
+		create,
+		link,
+		mirror
 	}
 	public JiraCmd(String[] args) throws Exception {
 		Properties props = new Properties();
@@ -35,7 +48,25 @@ public class JiraCmd {
 		
 		//parse input args
 		parseArgs(args);
+		//keep progress messages out of exported rows
+		if (action == actions.find && outFile == null && format != IssueWriter.Format.TABLE) System.setOut(System.err);
 		jira = new Jira(jiraurl, jirausername, jirapassword, jiraproject, true);
+		//optional: reuse project metadata across runs for this many minutes
+		String metadataTtl = props.getProperty("jirametadatattl");
+		if (metadataTtl != null) {
+			File snapshot = new File(System.getProperty("user.dir") + File.separator + ".jiralib-metadata-" + jiraproject + ".properties");
+			jira.setMetadataSnapshot(snapshot, TimeUnit.MINUTES.toMillis(Long.parseLong(metadataTtl.trim())));
+		}
+		//optional: stay below this many requests per second
+		String rateLimit = props.getProperty("jiraratelimit");
+		if (rateLimit != null) jira.getGovernor().setRate(Double.parseDouble(rateLimit.trim()));
+	}
+
+	/**
+	 * @return the journal of bulk transitions in the current project, next to jira.properties.
+	 */
+	private File journalFile() {
+		return new File(System.getProperty("user.dir") + File.separator + ".jiralib-bulk-" + jiraproject + ".journal");
 	}
 
 	private void bulkAction(String searchInput, String targetState) throws Exception {
@@ -46,10 +77,23 @@ public class JiraCmd {
 		} catch (NumberFormatException e) {
 			byFilter = false;
 		}
-		if (byFilter)
-			jira.bulkTransitionIssuesByFilterId(Long.parseLong(searchInput), targetState);
-		else
-			jira.bulkTransitionIssuesByJQL(searchInput, targetState);
+		BulkReport report;
+		BulkJournal journal = resume ? BulkJournal.resume(journalFile()) : BulkJournal.create(journalFile());
+		try {
+			if (byFilter)
+				report = jira.bulkTransitionIssuesByFilterId(Long.parseLong(searchInput), targetState, parallelism, journal);
+			else
+				report = jira.bulkTransitionIssuesByJQL(searchInput, targetState, parallelism, journal);
+		} finally {
+			journal.close();
+		}
+		for (BulkReport.Entry e : report.getEntries(BulkReport.Outcome.FAILED)) {
+			System.err.println(e);
+		}
+		if (report.getFailedCount() > 0) 
+			throw new Exception (report.getFailedCount() + " of " + report.size() + " transitions failed. rerun with --resume to retry them");
+		//nothing left to resume
+		journal.getFile().delete();
 	}
 	
 	public void findAction(String searchInput) throws Exception {
@@ -60,22 +104,38 @@ public class JiraCmd {
 		} catch (NumberFormatException e) {
 			byFilter = false;
 		}
-		List<Issue> issues = new ArrayList<Issue>();
-		if (byFilter) { 
-			issues = jira.getIssueObjectsByFilterId(Long.parseLong(searchInput));
-		}
-		else {
-			issues = jira.getIssueObjectsByJQL(searchInput);			
+		String jql = byFilter ? jira.getJqlByFilterId(Long.parseLong(searchInput)) : searchInput;
+		//only the printed columns are fetched
+		writeIssues(jira.searchProjections(jql, columns));
+	}
+
+	/**
+	 * search the local mirror of the project (see the mirror action) instead of the server.
+	 * @param query text query, see {@link IssueIndex}
+	 * @throws Exception
+	 */
+	private void findLocalAction(String query) throws Exception {
+		List<String> mirrored = new ArrayList<String>(Arrays.asList(IssueMirror.FIELDS));
+		mirrored.add(IssueProjection.KEY);
+		for (String c : columns) {
+			if (!mirrored.contains(c)) throw new Exception ("column " + c + " is not mirrored. mirrored columns are: " + mirrored);
 		}
-		//print and exit
-		String delim = "\t\t";
-		System.out.println("KEY" + delim + "SUMMARY" + delim + "STATUS" + delim);
-		for (Issue issue : issues) {
-			int charlimit = 40;
-			String sum = issue.getSummary().length() > charlimit ? issue.getSummary().substring(0, charlimit)  + "..." : issue.getSummary();
-			System.out.println(	issue.getKey() + delim + 
-								sum + delim +
-								issue.getStatus().getName() + delim);
+		IssueMirror mirror = jira.openMirror(mirrorFile());
+		if (mirror.size() == 0) throw new Exception ("no local mirror of " + jiraproject + " yet. run: mirror " + jiraproject);
+		writeIssues(mirror.find(query, order));
+	}
+
+	/**
+	 * write rows as they arrive, to the --out file or stdout.
+	 */
+	private void writeIssues(Iterable<IssueProjection> issues) throws IOException {
+		IssueWriter writer = outFile != null ? IssueWriter.open(outFile, format, columns) : IssueWriter.open(stdout, format, columns);
+		try {
+			int n = writer.writeAll(issues);
+			if (outFile != null) System.out.println(n + " issues written to " + outFile);
+		} finally {
+			if (outFile != null) writer.close();
+			else writer.flush();
 		}
 	}
 	
@@ -90,12 +150,34 @@ public class JiraCmd {
 		"ADDITIONAL ARGS: additional arguments based on the ACTION.\n\n" + 
 		"Examples:\n" +
 		"1. Do Bulk Actions on Issues in a JIRA Filter\n" +
-		"java -jar JiraCmd.jar bulk TEST 11300 Done\n" +
+		"java -jar JiraCmd.jar bulk TEST 11300 Done [PARALLELISM] [--resume]\n" +
 		"- runs the filter-ID 11300 and gets issue list. Issues in this filter must be part of project key \"TEST\"\n" + 
 		"- for each issue, changes state to \"Done\". This must be a valid state for the issue.\n" +
+		"- PARALLELISM (optional, default " + Jira.DEFAULT_BULK_PARALLELISM + ") is the number of transitions in flight.\n" +
+		"- progress is journaled in .jiralib-bulk-TEST.journal until every transition succeeds. --resume continues\n" +
+		"  an interrupted or partly failed run with the same arguments, skipping issues it finished.\n" +
 		"\n\n" +
 		"2. Find issues by JQL\n" + 
-		"java -jar JiraCmd.jar find TEST jql-here\n\n"
+		"java -jar JiraCmd.jar find TEST jql-here [--format table|tsv|csv|jsonl] [--columns key,summary,status] [--out FILE]\n" +
+		"java -jar JiraCmd.jar find TEST --local query-here [key|updated] [same options]\n" +
+		"- rows are written as they arrive. table (default) cuts values at " + IssueWriter.TABLE_WIDTH + " characters.\n" +
+		"- columns: any of " + IssueProjection.SUPPORTED_FIELDS + "\n" +
+		"- --local searches summary, description, status and component in the local mirror (see 6.), e.g.\n" +
+		"  '\"connection timeout\" AND NOT status:closed'. Results are ordered by key, or most recently updated first.\n\n" +
+		"3. Create issues from a file\n" +
+		"java -jar JiraCmd.jar create TEST issues.csv [PARALLELISM]\n" +
+		"- CSV with header row issuetype,component,summary,description; or JSONL (.jsonl) with the same keys.\n" +
+		"- issues are sent in chunks of " + BulkIssueCreator.CHUNK_SIZE + ", PARALLELISM chunks at a time.\n\n" +
+		"4. Comment on issues in a JIRA Filter or JQL result\n" +
+		"java -jar JiraCmd.jar bulkcomment TEST 11300 \"Released in 1.2: {summary} ({status})\" [PARALLELISM]\n" +
+		"- {field} is replaced per issue, for any of " + IssueProjection.SUPPORTED_FIELDS + ". Other braces are kept.\n\n" +
+		"5. Link issues from an edge list\n" +
+		"java -jar JiraCmd.jar link TEST edges.csv [PARALLELISM]\n" +
+		"- CSV with header row source,target,type[,comment]; or JSONL (.jsonl) with the same keys.\n" +
+		"- links already present are skipped; existing links are read " + Jira.LINK_BATCH_SIZE + " issues per request.\n\n" +
+		"6. Mirror a project locally\n" +
+		"java -jar JiraCmd.jar mirror TEST\n" +
+		"- fetches issues updated since the last run into .jiralib-mirror-TEST.bin and prints issue counts per status.\n\n"
 				);		
 	}
 	private void parseArgs(String[] args) throws Exception {
@@ -108,31 +190,142 @@ public class JiraCmd {
 		
 		switch (action) {
 		case bulk: 
-			if (args.length != 4) { usage(); throw new Exception ("incorrect argument count!"); } 
-			searchInput = args[2];
-			targetState = args[3]; 
+			List<String> bulkArgs = new ArrayList<String>(Arrays.asList(args).subList(2, args.length));
+			resume = bulkArgs.remove("--resume");
+			if (bulkArgs.size() != 2 && bulkArgs.size() != 3) { usage(); throw new Exception ("incorrect argument count!"); } 
+			searchInput = bulkArgs.get(0);
+			targetState = bulkArgs.get(1); 
+			if (bulkArgs.size() == 3) parallelism = Integer.parseInt(bulkArgs.get(2));
 			break;
 		case find:
-			if (args.length != 3) { usage(); throw new Exception ("incorrect argument count!"); } 
-			searchInput = args[2];
+			List<String> rest = new ArrayList<String>(Arrays.asList(args).subList(2, args.length));
+			local = rest.remove("--local");
+			String f = option(rest, "--format");
+			if (f != null) format = IssueWriter.Format.valueOf(f.toUpperCase());
+			String c = option(rest, "--columns");
+			if (c != null) columns = c.toLowerCase().split("\\s*,\\s*");
+			String o = option(rest, "--out");
+			if (o != null) outFile = new File(o);
+			IssueProjection.searchFields(columns);
+			if (rest.size() != 1 && !(local && rest.size() == 2)) { usage(); throw new Exception ("incorrect argument count!"); }
+			searchInput = rest.get(0);
+			if (rest.size() == 2) order = IssueIndex.Order.valueOf(rest.get(1).toUpperCase());
 			break;
 		case comment:
 			if (args.length != 4) { usage(); throw new Exception ("incorrect argument count!"); }
 			issueKey = args[2];
 			commentString = args[3];
 			break;
+		case bulkcomment:
+			if (args.length != 4 && args.length != 5) { usage(); throw new Exception ("incorrect argument count!"); }
+			searchInput = args[2];
+			commentString = args[3];
+			if (args.length == 5) parallelism = Integer.parseInt(args[4]);
+			break;
 		case get:
 			if (args.length != 3)  { usage(); throw new Exception ("incorrect argument count!"); }
 			issueKey = args[2];
 			break;
+		case create:
+			if (args.length != 3 && args.length != 4) { usage(); throw new Exception ("incorrect argument count!"); }
+			specFile = args[2];
+			if (args.length == 4) parallelism = Integer.parseInt(args[3]);
+			break;
+		case link:
+			if (args.length != 3 && args.length != 4) { usage(); throw new Exception ("incorrect argument count!"); }
+			specFile = args[2];
+			if (args.length == 4) parallelism = Integer.parseInt(args[3]);
+			break;
+		case mirror:
+			if (args.length != 2) { usage(); throw new Exception ("incorrect argument count!"); }
+			break;
 		default: throw new Exception (action + " unsupported!");
 		}	
 	}
 	
+	/**
+	 * remove {@code name} and its value from {@code args}.
+	 * @return the value, or null if the option is absent.
+	 */
+	private String option(List<String> args, String name) throws Exception {
+		int i = args.indexOf(name);
+		if (i < 0) return null;
+		if (i == args.size() - 1) { usage(); throw new Exception (name + " needs a value"); }
+		args.remove(i);
+		return args.remove(i);
+	}
+
 	private void commentAction(String issueKey,String comment) throws Exception {
 		jira.commentOnIssue(issueKey, comment);
 	}
+
+	private void bulkCommentAction(String searchInput, String template) throws Exception {
+		boolean byFilter = false;
+		try {
+			Long.parseLong(searchInput);
+			byFilter = true;
+		} catch (NumberFormatException e) {
+			byFilter = false;
+		}
+		CommentTemplate t = new CommentTemplate(template);
+		BulkReport report;
+		if (byFilter)
+			report = jira.commentOnIssuesByFilterId(Long.parseLong(searchInput), t, parallelism);
+		else
+			report = jira.commentOnIssuesByJQL(searchInput, t, parallelism);
+		for (BulkReport.Entry e : report.getEntries(BulkReport.Outcome.FAILED)) {
+			System.err.println(e);
+		}
+		if (report.getFailedCount() > 0) 
+			throw new Exception (report.getFailedCount() + " of " + report.size() + " comments failed");
+	}
+	
+	private void createAction(String specFile) throws Exception {
+		IssueSpecReader specs = IssueSpecReader.open(new File(specFile));
+		BulkCreateResult result;
+		try {
+			result = jira.createIssues(specs, parallelism);
+		} finally {
+			specs.close();
+		}
+		for (Map.Entry<Integer,String> e : result.getErrors().entrySet()) {
+			System.err.println("item " + e.getKey() + ": " + e.getValue());
+		}
+		if (result.getFailedCount() > 0)
+			throw new Exception (result.getFailedCount() + " issues not created");
+	}
 	
+	private void linkAction(String specFile) throws Exception {
+		IssueLinkSpecReader links = IssueLinkSpecReader.open(new File(specFile));
+		BulkReport report;
+		try {
+			report = jira.linkIssues(links, parallelism);
+		} finally {
+			links.close();
+		}
+		for (BulkReport.Entry e : report.getEntries(BulkReport.Outcome.FAILED)) {
+			System.err.println(e);
+		}
+		if (report.getFailedCount() > 0)
+			throw new Exception (report.getFailedCount() + " of " + report.size() + " links failed");
+	}
+
+	/**
+	 * @return the mirror file of the current project, next to jira.properties.
+	 */
+	private File mirrorFile() {
+		return new File(System.getProperty("user.dir") + File.separator + ".jiralib-mirror-" + jiraproject + ".bin");
+	}
+
+	private void mirrorAction() throws Exception {
+		IssueMirror mirror = jira.openMirror(mirrorFile());
+		int fetched = mirror.refresh();
+		System.out.println(fetched + " issues fetched; " + mirror);
+		for (Map.Entry<String,Integer> e : mirror.countBy(IssueProjection.STATUS).entrySet()) {
+			System.out.println(e.getKey() + "\t\t" + e.getValue());
+		}
+	}
+
 	private void getIssueAction(String issueKey) throws Exception {
 		jira.getIssueLinks(issueKey, null,null);
 	}
@@ -142,11 +335,21 @@ public class JiraCmd {
 		case bulk: 
 			bulkAction(searchInput,targetState); break;
 		case find:
-			findAction(searchInput); break;
+			if (local) findLocalAction(searchInput);
+			else findAction(searchInput);
+			break;
 		case comment:
 			commentAction(issueKey,commentString); break;
+		case bulkcomment:
+			bulkCommentAction(searchInput,commentString); break;
 		case get:
 			getIssueAction(issueKey); break;
+		case create:
+			createAction(specFile); break;
+		case link:
+			linkAction(specFile); break;
+		case mirror:
+			mirrorAction(); break;
 		default: throw new Exception (action + " unsupported!");
 		}
 	}
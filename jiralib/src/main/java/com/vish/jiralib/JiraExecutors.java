@@ -0,0 +1,108 @@
+package com.vish.jiralib;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * executors for the library-level fan-out of {@link Jira} and {@link JiraSessionPool}: bulk operations,
+ * multi-key fetches, link traversals and uploads.
+ * <p>
+ * Those tasks mostly wait on REST calls, so by default each runs on its own virtual thread: thousands of
+ * concurrent waits cost little memory, and the number of calls actually in flight is bounded by the bulk
+ * parallelism and the {@link RequestGovernor}, not by a thread pool. Set the system property
+ * {@value #MODE_PROPERTY} to {@code platform} for a pool of daemon platform threads instead.
+ * <p>
+ * Per-item fan-out goes through {@link #fanOut(ListeningExecutorService, Collection, int, Function)}, so a call with
+ * thousands of keys starts a bounded number of tasks rather than one parked thread per key.
+ * @author vish
+ *
+ */
+public final class JiraExecutors {
+	public static enum Mode {
+		/** a new virtual thread per task. */
+		VIRTUAL,
+		/** daemon platform threads, reused. */
+		PLATFORM
+	}
+
+	/** system property choosing the default {@link Mode}: {@code virtual} (default) or {@code platform}. */
+	public static final String MODE_PROPERTY = "jiralib.executor";
+
+	private JiraExecutors() {
+	}
+
+	/** @return the mode set by {@value #MODE_PROPERTY}, {@link Mode#VIRTUAL} if unset. */
+	public static Mode defaultMode() {
+		String mode = System.getProperty(MODE_PROPERTY);
+		return mode == null || mode.trim().isEmpty() ? Mode.VIRTUAL : Mode.valueOf(mode.trim().toUpperCase());
+	}
+
+	/**
+	 * @param prefix thread name prefix.
+	 * @return an executor of the {@link #defaultMode()}, with unbounded platform threads in platform mode.
+	 */
+	public static ExecutorService newExecutor(String prefix) {
+		return newExecutor(defaultMode(), prefix, 0);
+	}
+
+	/**
+	 * @param mode
+	 * @param prefix thread name prefix, e.g. jiralib gives jiralib-1, jiralib-2, ...
+	 * @param maxThreads platform threads at most; 0 for as many as needed. Ignored for virtual threads.
+	 * @return a new executor. Shut it down when done.
+	 */
+	public static ExecutorService newExecutor(Mode mode, String prefix, int maxThreads) {
+		switch (mode) {
+		case VIRTUAL:
+			return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix + "-", 1).factory());
+		case PLATFORM:
+			return maxThreads > 0 ? Executors.newFixedThreadPool(maxThreads, Jira.daemonThreads(prefix))
+					: Executors.newCachedThreadPool(Jira.daemonThreads(prefix));
+		default:
+			throw new IllegalArgumentException(mode.toString());
+		}
+	}
+
+	/**
+	 * submit one task per item, with at most {@code parallelism} submitted and not yet complete: the caller blocks
+	 * until a task completes before submitting the next. If submitting fails, the tasks already submitted are cancelled.
+	 * @param executor
+	 * @param items
+	 * @param parallelism tasks in progress at most.
+	 * @param task the task for an item.
+	 * @return the futures, in the order of {@code items}.
+	 * @throws InterruptedException
+	 */
+	static <I, T> List<ListenableFuture<T>> fanOut(ListeningExecutorService executor, Collection<? extends I> items, int parallelism,
+			Function<? super I, ? extends Callable<T>> task) throws InterruptedException {
+		Semaphore permits = new Semaphore(parallelism);
+		List<ListenableFuture<T>> retVal = new ArrayList<ListenableFuture<T>>(items.size());
+		try {
+			for (I item : items) {
+				permits.acquire();
+				ListenableFuture<T> future;
+				try {
+					future = executor.submit(task.apply(item));
+				} catch (RuntimeException e) {
+					permits.release();
+					throw e;
+				}
+				future.addListener(permits::release, BulkRunner.CALLER_RUNS);
+				retVal.add(future);
+			}
+		} catch (InterruptedException | RuntimeException e) {
+			for (ListenableFuture<T> f : retVal) f.cancel(true);
+			throw e;
+		}
+		return retVal;
+	}
+}
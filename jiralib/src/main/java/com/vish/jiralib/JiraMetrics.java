@@ -0,0 +1,158 @@
+package com.vish.jiralib;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.atlassian.jira.rest.client.api.domain.util.ErrorCollection;
+
+/**
+ * per-operation metrics of a {@link Jira} instance: calls, errors by HTTP status and latency.
+ * <p>
+ * Every public operation of {@link Jira} listed in {@link Operation} is recorded, successful or not. Read the
+ * numbers with {@link #snapshot()}, or publish them over JMX with {@link #registerMBeans(String)}, as one MBean
+ * per operation named {@code com.vish.jiralib:type=Jira,name=<name>,operation=<operation>}.
+ * <pre>
+ * jira.getMetrics().registerMBeans("prod");
+ * ...
+ * for (OperationMetrics.Snapshot s : jira.getMetrics().snapshot().values()) System.out.println(s);
+ * </pre>
+ * @author vish
+ *
+ */
+public class JiraMetrics {
+	public static final String JMX_DOMAIN = "com.vish.jiralib";
+
+	/**
+	 * recorded operations, named after the {@link Jira} methods.
+	 */
+	public static enum Operation {
+		GET_ISSUE_BY_KEY("getIssueByKey"),
+		GET_ISSUES_BY_JQL("getIssuesByJQL"),
+		GET_ISSUE_OBJECTS_BY_JQL("getIssueObjectsByJQL"),
+		GET_ISSUE_OBJECTS_BY_KEYS("getIssueObjectsByKeys"),
+		GET_ISSUE_RESULT_SET("getIssueResultSet"),
+		TRANSITION_ISSUE("transitionIssue"),
+		BULK_TRANSITION("bulkTransition"),
+		CREATE_ISSUE("createIssue"),
+		CREATE_ISSUES("createIssues"),
+		ADD_ATTACHMENT("addAttachmentToIssue"),
+		ADD_ATTACHMENTS("addAttachmentsToIssue"),
+		SYNC_ATTACHMENTS("syncAttachments"),
+		LINK_ISSUE("linkIssueToIssue"),
+		LINK_ISSUES("linkIssues"),
+		COMMENT_ON_ISSUE("commentOnIssue"),
+		COMMENT_ON_ISSUES("commentOnIssuesByJQL"),
+		TRAVERSE_LINKS("traverseLinks");
+
+		private final String methodName;
+		private Operation(String methodName) {
+			this.methodName = methodName;
+		}
+		@Override
+		public String toString() {
+			return methodName;
+		}
+	}
+
+	private final OperationMetrics[] metrics = new OperationMetrics[Operation.values().length];
+	private final List<ObjectName> registered = new ArrayList<ObjectName>();
+
+	public JiraMetrics() {
+		for (Operation op : Operation.values()) metrics[op.ordinal()] = new OperationMetrics(op.toString());
+	}
+
+	/** @return start time to pass to {@link #succeeded(Operation, long)} or {@link #failed(Operation, long, Throwable)}. */
+	static long start() {
+		return System.nanoTime();
+	}
+
+	void succeeded(Operation op, long start) {
+		metrics[op.ordinal()].record(System.nanoTime() - start, 0);
+	}
+
+	void failed(Operation op, long start, Throwable t) {
+		metrics[op.ordinal()].record(System.nanoTime() - start, statusOf(t));
+	}
+
+	/** record a call that completed with an HTTP error status, without an exception. */
+	void failed(Operation op, long start, int status) {
+		metrics[op.ordinal()].record(System.nanoTime() - start, status);
+	}
+
+	/**
+	 * @param t
+	 * @return HTTP status of the first JIRA Rest error in the cause chain, or {@link OperationMetrics#NO_STATUS}.
+	 */
+	static int statusOf(Throwable t) {
+		for (; t != null; t = t.getCause()) {
+			if (t instanceof RestClientException) {
+				for (ErrorCollection c : ((RestClientException) t).getErrorCollections()) {
+					if (c.getStatus() != null) return c.getStatus();
+				}
+			}
+		}
+		return OperationMetrics.NO_STATUS;
+	}
+
+	public OperationMetrics get(Operation op) {
+		return metrics[op.ordinal()];
+	}
+
+	/** @return current values of every operation, by operation name. */
+	public Map<String, OperationMetrics.Snapshot> snapshot() {
+		Map<String, OperationMetrics.Snapshot> retVal = new LinkedHashMap<String, OperationMetrics.Snapshot>();
+		for (OperationMetrics m : metrics) retVal.put(m.getOperation(), m.snapshot());
+		return retVal;
+	}
+
+	public void reset() {
+		for (OperationMetrics m : metrics) m.reset();
+	}
+
+	/**
+	 * publish the operations on the platform MBean server.
+	 * @param name distinguishes instances in one JVM, e.g. the server or project.
+	 * @throws JMException e.g. if the name is already taken.
+	 */
+	public synchronized void registerMBeans(String name) throws JMException {
+		unregisterMBeans();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (OperationMetrics m : metrics) {
+			ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=Jira,name=" + ObjectName.quote(name) + ",operation=" + m.getOperation());
+			server.registerMBean(m, objectName);
+			registered.add(objectName);
+		}
+	}
+
+	/**
+	 * remove the MBeans registered by {@link #registerMBeans(String)}, if any.
+	 */
+	public synchronized void unregisterMBeans() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName objectName : registered) {
+			try {
+				server.unregisterMBean(objectName);
+			} catch (JMException e) {
+				System.err.println("WARNING: could not unregister " + objectName + ": " + e.getMessage());
+			}
+		}
+		registered.clear();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder retVal = new StringBuilder();
+		for (OperationMetrics m : metrics) {
+			if (m.getCalls() > 0) retVal.append(m.snapshot()).append('\n');
+		}
+		return retVal.toString();
+	}
+}
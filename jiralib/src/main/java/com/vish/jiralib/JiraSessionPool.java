@@ -0,0 +1,142 @@
+package com.vish.jiralib;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import com.atlassian.jira.rest.client.api.JiraRestClient;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * {@link Jira} sessions for many projects on one JIRA server, sharing one set of resources:
+ * <ul>
+ * <li>one JIRA Rest Client (and with it the client's connection pool)</li>
+ * <li>one {@link HttpTransport} for attachments and bulk create, capped at {@code maxConnections}</li>
+ * <li>one executor for library-level fan-out: virtual threads, or {@code maxThreads} platform threads, see {@link JiraExecutors}</li>
+ * <li>one {@link IssueCache}, one {@link TransitionCache} and one {@link RequestCoalescer}; issue link types are loaded once per server</li>
+ * <li>one {@link JiraMetrics} and one {@link RequestGovernor}, so rate and concurrency limits hold server-wide</li>
+ * </ul>
+ * There is one session per project, created on first request and reused after. Sessions are thread-safe
+ * and may be used concurrently. Closing a session is a no-op; close the pool instead.
+ * <pre>
+ * JiraSessionPool pool = new JiraSessionPool(url, user, pwd, false);
+ * pool.session("PROJA").bulkTransitionIssuesByJQL("project = PROJA and status = Resolved", "Close");
+ * pool.session("PROJB").createIssue("Bug", "Core", "summary", "description");
+ * pool.close();
+ * </pre>
+ * @author vish
+ *
+ */
+public class JiraSessionPool implements Closeable {
+	public static final int DEFAULT_MAX_CONNECTIONS = 32;
+	public static final int DEFAULT_MAX_THREADS = 16;
+
+	private final String url;
+	private final boolean debug;
+	private final String credentials;
+	private final JiraRestClient restClient;
+	private final HttpTransport transport;
+	private volatile ListeningExecutorService executor;
+	private volatile boolean ownsExecutor = true;
+	private final TransitionCache transitionCache = new TransitionCache();
+	private final IssueCache issueCache = new IssueCache();
+	private final JiraMetrics metrics = new JiraMetrics();
+	private final RequestGovernor governor = new RequestGovernor();
+	private final RequestCoalescer coalescer = new RequestCoalescer(issueCache);
+	private final Map<String, Jira> sessions = new LinkedHashMap<String, Jira>();
+
+	public JiraSessionPool(String url, String u, String p, boolean debug) {
+		this(url, u, p, DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_THREADS, debug);
+	}
+
+	/**
+	 * @param url jira base url
+	 * @param u user
+	 * @param p password
+	 * @param maxConnections connections to the server for attachments and bulk create, shared by all sessions.
+	 * @param maxThreads platform threads for library-level fan-out, shared by all sessions. Only used in
+	 * {@link JiraExecutors.Mode#PLATFORM} mode; virtual threads are not pooled.
+	 * @param debug
+	 */
+	public JiraSessionPool(String url, String u, String p, int maxConnections, int maxThreads, boolean debug) {
+		this.url = url;
+		this.debug = debug;
+		this.credentials = Jira.basicCredentials(u, p);
+		this.restClient = Jira.createRestClient(url, u, p);
+		this.transport = new HttpTransport("Basic " + credentials, maxConnections, maxConnections);
+		transport.setGovernor(governor);
+		this.executor = MoreExecutors.listeningDecorator(JiraExecutors.newExecutor(JiraExecutors.defaultMode(), "jiralib-pool", maxThreads));
+	}
+
+	/**
+	 * @param projectKey
+	 * @return the session for a project. Created on first call; makes no REST call.
+	 */
+	public synchronized Jira session(String projectKey) {
+		String key = projectKey.toUpperCase();
+		Jira jira = sessions.get(key);
+		if (jira == null) {
+			jira = new Jira(url, restClient, credentials, this, projectKey, debug);
+			//link types are server-wide: reuse them if any session has them
+			for (Jira other : sessions.values()) {
+				List<String> linkTypes = other.loadedIssueLinkTypes();
+				if (linkTypes != null) {
+					jira.seedIssueLinkTypes(linkTypes);
+					break;
+				}
+			}
+			sessions.put(key, jira);
+		}
+		return jira;
+	}
+
+	/** @return the sessions created so far. */
+	public synchronized Collection<Jira> getSessions() {
+		return new ArrayList<Jira>(sessions.values());
+	}
+
+	public JiraRestClient getRestClient() { return restClient; }
+	public HttpTransport getTransport() { return transport; }
+	public IssueCache getIssueCache() { return issueCache; }
+	public TransitionCache getTransitionCache() { return transitionCache; }
+	/** @return metrics of all sessions together. */
+	public JiraMetrics getMetrics() { return metrics; }
+	/** @return pacing and retry of all sessions together. */
+	public RequestGovernor getGovernor() { return governor; }
+	/** @return read coalescing of all sessions together. */
+	public RequestCoalescer getRequestCoalescer() { return coalescer; }
+	ListeningExecutorService getExecutor() { return executor; }
+
+	/**
+	 * run the fan-out of all sessions on {@code executor} from now on, see {@link Jira#setExecutor(ExecutorService)}. 
+	 * The caller keeps ownership of it.
+	 * @param executor
+	 */
+	public synchronized void setExecutor(ExecutorService executor) {
+		ListeningExecutorService old = this.executor;
+		boolean owned = ownsExecutor;
+		this.executor = MoreExecutors.listeningDecorator(executor);
+		ownsExecutor = false;
+		for (Jira session : sessions.values()) session.setExecutor(executor);
+		if (owned) old.shutdown();
+	}
+
+	/**
+	 * release the shared connections and threads. Sessions must not be used afterwards.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		metrics.unregisterMBeans();
+		if (ownsExecutor) executor.shutdown();
+		transport.close();
+		sessions.clear();
+		//the JIRA Rest Client is Closeable in later JRJC versions
+		if (restClient instanceof Closeable) ((Closeable) restClient).close();
+	}
+}
@@ -0,0 +1,223 @@
+package com.vish.jiralib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * issues and the links between them, as found by {@link Jira#traverseLinks(java.util.Collection, String, com.atlassian.jira.rest.client.api.domain.IssueLinkType.Direction, int, int)}.
+ * <p>
+ * Issues are numbered in the order they were reached, so breadth-first order is {@link #getKeys()}. Links are held
+ * once each, in their outward direction (e.g. A blocks B is A to B), as pairs of int arrays. Adjacency lists are built from
+ * them on first query in compressed form: one offset array and one neighbour array per direction.
+ * <p>
+ * Filled by a single traversal thread, then read-only; reads are thread-safe.
+ * @author vish
+ *
+ */
+public class LinkGraph {
+	/** issue numbers and link type indexes are packed into one long to detect links seen from both ends. */
+	static final int MAX_NODES = 1 << 24;
+
+	private final List<String> keys = new ArrayList<String>();
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private int[] depth = new int[16];
+	private final List<String> linkTypes = new ArrayList<String>();
+	private int edgeCount;
+	private int[] from = new int[16];
+	private int[] to = new int[16];
+	private final Set<Long> edgeSet = new HashSet<Long>();
+	private final Set<String> missing = new LinkedHashSet<String>();
+	private boolean truncated;
+
+	/** built by {@link #index()}: neighbours of n are outNeighbours[outStart[n] .. outStart[n+1]). */
+	private volatile int[][] adjacency;
+
+	// ---- building, by the traversal ----
+
+	/**
+	 * @return whether the issue was new.
+	 */
+	boolean add(String key, int d) {
+		if (ids.containsKey(key)) return false;
+		int n = keys.size();
+		if (n == MAX_NODES) throw new IllegalStateException("link graph is limited to " + MAX_NODES + " issues");
+		if (n == depth.length) depth = Arrays.copyOf(depth, n * 2);
+		depth[n] = d;
+		keys.add(key);
+		ids.put(key, n);
+		adjacency = null;
+		return true;
+	}
+
+	/**
+	 * record that {@code outward} links to {@code inward}, e.g. blocks it. Links already recorded from the
+	 * other end are ignored. Both issues must have been added.
+	 */
+	void link(String outward, String inward, String linkType) {
+		int f = ids.get(outward), t = ids.get(inward);
+		int ti = linkTypes.indexOf(linkType);
+		if (ti < 0) {
+			ti = linkTypes.size();
+			linkTypes.add(linkType);
+		}
+		if (!edgeSet.add(((long) f << 40) | ((long) t << 16) | ti)) return;
+		if (edgeCount == from.length) {
+			from = Arrays.copyOf(from, edgeCount * 2);
+			to = Arrays.copyOf(to, edgeCount * 2);
+		}
+		from[edgeCount] = f;
+		to[edgeCount] = t;
+		edgeCount++;
+		adjacency = null;
+	}
+
+	/** the issue could not be fetched (deleted, or not visible to the user). */
+	void missing(String key) {
+		missing.add(key);
+	}
+
+	/** a link was not followed because of the depth or issue limit. */
+	void truncated() {
+		truncated = true;
+	}
+
+	// ---- queries ----
+
+	public int size() { return keys.size(); }
+	public int getLinkCount() { return edgeCount; }
+
+	/** @return issues in the order they were reached, roots first. */
+	public List<String> getKeys() { return Collections.unmodifiableList(keys); }
+
+	public boolean contains(String key) { return ids.containsKey(key); }
+
+	/** @return links from the nearest root, or -1 if the issue was not reached. */
+	public int getDepth(String key) {
+		Integer n = ids.get(key);
+		return n == null ? -1 : depth[n];
+	}
+
+	/** @return whether links were left unexplored because of the depth or issue limit. */
+	public boolean isTruncated() { return truncated; }
+
+	/** @return reached issues whose links could not be read. */
+	public Set<String> getMissing() { return Collections.unmodifiableSet(missing); }
+
+	/** @return issues this one links to in the outward direction (e.g. blocks, duplicates). */
+	public List<String> getOutward(String key) {
+		return neighbours(key, 0);
+	}
+
+	/** @return issues linking to this one (e.g. is blocked by, is duplicated by). */
+	public List<String> getInward(String key) {
+		return neighbours(key, 2);
+	}
+
+	/** @return outward and inward neighbours. */
+	public List<String> getLinked(String key) {
+		List<String> retVal = new ArrayList<String>(getOutward(key));
+		retVal.addAll(getInward(key));
+		return retVal;
+	}
+
+	/**
+	 * @return link types between {@code outward} and {@code inward} in that direction, empty if not linked.
+	 */
+	public List<String> getLinkTypes(String outward, String inward) {
+		Integer f = ids.get(outward), t = ids.get(inward);
+		List<String> retVal = new ArrayList<String>();
+		if (f == null || t == null) return retVal;
+		for (int ti = 0; ti < linkTypes.size(); ti++) {
+			if (edgeSet.contains(((long) f << 40) | ((long) t << 16) | ti)) retVal.add(linkTypes.get(ti));
+		}
+		return retVal;
+	}
+
+	/**
+	 * @return groups of issues connected by links in either direction, with at least two issues each,
+	 * largest first. With duplicate links, the duplicate clusters.
+	 */
+	public List<List<String>> getClusters() {
+		int n = keys.size();
+		int[] parent = new int[n];
+		for (int i = 0; i < n; i++) parent[i] = i;
+		for (int e = 0; e < edgeCount; e++) {
+			int a = root(parent, from[e]), b = root(parent, to[e]);
+			if (a != b) parent[Math.max(a, b)] = Math.min(a, b);
+		}
+		Map<Integer, List<String>> groups = new LinkedHashMap<Integer, List<String>>();
+		for (int i = 0; i < n; i++) {
+			int r = root(parent, i);
+			List<String> g = groups.get(r);
+			if (g == null) {
+				g = new ArrayList<String>();
+				groups.put(r, g);
+			}
+			g.add(keys.get(i));
+		}
+		List<List<String>> retVal = new ArrayList<List<String>>();
+		for (List<String> g : groups.values()) {
+			if (g.size() > 1) retVal.add(g);
+		}
+		Collections.sort(retVal, (a, b) -> b.size() - a.size());
+		return retVal;
+	}
+
+	private static int root(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private List<String> neighbours(String key, int direction) {
+		Integer n = ids.get(key);
+		if (n == null) return Collections.emptyList();
+		int[][] adj = index();
+		int[] start = adj[direction], neighbours = adj[direction + 1];
+		List<String> retVal = new ArrayList<String>(start[n + 1] - start[n]);
+		for (int i = start[n]; i < start[n + 1]; i++) retVal.add(keys.get(neighbours[i]));
+		return retVal;
+	}
+
+	/**
+	 * @return { outStart, outNeighbours, inStart, inNeighbours } in compressed sparse row form.
+	 */
+	private int[][] index() {
+		int[][] retVal = adjacency;
+		if (retVal != null) return retVal;
+		synchronized (this) {
+			if (adjacency == null) {
+				int[][] out = rows(from, to), in = rows(to, from);
+				adjacency = new int[][] { out[0], out[1], in[0], in[1] };
+			}
+			return adjacency;
+		}
+	}
+
+	private int[][] rows(int[] src, int[] dst) {
+		int n = keys.size();
+		int[] start = new int[n + 1];
+		for (int e = 0; e < edgeCount; e++) start[src[e] + 1]++;
+		for (int i = 0; i < n; i++) start[i + 1] += start[i];
+		int[] fill = Arrays.copyOf(start, n);
+		int[] neighbours = new int[edgeCount];
+		for (int e = 0; e < edgeCount; e++) neighbours[fill[src[e]]++] = dst[e];
+		return new int[][] { start, neighbours };
+	}
+
+	@Override
+	public String toString() {
+		return size() + " issues, " + edgeCount + " links" + (truncated ? " (truncated)" : "")
+				+ (missing.isEmpty() ? "" : ", missing " + missing);
+	}
+}
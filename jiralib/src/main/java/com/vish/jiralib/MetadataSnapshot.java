@@ -0,0 +1,130 @@
+package com.vish.jiralib;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import com.atlassian.jira.rest.client.api.domain.BasicComponent;
+import com.atlassian.jira.rest.client.api.domain.IssueType;
+
+/**
+ * on-disk copy of the project metadata {@link Jira} needs (issue types, components, issue link types), so that
+ * repeated short-lived runs (e.g. {@link JiraCmd}) can start without any metadata calls.
+ * <p>
+ * Stored as a properties file. A snapshot older than its TTL, written for another project, or unreadable
+ * is ignored. Sections that were never loaded are absent and read back as null.
+ * @author vish
+ *
+ */
+class MetadataSnapshot {
+	String projectKey;
+	/** null if not part of the snapshot. */
+	List<IssueType> issueTypes;
+	List<BasicComponent> components;
+	List<String> issueLinkTypes;
+
+	MetadataSnapshot(String projectKey) {
+		this.projectKey = projectKey;
+	}
+
+	/**
+	 * @param file
+	 * @param projectKey
+	 * @param ttlMillis
+	 * @return the snapshot, or null if there is no usable snapshot.
+	 */
+	static MetadataSnapshot read(File file, String projectKey, long ttlMillis) {
+		if (!file.isFile()) return null;
+		Properties props = new Properties();
+		try {
+			InputStream in = new FileInputStream(file);
+			try {
+				props.load(in);
+			} finally {
+				in.close();
+			}
+			long savedAt = Long.parseLong(props.getProperty("savedAt", "0"));
+			if (savedAt + ttlMillis < System.currentTimeMillis()) return null;
+			if (!projectKey.equalsIgnoreCase(props.getProperty("project"))) return null;
+
+			MetadataSnapshot retVal = new MetadataSnapshot(props.getProperty("project"));
+			if (props.getProperty("issuetype.count") != null) {
+				retVal.issueTypes = new ArrayList<IssueType>();
+				int n = Integer.parseInt(props.getProperty("issuetype.count"));
+				for (int i = 0; i < n; i++) {
+					String p = "issuetype." + i + ".";
+					retVal.issueTypes.add(new IssueType(uri(props.getProperty(p + "self")), Long.valueOf(props.getProperty(p + "id")),
+							props.getProperty(p + "name"), Boolean.parseBoolean(props.getProperty(p + "subtask")), null, null));
+				}
+				retVal.components = new ArrayList<BasicComponent>();
+				n = Integer.parseInt(props.getProperty("component.count"));
+				for (int i = 0; i < n; i++) {
+					String p = "component." + i + ".";
+					retVal.components.add(new BasicComponent(uri(props.getProperty(p + "self")), Long.valueOf(props.getProperty(p + "id")),
+							props.getProperty(p + "name"), null));
+				}
+			}
+			if (props.getProperty("linktype.count") != null) {
+				retVal.issueLinkTypes = new ArrayList<String>();
+				int n = Integer.parseInt(props.getProperty("linktype.count"));
+				for (int i = 0; i < n; i++) {
+					retVal.issueLinkTypes.add(props.getProperty("linktype." + i));
+				}
+			}
+			return retVal;
+		} catch (IOException e) {
+			System.err.println("WARNING: ignoring metadata snapshot " + file + ": " + e.getMessage());
+			return null;
+		} catch (RuntimeException e) {
+			System.err.println("WARNING: ignoring metadata snapshot " + file + ": " + e);
+			return null;
+		}
+	}
+
+	private static URI uri(String s) {
+		return s == null ? null : URI.create(s);
+	}
+
+	/**
+	 * write the snapshot. The file is replaced in one step (see {@link AtomicFiles}), so concurrent runs never read
+	 * a partial file.
+	 * @param file
+	 * @throws IOException
+	 */
+	void write(File file) throws IOException {
+		Properties props = new Properties();
+		props.setProperty("savedAt", String.valueOf(System.currentTimeMillis()));
+		props.setProperty("project", projectKey);
+		if (issueTypes != null) {
+			props.setProperty("issuetype.count", String.valueOf(issueTypes.size()));
+			for (int i = 0; i < issueTypes.size(); i++) {
+				IssueType it = issueTypes.get(i);
+				String p = "issuetype." + i + ".";
+				props.setProperty(p + "id", String.valueOf(it.getId()));
+				props.setProperty(p + "name", it.getName());
+				props.setProperty(p + "subtask", String.valueOf(it.isSubtask()));
+				if (it.getSelf() != null) props.setProperty(p + "self", it.getSelf().toString());
+			}
+			props.setProperty("component.count", String.valueOf(components.size()));
+			for (int i = 0; i < components.size(); i++) {
+				BasicComponent c = components.get(i);
+				String p = "component." + i + ".";
+				props.setProperty(p + "id", String.valueOf(c.getId()));
+				props.setProperty(p + "name", c.getName());
+				if (c.getSelf() != null) props.setProperty(p + "self", c.getSelf().toString());
+			}
+		}
+		if (issueLinkTypes != null) {
+			props.setProperty("linktype.count", String.valueOf(issueLinkTypes.size()));
+			for (int i = 0; i < issueLinkTypes.size(); i++) {
+				props.setProperty("linktype." + i, issueLinkTypes.get(i));
+			}
+		}
+		AtomicFiles.write(file, out -> props.store(out, "jiralib metadata snapshot"));
+	}
+}
@@ -0,0 +1,164 @@
+package com.vish.jiralib;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * call count, error count by HTTP status and latency histogram of one {@link Jira} operation.
+ * <p>
+ * Recording is lock-free: a few atomic increments per call, no allocation except for the first error of a status.
+ * Latencies go into {@value #BUCKETS} power-of-two buckets (bucket i: below 2^i microseconds), so percentiles are
+ * exact to within a factor of two, which is enough to tell where the time goes.
+ * @author vish
+ *
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+	public static final int BUCKETS = 32;
+	/** status recorded for errors that did not come with an HTTP response. */
+	public static final int NO_STATUS = -1;
+
+	private final String operation;
+	private final AtomicLong calls = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+	private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+	private final ConcurrentMap<Integer, AtomicLong> errorsByStatus = new ConcurrentHashMap<Integer, AtomicLong>();
+
+	OperationMetrics(String operation) {
+		this.operation = operation;
+	}
+
+	/**
+	 * record a completed call.
+	 * @param nanos duration
+	 * @param status 0 for success, otherwise the HTTP status or {@link #NO_STATUS}.
+	 */
+	void record(long nanos, int status) {
+		calls.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		long max = maxNanos.get();
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+			max = maxNanos.get();
+		}
+		histogram.incrementAndGet(bucket(nanos));
+		if (status != 0) {
+			errors.incrementAndGet();
+			AtomicLong count = errorsByStatus.get(status);
+			if (count == null) {
+				errorsByStatus.putIfAbsent(status, new AtomicLong());
+				count = errorsByStatus.get(status);
+			}
+			count.incrementAndGet();
+		}
+	}
+
+	static int bucket(long nanos) {
+		long micros = nanos / 1000;
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+	}
+
+	@Override
+	public String getOperation() { return operation; }
+	@Override
+	public long getCalls() { return calls.get(); }
+	@Override
+	public long getErrors() { return errors.get(); }
+	@Override
+	public Map<Integer, Long> getErrorsByStatus() { return snapshot().getErrorsByStatus(); }
+	@Override
+	public double getTotalMillis() { return totalNanos.get() / 1e6; }
+	@Override
+	public double getMeanMillis() { return snapshot().getMeanMillis(); }
+	@Override
+	public double getMaxMillis() { return maxNanos.get() / 1e6; }
+	@Override
+	public double get50thPercentileMillis() { return snapshot().getPercentileMillis(0.5); }
+	@Override
+	public double get95thPercentileMillis() { return snapshot().getPercentileMillis(0.95); }
+	@Override
+	public double get99thPercentileMillis() { return snapshot().getPercentileMillis(0.99); }
+	@Override
+	public long[] getHistogram() { return snapshot().getHistogram(); }
+
+	/**
+	 * clear all counters. Calls completing concurrently may be partly counted.
+	 */
+	@Override
+	public void reset() {
+		calls.set(0);
+		errors.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+		for (int i = 0; i < BUCKETS; i++) histogram.set(i, 0);
+		errorsByStatus.clear();
+	}
+
+	/**
+	 * @return a copy of the current values. Counters are read one by one while calls may be completing,
+	 * so totals can be off by the calls in flight.
+	 */
+	public Snapshot snapshot() {
+		long[] h = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) h[i] = histogram.get(i);
+		Map<Integer, Long> byStatus = new TreeMap<Integer, Long>();
+		for (Map.Entry<Integer, AtomicLong> e : errorsByStatus.entrySet()) byStatus.put(e.getKey(), e.getValue().get());
+		return new Snapshot(operation, calls.get(), errors.get(), totalNanos.get(), maxNanos.get(), h, byStatus);
+	}
+
+	/**
+	 * immutable copy of the metrics of one operation.
+	 */
+	public static class Snapshot {
+		private final String operation;
+		private final long calls, errors, totalNanos, maxNanos;
+		private final long[] histogram;
+		private final Map<Integer, Long> errorsByStatus;
+
+		Snapshot(String operation, long calls, long errors, long totalNanos, long maxNanos, long[] histogram,
+				Map<Integer, Long> errorsByStatus) {
+			this.operation = operation;
+			this.calls = calls; this.errors = errors; this.totalNanos = totalNanos; this.maxNanos = maxNanos;
+			this.histogram = histogram;
+			this.errorsByStatus = Collections.unmodifiableMap(errorsByStatus);
+		}
+
+		public String getOperation() { return operation; }
+		public long getCalls() { return calls; }
+		public long getErrors() { return errors; }
+		public Map<Integer, Long> getErrorsByStatus() { return errorsByStatus; }
+		public double getTotalMillis() { return totalNanos / 1e6; }
+		public double getMeanMillis() { return calls == 0 ? 0 : totalNanos / 1e6 / calls; }
+		public double getMaxMillis() { return maxNanos / 1e6; }
+		public long[] getHistogram() { return histogram.clone(); }
+
+		/**
+		 * @param p between 0 and 1, e.g. 0.99
+		 * @return upper bound of the bucket holding the p-th call, capped at the maximum; 0 if there were no calls.
+		 */
+		public double getPercentileMillis(double p) {
+			long count = 0;
+			for (long c : histogram) count += c;
+			if (count == 0) return 0;
+			long rank = (long) Math.ceil(p * count);
+			long seen = 0;
+			for (int i = 0; i < histogram.length; i++) {
+				seen += histogram[i];
+				if (seen >= rank) return Math.min((1L << i) / 1e3, getMaxMillis());
+			}
+			return getMaxMillis();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d calls, %d errors %s, total %.1f ms, mean %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+					operation, calls, errors, errorsByStatus, getTotalMillis(), getMeanMillis(),
+					getPercentileMillis(0.5), getPercentileMillis(0.99), getMaxMillis());
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.vish.jiralib;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics of one {@link Jira} operation. Registered by {@link JiraMetrics#registerMBeans(String)}.
+ * Times are in milliseconds; percentiles are upper bounds of power-of-two buckets, see {@link OperationMetrics}.
+ * @author vish
+ *
+ */
+public interface OperationMetricsMXBean {
+	String getOperation();
+	long getCalls();
+	long getErrors();
+	/** @return errors by HTTP status; {@value OperationMetrics#NO_STATUS} for errors without a response. */
+	Map<Integer, Long> getErrorsByStatus();
+	double getTotalMillis();
+	double getMeanMillis();
+	double getMaxMillis();
+	double get50thPercentileMillis();
+	double get95thPercentileMillis();
+	double get99thPercentileMillis();
+	/** @return calls per bucket; bucket i holds latencies below 2^i microseconds. */
+	long[] getHistogram();
+	void reset();
+}
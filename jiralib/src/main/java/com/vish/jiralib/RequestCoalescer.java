@@ -0,0 +1,71 @@
+package com.vish.jiralib;
+
+import java.util.List;
+import java.util.Set;
+
+import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.atlassian.jira.rest.client.api.domain.Project;
+import com.atlassian.jira.rest.client.api.domain.SearchResult;
+import com.atlassian.jira.rest.client.api.domain.Transition;
+
+/**
+ * shares identical reads that are in flight at the same time, so that a burst of callers asking for the same
+ * thing sends one REST request:
+ * <ul>
+ * <li>an issue by key: every full-issue read of {@link Jira} (e.g. {@link Jira#getIssueObjectsByKeys(java.util.Collection)})
+ * and {@link AsyncJira#getIssue(String)}</li>
+ * <li>the JQL of a saved filter</li>
+ * <li>the transitions of a workflow step (see {@link TransitionCache#keyOf(Issue)})</li>
+ * <li>a page of a JQL search: same JQL, page size, start and fields</li>
+ * <li>a project, while {@link AsyncJira} loads its metadata</li>
+ * </ul>
+ * Issue and search reads are only shared if no write went through the {@link IssueCache} since the shared read
+ * started, so a caller never gets a state older than its own last write.
+ * <p>
+ * One per {@link Jira} instance, or per {@link JiraSessionPool}. Thread-safe.
+ * @author vish
+ *
+ */
+public class RequestCoalescer {
+	final SingleFlight<String, Issue> issues = new SingleFlight<String, Issue>();
+	final SingleFlight<Long, String> filters = new SingleFlight<Long, String>();
+	final SingleFlight<String, List<Transition>> transitions = new SingleFlight<String, List<Transition>>();
+	final SingleFlight<String, SearchResult> pages = new SingleFlight<String, SearchResult>();
+	final SingleFlight<String, Project> projects = new SingleFlight<String, Project>();
+
+	private final IssueCache issueCache;
+
+	/**
+	 * @param issueCache whose invalidations end sharing of reads started before them.
+	 */
+	public RequestCoalescer(IssueCache issueCache) {
+		this.issueCache = issueCache;
+	}
+
+	/** @return flight key of an issue read starting now. */
+	String issueKey(String key) {
+		return key.toUpperCase() + "@" + issueCache.generation();
+	}
+
+	/** @return flight key of a search page read starting now. */
+	String pageKey(String jql, int pageSize, int startAt, Set<String> fields) {
+		return jql + "\n" + pageSize + "\n" + startAt + "\n" + fields + "\n" + issueCache.generation();
+	}
+
+	/** @return requests sent by coalesced reads. */
+	public long getRequestCount() {
+		return issues.getLoadCount() + filters.getLoadCount() + transitions.getLoadCount() + pages.getLoadCount()
+				+ projects.getLoadCount();
+	}
+
+	/** @return reads served by a request another caller had in flight. */
+	public long getCoalescedCount() {
+		return issues.getJoinedCount() + filters.getJoinedCount() + transitions.getJoinedCount() + pages.getJoinedCount()
+				+ projects.getJoinedCount();
+	}
+
+	@Override
+	public String toString() {
+		return getRequestCount() + " requests, " + getCoalescedCount() + " coalesced";
+	}
+}
@@ -0,0 +1,447 @@
+package com.vish.jiralib;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.apache.http.client.utils.DateUtils;
+
+import com.atlassian.util.concurrent.Promise;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * client-wide pacing and retry of REST calls, shared by everything that talks to one JIRA server.
+ * <ul>
+ * <li>rate: an optional token bucket ({@link #setRate(double)}, requests per second; off by default).</li>
+ * <li>concurrency: at most {@link #getConcurrencyLimit()} calls in flight. The limit is halved when JIRA throttles
+ * (429, 503) and grows by one after each round of successful calls, between {@link #setMinConcurrency(int) min}
+ * and {@link #setMaxConcurrency(int) max}.</li>
+ * <li>retry: throttled calls (429) are retried whatever the method, since JIRA did not process them. Calls failing
+ * with 502/503/504 or an I/O error are retried only if idempotent. The wait is the server's {@code Retry-After}
+ * when known, otherwise exponential backoff with full jitter, capped at {@link #setMaxBackoffMillis(long)}.</li>
+ * </ul>
+ * The JIRA Rest Client does not expose response headers, so {@code Retry-After} is honoured for
+ * {@link HttpTransport} requests only; JIRA Rest Client calls back off exponentially.
+ * <p>
+ * {@link #callAsync(boolean, Supplier)} applies the same limits without blocking: calls over the limit wait in a
+ * queue and backoffs are timed by a shared daemon timer.
+ * <p>
+ * Blocked callers wait on a {@link ReentrantLock} condition, not a monitor, so waiting virtual threads release their
+ * carrier thread (see {@link JiraExecutors}).
+ * Thread-safe.
+ * @author vish
+ *
+ */
+public class RequestGovernor {
+	public static final int DEFAULT_MAX_RETRIES = 5;
+	public static final long DEFAULT_BASE_BACKOFF_MILLIS = 500;
+	public static final long DEFAULT_MAX_BACKOFF_MILLIS = 30000;
+	public static final int DEFAULT_MAX_CONCURRENCY = 16;
+	/** the limit is lowered at most once per this interval, so one burst of 429s counts as one signal. */
+	static final long DECREASE_INTERVAL_MILLIS = 1000;
+	/** times rate waits and backoffs of async calls. */
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(Jira.daemonThreads("jiralib-timer"));
+
+	private volatile RateLimiter rateLimiter;
+	private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+	private volatile long baseBackoffMillis = DEFAULT_BASE_BACKOFF_MILLIS;
+	private volatile long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+
+	/** guards the fields below. */
+	private final ReentrantLock lock = new ReentrantLock();
+	/** signalled when a slot may have come free. */
+	private final Condition slotFree = lock.newCondition();
+	private int minConcurrency = 1;
+	private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+	private int limit = DEFAULT_MAX_CONCURRENCY;
+	private int inFlight;
+	private int successesSinceChange;
+	private long lastDecrease;
+	/** async calls waiting for a concurrency slot, oldest first. */
+	private final Deque<Runnable> waiting = new ArrayDeque<Runnable>();
+
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong throttled = new AtomicLong();
+
+	/**
+	 * @param requestsPerSecond sustained rate; bursts of up to one second's worth are allowed. 0 for no limit.
+	 */
+	public void setRate(double requestsPerSecond) {
+		rateLimiter = requestsPerSecond > 0 ? RateLimiter.create(requestsPerSecond) : null;
+	}
+
+	/** @return requests per second, 0 if unlimited. */
+	public double getRate() {
+		RateLimiter r = rateLimiter;
+		return r == null ? 0 : r.getRate();
+	}
+
+	public int getMaxRetries() { return maxRetries; }
+	public void setMaxRetries(int maxRetries) { this.maxRetries = maxRetries; }
+	public long getBaseBackoffMillis() { return baseBackoffMillis; }
+	public void setBaseBackoffMillis(long baseBackoffMillis) { this.baseBackoffMillis = baseBackoffMillis; }
+	public long getMaxBackoffMillis() { return maxBackoffMillis; }
+	public void setMaxBackoffMillis(long maxBackoffMillis) { this.maxBackoffMillis = maxBackoffMillis; }
+
+	public int getMinConcurrency() {
+		lock.lock();
+		try {
+			return minConcurrency;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void setMinConcurrency(int minConcurrency) {
+		if (minConcurrency < 1) throw new IllegalArgumentException("min concurrency must be at least 1: " + minConcurrency);
+		lock.lock();
+		try {
+			this.minConcurrency = minConcurrency;
+			if (limit < minConcurrency) limit = minConcurrency;
+			slotFree.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		startWaiting();
+	}
+
+	public int getMaxConcurrency() {
+		lock.lock();
+		try {
+			return maxConcurrency;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** also resets the current limit to the new maximum. */
+	public void setMaxConcurrency(int maxConcurrency) {
+		lock.lock();
+		try {
+			if (maxConcurrency < minConcurrency) throw new IllegalArgumentException("max concurrency below min: " + maxConcurrency);
+			this.maxConcurrency = maxConcurrency;
+			this.limit = maxConcurrency;
+			slotFree.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		startWaiting();
+	}
+
+	/** @return calls currently allowed in flight. */
+	public int getConcurrencyLimit() {
+		lock.lock();
+		try {
+			return limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+	/** @return retries made so far. */
+	public long getRetryCount() { return retries.get(); }
+	/** @return throttling responses (429, 503) seen so far. */
+	public long getThrottledCount() { return throttled.get(); }
+
+	/**
+	 * run a call under the rate and concurrency limits, retrying as described above.
+	 * @param idempotent whether the call may be repeated after a failure the server may have acted on.
+	 * @param call
+	 * @return the call's result.
+	 * @throws Exception the last failure, if the call is not retryable or retries are exhausted.
+	 */
+	public <T> T call(boolean idempotent, Callable<T> call) throws Exception {
+		return call(idempotent, call, 0);
+	}
+
+	/**
+	 * claim a promise that was sent without going through the governor (e.g. a prefetch), then
+	 * retry through {@link #call(boolean, Callable)} if it failed retryably.
+	 * @param sent
+	 * @param idempotent
+	 * @param resend makes the same request again, synchronously.
+	 * @return
+	 * @throws Exception
+	 */
+	public <T> T claim(Promise<T> sent, boolean idempotent, Callable<T> resend) throws Exception {
+		try {
+			T retVal = sent.claim();
+			succeeded();
+			return retVal;
+		} catch (RuntimeException e) {
+			long delay = retryDelay(JiraMetrics.statusOf(e), e, idempotent, 0, -1);
+			if (delay < 0) throw e;
+			Thread.sleep(delay);
+			return call(idempotent, resend, 1);
+		}
+	}
+
+	/**
+	 * non-blocking form of {@link #call(boolean, Callable)}: the request is sent once a rate token and a
+	 * concurrency slot are free, and retried after a backoff, without holding a thread while it waits.
+	 * Cancelling the returned future cancels the request in flight and any retry.
+	 * @param idempotent
+	 * @param send sends the request and returns its future, e.g. a JIRA Rest Client {@link Promise}. Called again for each retry.
+	 * @return completes with the result of the last attempt, or its failure.
+	 */
+	public <T> CompletableFuture<T> callAsync(boolean idempotent, Supplier<? extends ListenableFuture<T>> send) {
+		CompletableFuture<T> retVal = new CompletableFuture<T>();
+		startAsync(idempotent, send, retVal, 0);
+		return retVal;
+	}
+
+	private <T> void startAsync(boolean idempotent, Supplier<? extends ListenableFuture<T>> send, CompletableFuture<T> result, int attempt) {
+		if (result.isDone()) return;
+		RateLimiter r = rateLimiter;
+		if (r != null && !r.tryAcquire()) {
+			long wait = Math.max(1, (long) (1000 / r.getRate()));
+			TIMER.schedule(() -> startAsync(idempotent, send, result, attempt), wait, TimeUnit.MILLISECONDS);
+			return;
+		}
+		lock.lock();
+		try {
+			if (inFlight >= limit) {
+				waiting.add(() -> sendAsync(idempotent, send, result, attempt));
+				return;
+			}
+			inFlight++;
+		} finally {
+			lock.unlock();
+		}
+		sendAsync(idempotent, send, result, attempt);
+	}
+
+	/** send one attempt. The caller holds a concurrency slot for it. */
+	private <T> void sendAsync(boolean idempotent, Supplier<? extends ListenableFuture<T>> send, CompletableFuture<T> result, int attempt) {
+		if (result.isDone()) {
+			release();
+			return;
+		}
+		ListenableFuture<T> sent;
+		try {
+			sent = send.get();
+		} catch (RuntimeException e) {
+			finishAsync(idempotent, send, result, attempt, null, e);
+			return;
+		}
+		result.whenComplete((v, e) -> {
+			if (result.isCancelled()) sent.cancel(true);
+		});
+		toCompletableFuture(sent).whenComplete((v, e) -> finishAsync(idempotent, send, result, attempt, v, e));
+	}
+
+	/**
+	 * @param future
+	 * @return a future completing with the same result or failure (not wrapped in an {@link ExecutionException}).
+	 */
+	static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> future) {
+		CompletableFuture<T> retVal = new CompletableFuture<T>();
+		future.addListener(() -> {
+			try {
+				retVal.complete(future.get());
+			} catch (ExecutionException e) {
+				retVal.completeExceptionally(e.getCause());
+			} catch (Exception e) {
+				//cancelled
+				retVal.completeExceptionally(e);
+			}
+		}, Runnable::run);
+		return retVal;
+	}
+
+	private <T> void finishAsync(boolean idempotent, Supplier<? extends ListenableFuture<T>> send, CompletableFuture<T> result, int attempt,
+			T value, Throwable error) {
+		release();
+		if (error == null) {
+			succeeded();
+			result.complete(value);
+			return;
+		}
+		long delay = result.isDone() ? -1 : retryDelay(JiraMetrics.statusOf(error), error, idempotent, attempt, -1);
+		if (delay < 0) result.completeExceptionally(error);
+		else TIMER.schedule(() -> startAsync(idempotent, send, result, attempt + 1), delay, TimeUnit.MILLISECONDS);
+	}
+
+	private <T> T call(boolean idempotent, Callable<T> call, int attempt) throws Exception {
+		for (;; attempt++) {
+			acquire();
+			T retVal;
+			try {
+				retVal = call.call();
+			} catch (Exception e) {
+				release();
+				long delay = retryDelay(JiraMetrics.statusOf(e), e, idempotent, attempt, -1);
+				if (delay < 0) throw e;
+				Thread.sleep(delay);
+				continue;
+			}
+			release();
+			succeeded();
+			return retVal;
+		}
+	}
+
+	/**
+	 * wait for a rate token only. For requests that are sent asynchronously and claimed later.
+	 */
+	void pace() {
+		RateLimiter r = rateLimiter;
+		if (r != null) r.acquire();
+	}
+
+	/**
+	 * wait for a rate token and a free concurrency slot. Pair with {@link #release()}.
+	 * @throws InterruptedException
+	 */
+	void acquire() throws InterruptedException {
+		pace();
+		lock.lockInterruptibly();
+		try {
+			while (inFlight >= limit) {
+				try {
+					slotFree.await();
+				} catch (InterruptedException e) {
+					//pass on a signal this waiter may have taken
+					slotFree.signal();
+					throw e;
+				}
+			}
+			inFlight++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void release() {
+		lock.lock();
+		try {
+			inFlight--;
+			slotFree.signal();
+		} finally {
+			lock.unlock();
+		}
+		startWaiting();
+	}
+
+	/** additive increase: one more slot after {@code limit} successes in a row. */
+	void succeeded() {
+		lock.lock();
+		try {
+			if (limit >= maxConcurrency) return;
+			if (++successesSinceChange < limit) return;
+			limit++;
+			successesSinceChange = 0;
+			slotFree.signal();
+		} finally {
+			lock.unlock();
+		}
+		startWaiting();
+	}
+
+	/** hand free slots to queued async calls. They are sent outside the lock. */
+	private void startWaiting() {
+		for (;;) {
+			Runnable next;
+			lock.lock();
+			try {
+				if (inFlight >= limit || waiting.isEmpty()) return;
+				inFlight++;
+				next = waiting.poll();
+			} finally {
+				lock.unlock();
+			}
+			next.run();
+		}
+	}
+
+	/** multiplicative decrease, at most once per {@link #DECREASE_INTERVAL_MILLIS}. */
+	void throttled() {
+		throttled.incrementAndGet();
+		lock.lock();
+		try {
+			successesSinceChange = 0;
+			long now = System.currentTimeMillis();
+			if (now - lastDecrease < DECREASE_INTERVAL_MILLIS) return;
+			lastDecrease = now;
+			limit = Math.max(minConcurrency, limit / 2);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * decide whether a failed attempt is retried, and record throttling.
+	 * @param status HTTP status, or {@link OperationMetrics#NO_STATUS}.
+	 * @param error the failure, if any. I/O errors without a status are transient.
+	 * @param idempotent
+	 * @param attempt 0 for the first attempt.
+	 * @param retryAfterMillis the server's Retry-After, or -1.
+	 * @return milliseconds to wait before the next attempt, or -1 to give up.
+	 */
+	long retryDelay(int status, Throwable error, boolean idempotent, int attempt, long retryAfterMillis) {
+		boolean throttle = status == 429 || status == 503;
+		if (throttle) throttled();
+		boolean retryable = status == 429
+				|| (idempotent && (status == 502 || status == 503 || status == 504
+						|| (status == OperationMetrics.NO_STATUS && isIoError(error))));
+		if (!retryable || attempt >= maxRetries) return -1;
+		retries.incrementAndGet();
+		if (retryAfterMillis >= 0) return Math.min(retryAfterMillis, maxBackoffMillis);
+		long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 30));
+		return ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+
+	private static boolean isIoError(Throwable t) {
+		for (; t != null; t = t.getCause()) {
+			if (t instanceof IOException) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param value a Retry-After header: delay in seconds, or an HTTP date.
+	 * @return the delay in milliseconds, or -1 if absent or unreadable.
+	 */
+	static long parseRetryAfter(String value) {
+		if (value == null) return -1;
+		value = value.trim();
+		try {
+			return Math.max(0, Long.parseLong(value) * 1000);
+		} catch (NumberFormatException e) {
+			Date date = DateUtils.parseDate(value);
+			return date == null ? -1 : Math.max(0, date.getTime() - System.currentTimeMillis());
+		}
+	}
+
+	@Override
+	public String toString() {
+		lock.lock();
+		try {
+			return "rate " + (rateLimiter == null ? "unlimited" : getRate() + "/s") + ", concurrency " + inFlight + "/" + limit
+					+ (waiting.isEmpty() ? "" : ", " + waiting.size() + " queued") + ", " + retries.get() + " retries, " + throttled.get() + " throttled";
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.vish.jiralib;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * at most one load per key in flight: a caller asking for a key that is already being loaded waits for that
+ * load and gets its result (or failure) instead of starting another.
+ * <p>
+ * Nothing is kept once a load completes; caching is left to the caller. Lock-free: flights are registered
+ * with {@link ConcurrentMap#putIfAbsent(Object, Object)}, so callers for different keys never wait on each other.
+ * @author vish
+ *
+ * @param <K>
+ * @param <V>
+ */
+final class SingleFlight<K, V> {
+	private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<K, CompletableFuture<V>>();
+	private final AtomicLong loads = new AtomicLong();
+	private final AtomicLong joined = new AtomicLong();
+
+	/**
+	 * @param key
+	 * @param load run in the calling thread, unless a load for {@code key} is in flight.
+	 * @return the result of this call's load or of the one it joined.
+	 * @throws Exception the failure of that load.
+	 */
+	V call(K key, Callable<V> load) throws Exception {
+		CompletableFuture<V> mine = new CompletableFuture<V>();
+		CompletableFuture<V> flight = flights.putIfAbsent(key, mine);
+		if (flight != null) {
+			joined.incrementAndGet();
+			return await(flight);
+		}
+		loads.incrementAndGet();
+		try {
+			V retVal = load.call();
+			mine.complete(retVal);
+			return retVal;
+		} catch (Throwable t) {
+			mine.completeExceptionally(t);
+			throw t;
+		} finally {
+			flights.remove(key, mine);
+		}
+	}
+
+	/**
+	 * non-blocking form of {@link #call(Object, Callable)}.
+	 * @param key
+	 * @param load starts the load, unless one for {@code key} is in flight.
+	 * @return a view of the shared load. Cancelling it does not affect the other callers.
+	 */
+	CompletableFuture<V> callAsync(K key, Supplier<? extends CompletableFuture<V>> load) {
+		CompletableFuture<V> mine = new CompletableFuture<V>();
+		CompletableFuture<V> flight = flights.putIfAbsent(key, mine);
+		if (flight != null) {
+			joined.incrementAndGet();
+			return flight.copy();
+		}
+		loads.incrementAndGet();
+		CompletableFuture<V> loading;
+		try {
+			loading = load.get();
+		} catch (RuntimeException e) {
+			flights.remove(key, mine);
+			mine.completeExceptionally(e);
+			return mine.copy();
+		}
+		loading.whenComplete((v, e) -> {
+			flights.remove(key, mine);
+			if (e == null) mine.complete(v);
+			else mine.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+		});
+		return mine.copy();
+	}
+
+	private static <V> V await(CompletableFuture<V> flight) throws Exception {
+		try {
+			return flight.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception cause) throw cause;
+			if (e.getCause() instanceof Error cause) throw cause;
+			throw e;
+		}
+	}
+
+	/** @return loads started. */
+	long getLoadCount() { return loads.get(); }
+	/** @return calls that joined a load in flight instead of starting one. */
+	long getJoinedCount() { return joined.get(); }
+	/** @return loads in flight now. */
+	int size() { return flights.size(); }
+}
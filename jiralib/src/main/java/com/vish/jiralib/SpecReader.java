@@ -0,0 +1,196 @@
+package com.vish.jiralib;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+/**
+ * reads input records for bulk operations one at a time from a CSV or JSONL file, see {@link IssueSpecReader}
+ * and {@link IssueLinkSpecReader}.
+ * <p>
+ * CSV: the first row is a header naming the columns (any order, case insensitive). Fields may be quoted
+ * with {@code "}, quotes inside quoted fields are doubled, quoted fields may span lines.
+ * <p>
+ * JSONL: one object per line with the column names as keys. Blank lines are ignored.
+ * <p>
+ * Malformed input is thrown as {@link IllegalArgumentException} naming the line.
+ * @author vish
+ *
+ */
+public abstract class SpecReader<T> implements Iterable<T>, Closeable {
+	public static enum Format { CSV, JSONL }
+
+	private final BufferedReader reader;
+	private final Format format;
+	private final String[] columns;
+	/** the first this many columns must be present in a CSV header. */
+	private final int required;
+	private int line;
+	/** CSV column index per entry of {@link #columns}. */
+	private int[] columnIndex;
+	private boolean iterated;
+
+	protected SpecReader(Reader reader, Format format, String[] columns, int required) {
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+		this.format = format;
+		this.columns = columns;
+		this.required = required;
+	}
+
+	/**
+	 * @return JSONL for {@code .jsonl} and {@code .json} files, CSV for everything else.
+	 */
+	static Format formatOf(File file) {
+		String name = file.getName().toLowerCase();
+		return name.endsWith(".jsonl") || name.endsWith(".json") ? Format.JSONL : Format.CSV;
+	}
+
+	/**
+	 * @param values one per column, null if absent.
+	 * @return the record.
+	 */
+	protected abstract T create(String[] values);
+
+	/**
+	 * the records can only be iterated once.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		if (iterated) throw new IllegalStateException("a " + getClass().getSimpleName() + " can only be iterated once");
+		iterated = true;
+		return new Iterator<T>() {
+			private T next;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null) next = read();
+				return next != null;
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext()) throw new NoSuchElementException();
+				T retVal = next;
+				next = null;
+				return retVal;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private T read() {
+		try {
+			return format == Format.CSV ? readCsv() : readJson();
+		} catch (IOException e) {
+			throw new IllegalArgumentException("error reading line " + line + ": " + e.getMessage(), e);
+		}
+	}
+
+	private T readJson() throws IOException {
+		String s;
+		do {
+			s = reader.readLine();
+			line++;
+			if (s == null) return null;
+		} while (s.trim().isEmpty());
+		try {
+			JSONObject o = new JSONObject(s);
+			String[] values = new String[columns.length];
+			for (int i = 0; i < columns.length; i++) values[i] = o.optString(columns[i], null);
+			return create(values);
+		} catch (JSONException e) {
+			throw new IllegalArgumentException("line " + line + ": " + e.getMessage(), e);
+		}
+	}
+
+	private T readCsv() throws IOException {
+		if (columnIndex == null) {
+			List<String> header = readCsvRecord();
+			if (header == null) return null;
+			Map<String,Integer> byName = new HashMap<String,Integer>();
+			for (int i = 0; i < header.size(); i++) byName.put(header.get(i).trim().toLowerCase(), i);
+			columnIndex = new int[columns.length];
+			for (int i = 0; i < columns.length; i++) {
+				Integer idx = byName.get(columns[i]);
+				//optional columns may be left out
+				if (idx == null && i < required) throw new IllegalArgumentException("CSV header lacks column " + columns[i] + ": " + header);
+				columnIndex[i] = idx == null ? -1 : idx;
+			}
+		}
+		List<String> record;
+		do {
+			record = readCsvRecord();
+			if (record == null) return null;
+		} while (record.size() == 1 && record.get(0).isEmpty());
+		String[] values = new String[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			int idx = columnIndex[i];
+			values[i] = idx < 0 || idx >= record.size() ? null : record.get(idx);
+		}
+		return create(values);
+	}
+
+	/**
+	 * @return the fields of the next record, or null at end of input.
+	 */
+	private List<String> readCsvRecord() throws IOException {
+		String s = reader.readLine();
+		line++;
+		if (s == null) return null;
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		int i = 0;
+		while (true) {
+			if (i == s.length()) {
+				if (!quoted) break;
+				//quoted field continues on the next line
+				String more = reader.readLine();
+				line++;
+				if (more == null) throw new IllegalArgumentException("line " + line + ": unterminated quoted field");
+				field.append('\n');
+				s = more;
+				i = 0;
+				continue;
+			}
+			char c = s.charAt(i++);
+			if (quoted) {
+				if (c == '"') {
+					if (i < s.length() && s.charAt(i) == '"') { field.append('"'); i++; }
+					else quoted = false;
+				} else {
+					field.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+}
@@ -0,0 +1,121 @@
+package com.vish.jiralib;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.atlassian.jira.rest.client.api.domain.Transition;
+
+/**
+ * caches the transitions available to issues, grouped by (project, issue type, current status).
+ * <p>
+ * Issues in the same group share a workflow step, so one {@code getTransitions} call per group is enough
+ * for a bulk run. Entries expire after a TTL so that workflow edits on the server are picked up.
+ * Transitions guarded by per-issue conditions (assignee, reporter...) are not distinguished.
+ * <p>
+ * The status each transition leads to is cached alongside, since the JIRA Rest Client does not expose it.
+ * @author vish
+ *
+ */
+public class TransitionCache {
+	public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+	private static class Entry<V> {
+		final V value;
+		final long expiresAt;
+		Entry(V value, long expiresAt) {
+			this.value = value; this.expiresAt = expiresAt;
+		}
+	}
+
+	private final ConcurrentMap<String, Entry<List<Transition>>> entries = new ConcurrentHashMap<String, Entry<List<Transition>>>();
+	/** destination status ID by {@code key#transitionId}. */
+	private final ConcurrentMap<String, Entry<String>> destinations = new ConcurrentHashMap<String, Entry<String>>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private volatile long ttlMillis = DEFAULT_TTL_MILLIS;
+
+	/**
+	 * @param issue
+	 * @return cache key for the workflow step the issue is in: {@code project/issuetype/status}.
+	 */
+	public static String keyOf(Issue issue) {
+		return workflowOf(issue) + "/" + issue.getStatus().getId();
+	}
+
+	/**
+	 * @param issue
+	 * @return the workflow the issue follows: {@code project/issuetype}.
+	 */
+	public static String workflowOf(Issue issue) {
+		String project = issue.getProject() != null ?
+				issue.getProject().getKey() :
+				issue.getKey().substring(0, issue.getKey().lastIndexOf('-'));
+		return project + "/" + issue.getIssueType().getId();
+	}
+
+	/**
+	 * @param project project key
+	 * @param issueTypeId
+	 * @param statusId
+	 * @return cache key for the given workflow step.
+	 */
+	public static String keyOf(String project, String issueTypeId, String statusId) {
+		return project + "/" + issueTypeId + "/" + statusId;
+	}
+
+	/**
+	 * @param key see {@link #keyOf(Issue)}
+	 * @return cached transitions, or null if absent or expired.
+	 */
+	public List<Transition> get(String key) {
+		return get(entries, key);
+	}
+
+	/**
+	 * @param key see {@link #keyOf(Issue)}
+	 * @param transitionId
+	 * @return ID of the status the transition leads to from that step, or null if absent or expired.
+	 */
+	public String getDestination(String key, int transitionId) {
+		return get(destinations, key + "#" + transitionId);
+	}
+
+	private <V> V get(ConcurrentMap<String, Entry<V>> map, String key) {
+		Entry<V> e = map.get(key);
+		if (e == null || e.expiresAt < System.currentTimeMillis()) {
+			if (e != null) map.remove(key, e);
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return e.value;
+	}
+
+	public void put(String key, List<Transition> transitions) {
+		entries.put(key, new Entry<List<Transition>>(transitions, System.currentTimeMillis() + ttlMillis));
+	}
+
+	public void putDestination(String key, int transitionId, String statusId) {
+		destinations.put(key + "#" + transitionId, new Entry<String>(statusId, System.currentTimeMillis() + ttlMillis));
+	}
+
+	public void invalidate(String key) {
+		entries.remove(key);
+		destinations.keySet().removeIf(k -> k.startsWith(key + "#"));
+	}
+
+	public void invalidateAll() {
+		entries.clear();
+		destinations.clear();
+	}
+
+	public long getTtlMillis() { return ttlMillis; }
+	public void setTtlMillis(long ttlMillis) { this.ttlMillis = ttlMillis; }
+	public int size() { return entries.size(); }
+	public long getHits() { return hits.get(); }
+	public long getMisses() { return misses.get(); }
+}
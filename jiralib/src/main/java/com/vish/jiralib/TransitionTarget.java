@@ -0,0 +1,57 @@
+package com.vish.jiralib;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * where a named transition leads, per workflow (see {@link TransitionCache#workflowOf}), as learned by a bulk
+ * transition from the {@code to} field of the transitions resource.
+ * <p>
+ * Transition and status names often differ ("Resolve Issue" leads to "Resolved"), and an issue already in the
+ * destination usually cannot take the transition again. Such an issue is already at the target once the destination
+ * in its workflow is known. Until then, only a status named like the transition counts.
+ * Thread-safe.
+ * @author vish
+ *
+ */
+final class TransitionTarget {
+	private final String transitionName;
+	/** destination status ID by workflow. */
+	private final ConcurrentMap<String, String> destinations = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * @param transitionName case insensitive.
+	 */
+	TransitionTarget(String transitionName) {
+		this.transitionName = transitionName;
+	}
+
+	/**
+	 * record that in {@code workflow} the transition leads to status {@code statusId}.
+	 * @param workflow
+	 * @param statusId
+	 */
+	void learned(String workflow, String statusId) {
+		destinations.put(workflow, statusId);
+	}
+
+	/** @return whether the destination in {@code workflow} is known. */
+	boolean isKnown(String workflow) {
+		return destinations.containsKey(workflow);
+	}
+
+	/**
+	 * @param workflow
+	 * @param statusId current status of the issue.
+	 * @param statusName same.
+	 * @return whether an issue of {@code workflow} in that status needs no transition.
+	 */
+	boolean isReached(String workflow, String statusId, String statusName) {
+		return statusName.equalsIgnoreCase(transitionName) || statusId.equals(destinations.get(workflow));
+	}
+
+	@Override
+	public String toString() {
+		return transitionName + " > " + destinations;
+	}
+}
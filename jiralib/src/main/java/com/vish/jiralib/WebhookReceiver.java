@@ -0,0 +1,305 @@
+package com.vish.jiralib;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+import com.atlassian.jira.rest.client.internal.json.JsonParseUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * embedded HTTP listener for JIRA webhooks, keeping the library's in-process state current without polling.
+ * <p>
+ * Register {@code http://<host>:<port><path>?secret=<secret>} as a webhook in JIRA (issue created, updated and
+ * deleted, issue link created and deleted, comments, project and component changes). Each event is applied as follows:
+ * <ul>
+ * <li>issue events and any other event carrying an issue (e.g. comments): the issue is dropped from the
+ * {@link IssueCache}. JIRA Rest Client issues are immutable, so cached issues are invalidated rather than patched;
+ * the next read fetches the new state once, and reads in flight are not shared past it (see {@link RequestCoalescer}).</li>
+ * <li>{@code jira:issue_created} and {@code jira:issue_updated} with the issue's fields: mirrors added with
+ * {@link #addMirror(IssueMirror)} are patched from the payload. {@code jira:issue_deleted} removes the issue from them.
+ * Other events carry an abbreviated issue and leave mirrors alone.</li>
+ * <li>issue link events: both issues are dropped from the cache (by ID, as link payloads carry no keys).</li>
+ * <li>project and component events: issuetypes and components of the sessions are fetched again on next use,
+ * and the {@link TransitionCache} is cleared, as the project's workflow scheme may have changed.</li>
+ * </ul>
+ * Other events are ignored. Mirror patches are held in memory and saved by the mirror's next refresh.
+ * <pre>
+ * WebhookReceiver receiver = new WebhookReceiver(jira);
+ * receiver.setSecret("s3cret");
+ * receiver.start(new InetSocketAddress(8090), WebhookReceiver.DEFAULT_PATH);
+ * </pre>
+ * @author vish
+ *
+ */
+public class WebhookReceiver implements Closeable {
+	public static final String DEFAULT_PATH = "/jira-webhook";
+	/** payloads larger than this are refused. */
+	public static final int MAX_PAYLOAD_BYTES = 4 << 20;
+	/** longest wait in {@link #close()} for events being handled. */
+	public static final int CLOSE_TIMEOUT_SECONDS = 5;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final IssueCache issueCache;
+	private final TransitionCache transitionCache;
+	/** sessions whose project metadata is reset by project events. */
+	private final Supplier<Collection<Jira>> sessions;
+	private final List<IssueMirror> mirrors = new CopyOnWriteArrayList<IssueMirror>();
+	private volatile byte[] secret;
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicLong applied = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * @param jira whose caches and metadata are kept current.
+	 */
+	public WebhookReceiver(final Jira jira) {
+		this(jira.getIssueCache(), jira.getTransitionCache(), () -> Collections.singletonList(jira));
+	}
+
+	/**
+	 * @param pool whose caches and sessions are kept current.
+	 */
+	public WebhookReceiver(JiraSessionPool pool) {
+		this(pool.getIssueCache(), pool.getTransitionCache(), pool::getSessions);
+	}
+
+	WebhookReceiver(IssueCache issueCache, TransitionCache transitionCache, Supplier<Collection<Jira>> sessions) {
+		this.issueCache = issueCache;
+		this.transitionCache = transitionCache;
+		this.sessions = sessions;
+	}
+
+	/**
+	 * patch {@code mirror} with the issues of its project as they change.
+	 * @param mirror
+	 */
+	public void addMirror(IssueMirror mirror) {
+		mirrors.add(mirror);
+	}
+
+	/**
+	 * require a {@code secret} query parameter on every request. Requests without it get 403.
+	 * @param secret null to accept any request.
+	 */
+	public void setSecret(String secret) {
+		this.secret = secret == null ? null : secret.getBytes(UTF8);
+	}
+
+	/**
+	 * start listening. Requests are handled on the threads of {@link JiraExecutors}.
+	 * @param address e.g. {@code new InetSocketAddress(8090)}; port 0 for any free port.
+	 * @param path e.g. {@link #DEFAULT_PATH}.
+	 * @throws IOException if the port cannot be bound.
+	 */
+	public synchronized void start(InetSocketAddress address, String path) throws IOException {
+		if (server != null) throw new IllegalStateException("already listening on " + server.getAddress());
+		server = HttpServer.create(address, 0);
+		server.createContext(path, this::handle);
+		executor = JiraExecutors.newExecutor("jiralib-webhook");
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/** @return the port listened on, or -1 if not started. */
+	public synchronized int getPort() {
+		return server == null ? -1 : server.getAddress().getPort();
+	}
+
+	/** stop listening, and wait up to {@value #CLOSE_TIMEOUT_SECONDS} seconds for events being handled to finish. */
+	@Override
+	public synchronized void close() {
+		if (server == null) return;
+		server.stop(CLOSE_TIMEOUT_SECONDS);
+		executor.shutdown();
+		try {
+			executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		server = null;
+	}
+
+	/** @return webhook requests received. */
+	public long getReceivedCount() { return received.get(); }
+	/** @return events that changed some state. */
+	public long getAppliedCount() { return applied.get(); }
+	/** @return requests refused: wrong method or secret, too large, or unreadable. */
+	public long getRejectedCount() { return rejected.get(); }
+
+	private void handle(HttpExchange exchange) throws IOException {
+		received.incrementAndGet();
+		try {
+			int status;
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				status = 405;
+			} else if (!secretMatches(exchange.getRequestURI().getRawQuery())) {
+				status = 403;
+			} else {
+				String payload = read(exchange.getRequestBody());
+				if (payload == null) {
+					status = 413;
+				} else {
+					try {
+						apply(payload);
+						status = 204;
+					} catch (JSONException e) {
+						status = 400;
+					}
+				}
+			}
+			if (status != 204) rejected.incrementAndGet();
+			exchange.sendResponseHeaders(status, -1);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private boolean secretMatches(String query) {
+		byte[] expected = secret;
+		if (expected == null) return true;
+		if (query == null) return false;
+		for (String param : query.split("&")) {
+			if (param.startsWith("secret=")) {
+				byte[] given = URLDecoder.decode(param.substring(7), UTF8).getBytes(UTF8);
+				return MessageDigest.isEqual(expected, given);
+			}
+		}
+		return false;
+	}
+
+	/** @return the body, or null if larger than {@link #MAX_PAYLOAD_BYTES}. */
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+		byte[] buf = new byte[8192];
+		for (int n; (n = in.read(buf)) > 0; ) {
+			if (out.size() + n > MAX_PAYLOAD_BYTES) return null;
+			out.write(buf, 0, n);
+		}
+		return new String(out.toByteArray(), UTF8);
+	}
+
+	/**
+	 * apply one webhook payload, as received over HTTP.
+	 * @param payload JSON with a {@code webhookEvent}.
+	 * @return false if the event was ignored.
+	 * @throws JSONException if the payload is not a JSON object.
+	 */
+	public boolean apply(String payload) throws JSONException {
+		JSONObject event = new JSONObject(payload);
+		String type = text(event, "webhookEvent");
+		if (type == null) return false;
+		boolean retVal = false;
+		JSONObject issue = event.optJSONObject("issue");
+		String key = issue == null ? null : text(issue, "key");
+		if (key != null) {
+			issueCache.invalidate(key);
+			if (type.equals("jira:issue_deleted")) {
+				patchMirrors(key, null);
+			} else if ((type.equals("jira:issue_created") || type.equals("jira:issue_updated")) && issue.optJSONObject("fields") != null) {
+				patchMirrors(key, issue);
+			}
+			retVal = true;
+		}
+		JSONObject link = event.optJSONObject("issueLink");
+		if (type.startsWith("issuelink_") && link != null) {
+			issueCache.invalidateById(link.optLong("sourceIssueId", -1));
+			issueCache.invalidateById(link.optLong("destinationIssueId", -1));
+			retVal = true;
+		}
+		if (type.startsWith("project_") || type.startsWith("component_")) {
+			for (Jira jira : sessions.get()) jira.resetProjectMetadata();
+			transitionCache.invalidateAll();
+			retVal = true;
+		}
+		if (retVal) applied.incrementAndGet();
+		return retVal;
+	}
+
+	/**
+	 * @param issue the payload's issue, or null to remove {@code key}.
+	 */
+	private void patchMirrors(String key, JSONObject issue) {
+		String project = key.substring(0, Math.max(0, key.lastIndexOf('-')));
+		IssueProjection projection = null;
+		for (IssueMirror mirror : mirrors) {
+			if (!mirror.getProjectKey().equalsIgnoreCase(project)) continue;
+			if (issue == null) {
+				mirror.remove(key);
+				continue;
+			}
+			if (projection == null) projection = projectionOf(issue, IssueMirror.FIELDS);
+			mirror.put(projection);
+		}
+	}
+
+	/**
+	 * @param issue an issue as found in webhook payloads (same layout as the REST issue resource).
+	 * @param fields see {@link IssueProjection#SUPPORTED_FIELDS}
+	 * @return the same values {@link IssueProjection#of(com.atlassian.jira.rest.client.api.domain.Issue, String...)}
+	 * gives for the parsed issue.
+	 */
+	static IssueProjection projectionOf(JSONObject issue, String[] fields) {
+		JSONObject f = issue.optJSONObject("fields");
+		String[] values = new String[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			values[i] = f == null ? null : extract(f, fields[i]);
+		}
+		return IssueProjection.of(text(issue, "key"), fields, values);
+	}
+
+	private static String extract(JSONObject fields, String field) {
+		if (IssueProjection.SUMMARY.equals(field) || IssueProjection.DESCRIPTION.equals(field)) return text(fields, field);
+		if (IssueProjection.PROJECT.equals(field)) return text(fields.optJSONObject(field), "key");
+		if (IssueProjection.CREATED.equals(field) || IssueProjection.UPDATED.equals(field)) {
+			String date = text(fields, field);
+			return date == null ? null : JsonParseUtil.parseDateTime(date).toString();
+		}
+		if (IssueProjection.COMPONENTS.equals(field)) {
+			JSONArray components = fields.optJSONArray(field);
+			if (components == null) return null;
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < components.length(); i++) {
+				if (i > 0) sb.append(',');
+				sb.append(text(components.optJSONObject(i), "name"));
+			}
+			return sb.toString();
+		}
+		//status, issuetype, priority, resolution, assignee, reporter
+		return text(fields.optJSONObject(field), "name");
+	}
+
+	/** @return the string value, or null if absent or JSON null. */
+	private static String text(JSONObject o, String key) {
+		return o == null || o.isNull(key) ? null : o.optString(key);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "WebhookReceiver[" + (server == null ? "stopped" : server.getAddress().toString()) + ", received=" + received
+				+ ", applied=" + applied + ", rejected=" + rejected + "]";
+	}
+}
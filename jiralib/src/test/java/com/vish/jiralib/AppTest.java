@@ -12,6 +12,7 @@ import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import com.atlassian.jira.rest.client.api.domain.BasicProject;
+import com.atlassian.jira.rest.client.api.domain.Issue;
 
 public class AppTest {
 	
@@ -52,4 +53,17 @@ public class AppTest {
 		String jql = "project = " + proj + " and key = " + proj + "-4";
 		jira.bulkTransitionIssuesByJQL(jql, "Done");
 	}
+	
+	@Test(enabled=false,priority=4, description="search with a small page size and check that every page is walked")
+	public void testSearchIssuesWalksAllPages() throws Exception {
+		String proj = list.get(0).getKey();
+		String jql = "project = " + proj;
+		IssueSearch search = jira.searchIssues(jql, 5);
+		int count = 0;
+		for (Issue issue : search) {
+			AssertJUnit.assertNotNull("issue without key", issue.getKey());
+			count++;
+		}
+		AssertJUnit.assertEquals("not every page was fetched", search.getTotal(), count);
+	}
 }
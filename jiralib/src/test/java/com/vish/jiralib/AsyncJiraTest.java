@@ -0,0 +1,218 @@
+package com.vish.jiralib;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class AsyncJiraTest {
+
+	/**
+	 * the JIRA resources {@link AsyncJira} uses, over issues TEST-1 to TEST-3 (ids 10001 to 10003) of project TEST.
+	 * Each issue has the transition "Done" (id 31). Requests are logged as "METHOD path".
+	 */
+	private static class JiraStub {
+		final HttpServer server;
+		/** the project resource answers once this is released. */
+		final CountDownLatch projectGate = new CountDownLatch(1);
+		private final List<String> requests = new ArrayList<String>();
+		private final Map<String, String> bodies = new HashMap<String, String>();
+
+		JiraStub() throws IOException {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+			server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+			server.setExecutor(Executors.newFixedThreadPool(4, Jira.daemonThreads("stub")));
+			server.createContext("/", exchange -> {
+				try {
+					respond(exchange);
+				} catch (JSONException e) {
+					throw new IOException(e);
+				}
+			});
+			server.start();
+		}
+
+		String url() {
+			return "http://127.0.0.1:" + server.getAddress().getPort();
+		}
+
+		private void respond(HttpExchange exchange) throws IOException, JSONException {
+			String method = exchange.getRequestMethod();
+			String path = exchange.getRequestURI().getPath();
+			String request = method + " " + path;
+			String body = new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8);
+			synchronized (requests) {
+				requests.add(request);
+				bodies.put(request, body);
+			}
+			String base = url() + "/rest/api/2/";
+			if (path.equals("/rest/api/2/serverInfo")) {
+				send(exchange, 200, new JSONObject().put("baseUrl", url()).put("version", "6.4.0").put("buildNumber", 64020)
+						.put("buildDate", "2015-01-01T00:00:00.000+0000").put("scmInfo", "stub").put("serverTitle", "JIRA"));
+			} else if (path.equals("/rest/api/2/search")) {
+				JSONArray issues = new JSONArray();
+				for (int i = 1; i <= 3; i++) issues.put(issue(i));
+				send(exchange, 200, new JSONObject().put("startAt", 0).put("maxResults", 50).put("total", 3)
+						.put("issues", issues).put("names", new JSONObject()).put("schema", new JSONObject()));
+			} else if (path.equals("/rest/api/2/project/TEST")) {
+				Uninterruptibles.awaitUninterruptibly(projectGate, 10, TimeUnit.SECONDS);
+				send(exchange, 200, project());
+			} else if (method.equals("POST") && path.equals("/rest/api/2/issue")) {
+				send(exchange, 201, new JSONObject().put("id", "10100").put("key", "TEST-100").put("self", base + "issue/10100"));
+			} else if (path.endsWith("/transitions")) {
+				if (method.equals("POST")) send(exchange, 204, null);
+				else send(exchange, 200, new JSONObject().put("transitions", new JSONArray().put(
+						new JSONObject().put("id", "31").put("name", "Done").put("fields", new JSONObject()))));
+			} else if (method.equals("POST") && path.endsWith("/comment")) {
+				send(exchange, 201, new JSONObject());
+			} else if (path.startsWith("/rest/api/2/issue/TEST-")) {
+				send(exchange, 200, issue(Integer.parseInt(path.substring("/rest/api/2/issue/TEST-".length())))
+						.put("names", new JSONObject()).put("schema", new JSONObject()));
+			} else {
+				send(exchange, 404, new JSONObject().put("errorMessages", new JSONArray().put("not found: " + request)));
+			}
+		}
+
+		private static void send(HttpExchange exchange, int status, JSONObject json) throws IOException {
+			if (json == null) {
+				exchange.sendResponseHeaders(status, -1);
+				exchange.close();
+				return;
+			}
+			byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(status, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+
+		private JSONObject issueType() throws JSONException {
+			return new JSONObject().put("self", url() + "/rest/api/2/issuetype/1").put("id", "1").put("name", "Bug")
+					.put("subtask", false).put("iconUrl", url() + "/bug.png").put("description", "a bug");
+		}
+
+		private JSONObject issue(int number) throws JSONException {
+			String base = url() + "/rest/api/2/";
+			JSONObject fields = new JSONObject()
+					.put("summary", "issue " + number)
+					.put("issuetype", issueType())
+					.put("created", "2026-10-18T10:00:00.000+0000")
+					.put("updated", "2026-10-18T10:00:00.000+0000")
+					.put("project", new JSONObject().put("self", base + "project/10000").put("id", "10000").put("key", "TEST").put("name", "Test"))
+					.put("status", new JSONObject().put("self", base + "status/1").put("id", "1").put("name", "Open")
+							.put("description", "open").put("iconUrl", url() + "/open.png"));
+			return new JSONObject().put("id", String.valueOf(10000 + number)).put("self", base + "issue/" + (10000 + number))
+					.put("key", "TEST-" + number).put("fields", fields);
+		}
+
+		private JSONObject project() throws JSONException {
+			String base = url() + "/rest/api/2/";
+			return new JSONObject().put("self", base + "project/10000").put("id", "10000").put("key", "TEST").put("name", "Test")
+					.put("description", "test project")
+					.put("lead", new JSONObject().put("self", base + "user?username=lead").put("name", "lead").put("displayName", "Lead"))
+					.put("versions", new JSONArray())
+					.put("components", new JSONArray().put(new JSONObject().put("self", base + "component/10000").put("id", "10000").put("name", "Core")))
+					.put("issueTypes", new JSONArray().put(issueType()))
+					.put("roles", new JSONObject());
+		}
+
+		List<String> getRequests() {
+			synchronized (requests) {
+				return new ArrayList<String>(requests);
+			}
+		}
+
+		String getBody(String request) {
+			synchronized (requests) {
+				return bodies.get(request);
+			}
+		}
+
+		/** @return the logged requests with {@code method}, in order. */
+		List<String> getRequests(String method) {
+			List<String> retVal = new ArrayList<String>();
+			for (String r : getRequests()) {
+				if (r.startsWith(method + " ")) retVal.add(r);
+			}
+			return retVal;
+		}
+	}
+
+	@Test(description="get, search, and a transition followed by a comment, composed without blocking")
+	public void testPipeline() throws Exception {
+		JiraStub stub = new JiraStub();
+		Jira jira = new Jira(stub.url(), "user", "password", "TEST", false);
+		try {
+			AsyncJira async = jira.async();
+			AssertJUnit.assertEquals("issue 1", async.getIssue("TEST-1").get(10, TimeUnit.SECONDS).getSummary());
+
+			List<String> keys = new ArrayList<String>();
+			for (Issue issue : async.searchAll("project = TEST", null).get(10, TimeUnit.SECONDS)) keys.add(issue.getKey());
+			AssertJUnit.assertEquals(Arrays.asList("TEST-1", "TEST-2", "TEST-3"), keys);
+
+			async.transitionIssue("TEST-2", "done")
+					.thenCompose(v -> async.commentOnIssue("TEST-2", "closed by the pipeline"))
+					.get(10, TimeUnit.SECONDS);
+			AssertJUnit.assertEquals("transition, then comment",
+					Arrays.asList("POST /rest/api/2/issue/10002/transitions", "POST /rest/api/2/issue/TEST-2/comment"), stub.getRequests("POST"));
+			AssertJUnit.assertTrue(stub.getBody("POST /rest/api/2/issue/10002/transitions").contains("31"));
+			AssertJUnit.assertTrue(stub.getBody("POST /rest/api/2/issue/TEST-2/comment").contains("closed by the pipeline"));
+		} finally {
+			jira.close();
+			stub.server.stop(0);
+		}
+	}
+
+	@Test(description="concurrent creates share one project fetch, which no thread waits for")
+	public void testCreateIssueLoadsProject() throws Exception {
+		JiraStub stub = new JiraStub();
+		Jira jira = new Jira(stub.url(), "user", "password", "TEST", false);
+		try {
+			AsyncJira async = jira.async();
+			//both calls return while the project is still being fetched
+			CompletableFuture<String> first = async.createIssue("bug", "core", "first", null);
+			CompletableFuture<String> second = async.createIssue("Bug", "Core", "second", "the second issue");
+			AssertJUnit.assertFalse(first.isDone() || second.isDone());
+			stub.projectGate.countDown();
+			AssertJUnit.assertEquals("TEST-100", first.get(10, TimeUnit.SECONDS));
+			AssertJUnit.assertEquals("TEST-100", second.get(10, TimeUnit.SECONDS));
+			AssertJUnit.assertTrue(jira.isProjectMetadataLoaded());
+			AssertJUnit.assertEquals(1, Collections.frequency(stub.getRequests(), "GET /rest/api/2/project/TEST"));
+
+			try {
+				async.createIssue("Epic", "Core", "third", null).get(10, TimeUnit.SECONDS);
+				AssertJUnit.fail("unknown issue type");
+			} catch (ExecutionException e) {
+				AssertJUnit.assertTrue(e.getCause().getMessage(), e.getCause().getMessage().startsWith("invalid issue type: Epic"));
+			}
+			AssertJUnit.assertEquals("metadata is not fetched again", 1, Collections.frequency(stub.getRequests(), "GET /rest/api/2/project/TEST"));
+		} finally {
+			jira.close();
+			stub.server.stop(0);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.vish.jiralib;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+public class AttachmentHashMemoTest {
+
+	private static URI self(int id) {
+		return URI.create("http://localhost/rest/api/2/attachment/" + id);
+	}
+
+	@Test(description="hashes saved by one memo are known to a memo opened later on the same file")
+	public void testRoundTrip() throws Exception {
+		File dir = Files.createTempDirectory("hashes").toFile();
+		File file = new File(dir, "TEST.hashes");
+		try {
+			AttachmentHashMemo memo = new AttachmentHashMemo(file, 100);
+			memo.put(self(1), "aa");
+			memo.put(self(2), "bb");
+			memo.save();
+			AssertJUnit.assertEquals("no temporary file is left", Arrays.asList("TEST.hashes"), Arrays.asList(dir.list()));
+
+			AttachmentHashMemo read = new AttachmentHashMemo(file, 100);
+			AssertJUnit.assertEquals(2, read.size());
+			AssertJUnit.assertEquals("aa", read.get(self(1)));
+			AssertJUnit.assertEquals("bb", read.get(self(2)));
+			AssertJUnit.assertNull(read.get(self(3)));
+
+			long modified = file.lastModified();
+			file.setLastModified(modified - 60000);
+			read.put(self(1), "aa");
+			read.save();
+			AssertJUnit.assertEquals("nothing new, nothing written", modified - 60000, file.lastModified());
+		} finally {
+			file.delete();
+			dir.delete();
+		}
+	}
+
+	@Test(description="only the most recently used hashes are kept, also across saves")
+	public void testCapacity() throws Exception {
+		File file = File.createTempFile("attachment", ".hashes");
+		try {
+			AttachmentHashMemo memo = new AttachmentHashMemo(file, 2);
+			memo.put(self(1), "aa");
+			memo.put(self(2), "bb");
+			memo.get(self(1));
+			memo.put(self(3), "cc");
+			AssertJUnit.assertNull("least recently used", memo.get(self(2)));
+			memo.save();
+			AttachmentHashMemo read = new AttachmentHashMemo(file, 2);
+			read.put(self(4), "dd");
+			AssertJUnit.assertNull("saved least recently used first", read.get(self(1)));
+			AssertJUnit.assertEquals("cc", read.get(self(3)));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(description="a memo without a file, or with a corrupt one, starts empty and still works")
+	public void testNoUsableFile() throws Exception {
+		AttachmentHashMemo memo = new AttachmentHashMemo(null, 10);
+		memo.put(self(1), "aa");
+		memo.save();
+		AssertJUnit.assertEquals("aa", memo.get(self(1)));
+
+		File file = File.createTempFile("attachment", ".hashes");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			out.write("no tab here\naa\tnot a uri\n".getBytes("UTF-8"));
+			out.close();
+			memo = new AttachmentHashMemo(file, 10);
+			memo.put(self(1), "aa");
+			memo.save();
+			AssertJUnit.assertEquals("aa", new AttachmentHashMemo(file, 10).get(self(1)));
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package com.vish.jiralib;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class BulkJournalTest {
+
+	@Test(description="a resumed journal holds the plan and the items done; items done by the runner are journaled")
+	public void testResume() throws Exception {
+		File file = File.createTempFile("bulk", ".journal");
+		try {
+			BulkJournal journal = BulkJournal.create(file);
+			journal.begin("transition\tDone\tjql\tproject = TEST");
+			for (int i = 1; i <= 1000; i++) journal.planned("TEST-" + i);
+			journal.planComplete();
+			BulkRunner runner = new BulkRunner(4, journal);
+			for (int i = 1; i <= 998; i++) {
+				runner.submit("TEST-" + i, new Callable<ListenableFuture<Void>>() {
+					@Override
+					public ListenableFuture<Void> call() {
+						return Futures.immediateFuture(null);
+					}
+				});
+			}
+			runner.skip("TEST-999", "already in Done");
+			runner.await();
+			journal.close();
+			AssertJUnit.assertTrue("compact: " + file.length(), file.length() < 1000 * 16);
+
+			journal = BulkJournal.resume(file);
+			AssertJUnit.assertEquals("transition\tDone\tjql\tproject = TEST", journal.getOperation());
+			AssertJUnit.assertTrue(journal.isPlanComplete());
+			AssertJUnit.assertEquals(1000, journal.getPlannedCount());
+			AssertJUnit.assertEquals(999, journal.getDoneCount());
+			AssertJUnit.assertEquals(Arrays.asList("TEST-1000"), journal.getRemaining());
+			journal.begin("transition\tDone\tjql\tproject = TEST");
+			try {
+				journal.begin("transition\tClosed\tjql\tproject = TEST");
+				AssertJUnit.fail("expected another operation to be refused");
+			} catch (IllegalStateException e) {
+				//expected
+			}
+			journal.close();
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(description="an issue transitioned before its completion was journaled is skipped on resume, "
+			+ "though the transition and its destination are named differently")
+	public void testResumeAfterLostCompletion() throws Exception {
+		File file = File.createTempFile("bulk", ".journal");
+		try {
+			BulkJournal journal = BulkJournal.create(file);
+			journal.begin("transition\tResolve Issue\tjql\tproject = TEST");
+			for (int i = 1; i <= 3; i++) journal.planned("TEST-" + i);
+			journal.planComplete();
+			journal.done("TEST-1");
+			//TEST-2 was resolved, then the run died before its done record was written
+			journal.close();
+
+			journal = BulkJournal.resume(file);
+			AssertJUnit.assertEquals(Arrays.asList("TEST-2", "TEST-3"), journal.getRemaining());
+			//statuses as the resumed run finds them: TEST-2 Resolved (5), TEST-3 Open (1), both of workflow TEST/1
+			Map<String, String[]> statuses = new HashMap<String, String[]>();
+			statuses.put("TEST-2", new String[] { "5", "Resolved" });
+			statuses.put("TEST-3", new String[] { "1", "Open" });
+			TransitionTarget target = new TransitionTarget("Resolve Issue");
+			BulkRunner runner = new BulkRunner(4, journal);
+			List<String> deferred = new ArrayList<String>();
+			for (String key : journal.getRemaining()) {
+				String[] status = statuses.get(key);
+				if (target.isReached("TEST/1", status[0], status[1])) {
+					runner.skip(key, "already in " + status[1]);
+				} else if (status[1].equals("Resolved")) {
+					//"Resolve Issue" is not available from Resolved, and the destination is not known yet
+					deferred.add(key);
+				} else {
+					target.learned("TEST/1", "5");
+					runner.submit(key, new Callable<ListenableFuture<Void>>() {
+						@Override
+						public ListenableFuture<Void> call() {
+							return Futures.immediateFuture(null);
+						}
+					});
+				}
+			}
+			AssertJUnit.assertEquals(Arrays.asList("TEST-2"), deferred);
+			for (String key : deferred) {
+				String[] status = statuses.get(key);
+				if (target.isReached("TEST/1", status[0], status[1])) runner.skip(key, "already in " + status[1]);
+				else runner.fail(key, "transition Resolve Issue not available from " + status[1]);
+			}
+			BulkReport report = runner.await();
+			AssertJUnit.assertEquals(0, report.getFailedCount());
+			AssertJUnit.assertEquals("already in Resolved", report.getEntries(BulkReport.Outcome.SKIPPED).get(0).getMessage());
+			AssertJUnit.assertEquals(Collections.<String>emptyList(), journal.getRemaining());
+			journal.close();
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(description="a torn record at the end is cut off and the journal continues after the intact part")
+	public void testTornTail() throws Exception {
+		File file = File.createTempFile("bulk", ".journal");
+		try {
+			BulkJournal journal = BulkJournal.create(file);
+			journal.begin("transition\tDone\tfilter\t11300");
+			journal.planned("TEST-1");
+			journal.planned("TEST-2");
+			journal.done("TEST-1");
+			journal.close();
+			long intact = file.length();
+			FileOutputStream out = new FileOutputStream(file, true);
+			out.write(new byte[] { 'P', 0, 40, 'T', 'E' });
+			out.close();
+
+			journal = BulkJournal.resume(file);
+			AssertJUnit.assertEquals(intact, file.length());
+			AssertJUnit.assertFalse(journal.isPlanComplete());
+			AssertJUnit.assertEquals(Arrays.asList("TEST-2"), journal.getRemaining());
+			journal.planned("TEST-3");
+			journal.done("TEST-2");
+			journal.close();
+
+			journal = BulkJournal.resume(file);
+			AssertJUnit.assertTrue(journal.isDone("TEST-2"));
+			AssertJUnit.assertEquals(Arrays.asList("TEST-3"), journal.getRemaining());
+			journal.close();
+		} finally {
+			file.delete();
+		}
+	}
+}
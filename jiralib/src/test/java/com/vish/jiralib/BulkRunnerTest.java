@@ -0,0 +1,71 @@
+package com.vish.jiralib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+public class BulkRunnerTest {
+
+	@Test(description="submit blocks once parallelism calls are in flight")
+	public void testSubmitAppliesBackpressure() throws Exception {
+		final BulkRunner runner = new BulkRunner(2);
+		final List<SettableFuture<Void>> futures = new ArrayList<SettableFuture<Void>>();
+		final AtomicInteger started = new AtomicInteger();
+		Thread submitter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < 3; i++) {
+						final SettableFuture<Void> f = SettableFuture.create();
+						synchronized (futures) { futures.add(f); }
+						runner.submit("T-" + i, new Callable<ListenableFuture<Void>>() {
+							@Override
+							public ListenableFuture<Void> call() {
+								started.incrementAndGet();
+								return f;
+							}
+						});
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		submitter.start();
+		submitter.join(500);
+		AssertJUnit.assertEquals("third call started while two were in flight", 2, started.get());
+		synchronized (futures) { futures.get(0).set(null); }
+		submitter.join(5000);
+		AssertJUnit.assertEquals(3, started.get());
+		synchronized (futures) {
+			futures.get(1).setException(new RuntimeException("boom"));
+			futures.get(2).set(null);
+		}
+		BulkReport report = runner.await();
+		AssertJUnit.assertEquals(2, report.getSucceededCount());
+		AssertJUnit.assertEquals(1, report.getFailedCount());
+		AssertJUnit.assertEquals("T-1", report.getEntries(BulkReport.Outcome.FAILED).get(0).getKey());
+	}
+
+	@Test(description="a call that throws before returning a future is recorded as failed")
+	public void testSynchronousFailureIsRecorded() throws Exception {
+		BulkRunner runner = new BulkRunner(1);
+		runner.submit("T-1", new Callable<ListenableFuture<Void>>() {
+			@Override
+			public ListenableFuture<Void> call() {
+				throw new IllegalStateException("no connection");
+			}
+		});
+		runner.skip("T-2", "already done");
+		BulkReport report = runner.await();
+		AssertJUnit.assertEquals(1, report.getFailedCount());
+		AssertJUnit.assertEquals(1, report.getSkippedCount());
+	}
+}
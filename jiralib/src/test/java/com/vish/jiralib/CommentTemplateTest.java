@@ -0,0 +1,25 @@
+package com.vish.jiralib;
+
+import java.util.Arrays;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+public class CommentTemplateTest {
+
+	@Test(description="field placeholders are replaced; JIRA markup braces are kept")
+	public void testRender() throws Exception {
+		CommentTemplate t = new CommentTemplate("{color:red}{key}{color} {summary} was {status}{resolution}. {code}x{code} {");
+		AssertJUnit.assertEquals(Arrays.asList("key", "summary", "status", "resolution"), Arrays.asList(t.getFields()));
+		IssueProjection issue = IssueProjection.of("TEST-1", new String[] { "summary", "status", "resolution" },
+				new String[] { "Crash on {status}", "Open", null });
+		AssertJUnit.assertEquals("{color:red}TEST-1{color} Crash on {status} was Open. {code}x{code} {", t.render(issue));
+	}
+
+	@Test(description="a template without placeholders is sent as is")
+	public void testPlain() throws Exception {
+		CommentTemplate t = new CommentTemplate("Released in 1.2");
+		AssertJUnit.assertEquals(0, t.getFields().length);
+		AssertJUnit.assertEquals("Released in 1.2", t.render(IssueProjection.of("TEST-1", new String[0], new String[0])));
+	}
+}
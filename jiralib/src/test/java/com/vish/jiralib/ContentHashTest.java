@@ -0,0 +1,32 @@
+package com.vish.jiralib;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+public class ContentHashTest {
+
+	@Test(description="mapped file hashes match stream hashes and the SHA-256 reference value")
+	public void testHash() throws Exception {
+		AssertJUnit.assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+				ContentHash.of(new ByteArrayInputStream("abc".getBytes("UTF-8"))));
+		byte[] bytes = new byte[300 * 1024];
+		new Random(42).nextBytes(bytes);
+		File file = File.createTempFile("attachment", ".log");
+		File empty = File.createTempFile("attachment", ".log");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			out.write(bytes);
+			out.close();
+			AssertJUnit.assertEquals(ContentHash.of(new ByteArrayInputStream(bytes)), ContentHash.of(file));
+			AssertJUnit.assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", ContentHash.of(empty));
+		} finally {
+			file.delete();
+			empty.delete();
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package com.vish.jiralib;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.atlassian.jira.rest.client.api.domain.Issue;
+
+public class IssueCacheTest {
+
+	private final Issue issue = TestIssues.issue("T-1", 10001);
+
+	@Test(description="least recently used entry is evicted first")
+	public void testLruEviction() throws Exception {
+		IssueCache cache = new IssueCache();
+		cache.setMaxSize(2);
+		cache.put("T-1", issue, cache.generation());
+		cache.put("T-2", issue, cache.generation());
+		cache.get("T-1");
+		cache.put("T-3", issue, cache.generation());
+		AssertJUnit.assertNotNull("recently used entry evicted", cache.get("T-1"));
+		AssertJUnit.assertNull("eldest entry kept", cache.get("T-2"));
+		AssertJUnit.assertEquals(1, cache.getEvictions());
+	}
+
+	@Test(description="keys are case insensitive and entries expire")
+	public void testKeysAndExpiry() throws Exception {
+		IssueCache cache = new IssueCache();
+		cache.put("t-1", issue, cache.generation());
+		AssertJUnit.assertSame(issue, cache.get("T-1"));
+		cache.setTtlMillis(-1);
+		cache.put("T-2", issue, cache.generation());
+		AssertJUnit.assertNull(cache.get("T-2"));
+		AssertJUnit.assertEquals(1, cache.getHits());
+		AssertJUnit.assertEquals(1, cache.getMisses());
+	}
+
+	@Test(description="a fetch that raced with an invalidation is not cached")
+	public void testStaleFetchIsDropped() throws Exception {
+		IssueCache cache = new IssueCache();
+		long generation = cache.generation();
+		cache.invalidate("T-1");
+		cache.put("T-1", issue, generation);
+		AssertJUnit.assertNull(cache.get("T-1"));
+	}
+}
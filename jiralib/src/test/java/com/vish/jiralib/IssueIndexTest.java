@@ -0,0 +1,65 @@
+package com.vish.jiralib;
+
+import java.util.Arrays;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.vish.jiralib.IssueIndex.Order;
+
+public class IssueIndexTest {
+	private static final String[] FIELDS = { IssueProjection.SUMMARY, IssueProjection.DESCRIPTION, IssueProjection.STATUS,
+			IssueProjection.COMPONENTS, IssueProjection.UPDATED };
+
+	private static IssueProjection issue(String key, String summary, String description, String status, String components, String updated) {
+		return IssueProjection.of(key, FIELDS, new String[] { summary, description, status, components, updated });
+	}
+
+	private static IssueIndex index() {
+		IssueIndex index = new IssueIndex();
+		index.update(issue("TEST-10", "Connection timeout on login", "the server times out", "Open", "Core,User Interface", "2016-01-03T10:00:00.000+01:00"));
+		index.update(issue("TEST-9", "Timeout while saving", "connection pool exhausted", "Closed", "Core", "2016-01-05T10:00:00.000Z"));
+		index.update(issue("TEST-2", "Login page is slow", null, "In Progress", "User", "2016-01-01T10:00:00.000Z"));
+		return index;
+	}
+
+	@Test(description="terms, phrases and fields, combined with AND, OR, NOT and parentheses")
+	public void testQueries() throws Exception {
+		IssueIndex index = index();
+		AssertJUnit.assertEquals(Arrays.asList("TEST-9", "TEST-10"), index.search("TIMEOUT", Order.KEY));
+		AssertJUnit.assertEquals(Arrays.asList("TEST-10"), index.search("\"connection timeout\"", Order.KEY));
+		AssertJUnit.assertEquals(Arrays.asList("TEST-9", "TEST-10"), index.search("connection timeout", Order.KEY));
+		AssertJUnit.assertEquals(Arrays.asList("TEST-10"), index.search("timeout -status:closed", Order.KEY));
+		AssertJUnit.assertEquals(Arrays.asList("TEST-2"), index.search("status:\"in progress\"", Order.KEY));
+		AssertJUnit.assertEquals(Arrays.asList("TEST-2", "TEST-9"), index.search("(slow OR saving) AND NOT component:interface", Order.KEY));
+		AssertJUnit.assertEquals("component names are not one phrase", 0, index.search("component:\"core user\"", Order.KEY).size());
+		AssertJUnit.assertEquals(Arrays.asList("TEST-9", "TEST-10", "TEST-2"), index.search("login OR timeout", Order.UPDATED));
+		try {
+			index.search("(timeout", Order.KEY);
+			AssertJUnit.fail("unbalanced parentheses");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			index.search("priority:high", Order.KEY);
+			AssertJUnit.fail("unknown field");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test(description="updates replace the old text; compaction keeps the index consistent")
+	public void testUpdates() throws Exception {
+		IssueIndex index = index();
+		index.update(issue("TEST-10", "Crash on login", null, "Open", null, null));
+		AssertJUnit.assertEquals(Arrays.asList("TEST-9"), index.search("timeout", Order.KEY));
+		AssertJUnit.assertEquals(Arrays.asList("TEST-2", "TEST-10"), index.search("login", Order.KEY));
+		AssertJUnit.assertTrue(index.remove("TEST-2"));
+		AssertJUnit.assertFalse(index.remove("TEST-2"));
+		//enough updates to trigger compaction several times
+		for (int i = 0; i < 5000; i++) index.update(issue("TEST-" + (100 + i % 10), "round " + i, null, "Open", null, null));
+		AssertJUnit.assertEquals(12, index.size());
+		AssertJUnit.assertEquals(Arrays.asList("TEST-109"), index.search("round 4999", Order.KEY).subList(0, 1));
+		AssertJUnit.assertEquals(Arrays.asList("TEST-109"), index.search("\"round 4999\"", Order.KEY));
+		AssertJUnit.assertEquals(Arrays.asList("TEST-10"), index.search("crash", Order.KEY));
+		AssertJUnit.assertEquals(0, index.search("\"round 10\"", Order.KEY).size());
+	}
+}
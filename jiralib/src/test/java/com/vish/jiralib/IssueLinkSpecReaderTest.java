@@ -0,0 +1,28 @@
+package com.vish.jiralib;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+public class IssueLinkSpecReaderTest {
+
+	private List<IssueLinkSpec> read(String input, SpecReader.Format format) {
+		List<IssueLinkSpec> retVal = new ArrayList<IssueLinkSpec>();
+		for (IssueLinkSpec spec : new IssueLinkSpecReader(new StringReader(input), format)) {
+			retVal.add(spec);
+		}
+		return retVal;
+	}
+
+	@Test(description="edges from CSV, comment column optional, keys trimmed")
+	public void testCsv() throws Exception {
+		List<IssueLinkSpec> links = read("Type,Source,Target\nBlocks, TEST-1 ,TEST-2\n\nRelates,TEST-2,TEST-3\n", SpecReader.Format.CSV);
+		AssertJUnit.assertEquals(2, links.size());
+		AssertJUnit.assertEquals("TEST-1", links.get(0).getSource());
+		AssertJUnit.assertEquals("TEST-1 > Blocks > TEST-2", links.get(0).toString());
+		AssertJUnit.assertNull(links.get(1).getComment());
+	}
+}
@@ -0,0 +1,99 @@
+package com.vish.jiralib;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Predicate;
+
+public class IssueMirrorTest {
+
+	private static IssueProjection issue(String key, String status, String description) {
+		String[] values = new String[IssueMirror.FIELDS.length];
+		values[0] = "summary of " + key;
+		values[1] = description;
+		values[2] = status;
+		return IssueProjection.of(key, IssueMirror.FIELDS, values);
+	}
+
+	@Test(description="issues survive a save and reopen; changed records replace old ones, unchanged ones are copied")
+	public void testSaveAndReopen() throws Exception {
+		File file = File.createTempFile("mirror", ".bin");
+		file.delete();
+		try {
+			IssueMirror mirror = new IssueMirror(null, "TEST", file);
+			mirror.put(issue("TEST-1", "Open", "café ☃"));
+			mirror.put(issue("TEST-2", "Open", null));
+			mirror.save();
+			mirror.put(issue("TEST-2", "Done", null));
+			mirror.put(issue("TEST-3", "Done", ""));
+			mirror.save();
+
+			IssueMirror reopened = new IssueMirror(null, "TEST", file);
+			AssertJUnit.assertEquals(3, reopened.size());
+			AssertJUnit.assertEquals("café ☃", reopened.get("TEST-1").get(IssueProjection.DESCRIPTION));
+			AssertJUnit.assertNull(reopened.get("TEST-2").get(IssueProjection.DESCRIPTION));
+			AssertJUnit.assertEquals("", reopened.get("TEST-3").get(IssueProjection.DESCRIPTION));
+			AssertJUnit.assertEquals(Integer.valueOf(2), reopened.countBy(IssueProjection.STATUS).get("Done"));
+			AssertJUnit.assertEquals(1, reopened.select(new Predicate<IssueProjection>() {
+				@Override
+				public boolean apply(IssueProjection input) {
+					return "Open".equals(input.get(IssueProjection.STATUS));
+				}
+			}).size());
+
+			AssertJUnit.assertEquals("a mirror of another project is ignored", 0, new IssueMirror(null, "OTHER", file).size());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(description="a corrupt file is ignored")
+	public void testCorruptFileIgnored() throws Exception {
+		File file = File.createTempFile("mirror", ".bin");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			out.write(new byte[] { 0x4a, 0x4c, 0x4d, 0x01, 0, 4, 'T', 'E' });
+			out.close();
+			AssertJUnit.assertEquals(0, new IssueMirror(null, "TEST", file).size());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(description="a save that cannot replace the file keeps the issues in memory and leaves no temporary file")
+	public void testFailedSaveKeepsIssues() throws Exception {
+		File dir = Files.createTempDirectory("mirror").toFile();
+		//a non-empty directory where the file should be: the move fails
+		File file = new File(dir, "TEST.mirror");
+		File blocker = new File(file, "blocker");
+		try {
+			AssertJUnit.assertTrue(blocker.mkdirs());
+			IssueMirror mirror = new IssueMirror(null, "TEST", file);
+			mirror.put(issue("TEST-1", "Open", null));
+			try {
+				mirror.save();
+				AssertJUnit.fail("expected the save to fail");
+			} catch (IOException e) {
+				//expected
+			}
+			AssertJUnit.assertEquals("Open", mirror.get("TEST-1").get(IssueProjection.STATUS));
+			AssertJUnit.assertEquals(Arrays.asList("TEST.mirror"), Arrays.asList(dir.list()));
+
+			blocker.delete();
+			file.delete();
+			mirror.save();
+			AssertJUnit.assertEquals(1, new IssueMirror(null, "TEST", file).size());
+			AssertJUnit.assertEquals(Arrays.asList("TEST.mirror"), Arrays.asList(dir.list()));
+		} finally {
+			blocker.delete();
+			file.delete();
+			dir.delete();
+		}
+	}
+}
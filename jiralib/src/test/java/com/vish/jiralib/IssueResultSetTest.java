@@ -0,0 +1,69 @@
+package com.vish.jiralib;
+
+import java.util.Arrays;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+public class IssueResultSetTest {
+
+	@Test(description="low-cardinality columns are dictionary-encoded, text columns are not; values read back by row and cursor")
+	public void testColumns() throws Exception {
+		IssueResultSet rs = new IssueResultSet("summary", "status");
+		for (int i = 1; i <= 200; i++) {
+			rs.add("TEST-" + i, "issue " + i, i % 3 == 0 ? null : (i % 2 == 0 ? "Open" : "Closed"));
+		}
+		AssertJUnit.assertEquals(200, rs.size());
+		int status = rs.columnOf("status");
+		AssertJUnit.assertEquals(1, status);
+		AssertJUnit.assertEquals(-1, rs.columnOf("priority"));
+		AssertJUnit.assertFalse(rs.isDictionaryEncoded(rs.columnOf("summary")));
+		AssertJUnit.assertTrue(rs.isDictionaryEncoded(status));
+		AssertJUnit.assertEquals(Arrays.asList("Closed", "Open"), rs.getDictionary(status));
+		AssertJUnit.assertEquals(-1, rs.getCode(2, status));
+		AssertJUnit.assertNull(rs.get(2, status));
+		AssertJUnit.assertEquals("Open", rs.get(3, status));
+
+		int[] counts = new int[rs.getDictionary(status).size()];
+		int rows = 0;
+		IssueResultSet.Cursor c = rs.cursor();
+		while (c.next()) {
+			AssertJUnit.assertEquals("TEST-" + (c.getRow() + 1), c.getKey());
+			if (c.getCode(status) >= 0) counts[c.getCode(status)]++;
+			rows++;
+		}
+		AssertJUnit.assertEquals(200, rows);
+		AssertJUnit.assertEquals(67, counts[0]);
+		AssertJUnit.assertEquals(67, counts[1]);
+		c.reset();
+		AssertJUnit.assertTrue(c.next());
+		AssertJUnit.assertEquals("issue 1", c.get(0));
+
+		AssertJUnit.assertEquals("{key=TEST-4, summary=issue 4, status=Open}", rs.toMap(3).toString());
+		AssertJUnit.assertEquals("Open", rs.getProjection(3).get("status"));
+	}
+
+	@Test(description="fields are validated, rows checked")
+	public void testErrors() throws Exception {
+		try {
+			new IssueResultSet("summary", "votes");
+			AssertJUnit.fail("votes is not supported");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		IssueResultSet rs = new IssueResultSet("summary");
+		try {
+			rs.getCode(0, 0);
+			AssertJUnit.fail("empty result set");
+		} catch (IndexOutOfBoundsException e) {
+			//expected
+		}
+		rs.add("TEST-1", "s");
+		try {
+			rs.getCode(0, 0);
+			AssertJUnit.fail("summary is not dictionary-encoded");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package com.vish.jiralib;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class IssueSearchTest {
+
+	/**
+	 * a JIRA search resource over issues TEST-1, TEST-2, ... The n-th page request (from 0) reports
+	 * {@code totals[n]} (the last one for later requests) and holds the issues below that total and below
+	 * {@code available}.
+	 */
+	private static class SearchStub {
+		final HttpServer server;
+		final int[] totals;
+		volatile int available = Integer.MAX_VALUE;
+		final List<Integer> starts = new ArrayList<Integer>();
+		private final AtomicInteger requests = new AtomicInteger();
+
+		SearchStub(int... totals) throws IOException {
+			this.totals = totals;
+			server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+			server.createContext("/", exchange -> {
+				try {
+					respond(exchange);
+				} catch (JSONException e) {
+					throw new IOException(e);
+				}
+			});
+			server.start();
+		}
+
+		String url() {
+			return "http://127.0.0.1:" + server.getAddress().getPort();
+		}
+
+		private void respond(HttpExchange exchange) throws IOException, JSONException {
+			Map<String, String> params = new HashMap<String, String>();
+			String query = exchange.getRequestURI().getRawQuery();
+			if (query != null) {
+				for (String param : query.split("&")) {
+					int eq = param.indexOf('=');
+					if (eq > 0) params.put(param.substring(0, eq), URLDecoder.decode(param.substring(eq + 1), "UTF-8"));
+				}
+			}
+			if ("POST".equals(exchange.getRequestMethod())) {
+				JSONObject body = new JSONObject(new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8));
+				params.put("startAt", body.optString("startAt", "0"));
+				params.put("maxResults", body.optString("maxResults", "50"));
+			}
+			int startAt = Integer.parseInt(params.containsKey("startAt") ? params.get("startAt") : "0");
+			int maxResults = Integer.parseInt(params.containsKey("maxResults") ? params.get("maxResults") : "50");
+			int n = requests.getAndIncrement();
+			int total = totals[Math.min(n, totals.length - 1)];
+			synchronized (starts) {
+				starts.add(startAt);
+			}
+			JSONArray issues = new JSONArray();
+			for (int i = startAt; i < Math.min(startAt + maxResults, Math.min(total, available)); i++) issues.put(issue(i + 1));
+			JSONObject page = new JSONObject()
+					.put("startAt", startAt).put("maxResults", maxResults).put("total", total)
+					.put("issues", issues).put("names", new JSONObject()).put("schema", new JSONObject());
+			byte[] body = page.toString().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+
+		private JSONObject issue(int number) throws JSONException {
+			String base = url() + "/rest/api/2/";
+			JSONObject fields = new JSONObject()
+					.put("summary", "issue " + number)
+					.put("issuetype", new JSONObject().put("self", base + "issuetype/1").put("id", "1").put("name", "Bug")
+							.put("subtask", false).put("iconUrl", url() + "/bug.png").put("description", "a bug"))
+					.put("created", "2026-10-18T10:00:00.000+0000")
+					.put("updated", "2026-10-18T10:00:00.000+0000")
+					.put("project", new JSONObject().put("self", base + "project/10000").put("id", "10000").put("key", "TEST").put("name", "Test"))
+					.put("status", new JSONObject().put("self", base + "status/1").put("id", "1").put("name", "Open")
+							.put("description", "open").put("iconUrl", url() + "/open.png"));
+			return new JSONObject().put("id", String.valueOf(10000 + number)).put("self", base + "issue/" + (10000 + number))
+					.put("key", "TEST-" + number).put("fields", fields);
+		}
+
+		List<Integer> getStarts() {
+			synchronized (starts) {
+				return new ArrayList<Integer>(starts);
+			}
+		}
+	}
+
+	private static List<String> keys(IssueSearch search) {
+		List<String> retVal = new ArrayList<String>();
+		for (Issue issue : search) retVal.add(issue.getKey());
+		return retVal;
+	}
+
+	private static List<String> expectedKeys(int count) {
+		List<String> retVal = new ArrayList<String>();
+		for (int i = 1; i <= count; i++) retVal.add("TEST-" + i);
+		return retVal;
+	}
+
+	private static IssueSearch search(SearchStub stub, int pageSize) {
+		return new IssueSearch(Jira.createRestClient(stub.url(), "user", "password").getSearchClient(), "project = TEST", pageSize);
+	}
+
+	@Test(description="every page is walked, in order, until the total is reached")
+	public void testWalksAllPages() throws Exception {
+		SearchStub stub = new SearchStub(23);
+		try {
+			IssueSearch search = search(stub, 5);
+			AssertJUnit.assertEquals(expectedKeys(23), keys(search));
+			AssertJUnit.assertEquals(23, search.getTotal());
+			AssertJUnit.assertEquals(Arrays.asList(0, 5, 10, 15, 20), stub.getStarts());
+		} finally {
+			stub.server.stop(0);
+		}
+	}
+
+	@Test(description="an empty page before the total ends the walk instead of requesting it again")
+	public void testEmptyPageBeforeTotal() throws Exception {
+		SearchStub stub = new SearchStub(12);
+		stub.available = 7;
+		try {
+			IssueSearch search = search(stub, 5);
+			AssertJUnit.assertEquals(expectedKeys(7), keys(search));
+			AssertJUnit.assertEquals(Arrays.asList(0, 5, 7), stub.getStarts());
+		} finally {
+			stub.server.stop(0);
+		}
+	}
+
+	@Test(description="the walk follows the total of the latest page when it grows or shrinks")
+	public void testTotalChanges() throws Exception {
+		SearchStub stub = new SearchStub(10, 14);
+		try {
+			AssertJUnit.assertEquals("grown", expectedKeys(14), keys(search(stub, 5)));
+		} finally {
+			stub.server.stop(0);
+		}
+		stub = new SearchStub(10, 6);
+		try {
+			IssueSearch search = search(stub, 5);
+			AssertJUnit.assertEquals("shrunk", expectedKeys(6), keys(search));
+			AssertJUnit.assertEquals(6, search.getTotal());
+			AssertJUnit.assertEquals(Arrays.asList(0, 5), stub.getStarts());
+		} finally {
+			stub.server.stop(0);
+		}
+	}
+}
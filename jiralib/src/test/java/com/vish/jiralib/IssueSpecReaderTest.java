@@ -0,0 +1,40 @@
+package com.vish.jiralib;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+public class IssueSpecReaderTest {
+
+	private List<IssueSpec> readCsv(String csv) {
+		List<IssueSpec> retVal = new ArrayList<IssueSpec>();
+		for (IssueSpec spec : new IssueSpecReader(new StringReader(csv), IssueSpecReader.Format.CSV)) {
+			retVal.add(spec);
+		}
+		return retVal;
+	}
+
+	@Test(description="columns are matched by header name, quoted fields may hold commas, quotes and newlines")
+	public void testCsvQuotingAndColumnOrder() throws Exception {
+		List<IssueSpec> specs = readCsv(
+				"Summary,IssueType,Component,Description\n" +
+				"\"timeout, again\",Bug,Core,\"said \"\"hi\"\"\non two lines\"\n" +
+				"\n" +
+				"plain,Task,UI,\n");
+		AssertJUnit.assertEquals(2, specs.size());
+		AssertJUnit.assertEquals("timeout, again", specs.get(0).getSummary());
+		AssertJUnit.assertEquals("Bug", specs.get(0).getIssueType());
+		AssertJUnit.assertEquals("Core", specs.get(0).getComponent());
+		AssertJUnit.assertEquals("said \"hi\"\non two lines", specs.get(0).getDescription());
+		AssertJUnit.assertEquals("", specs.get(1).getDescription());
+	}
+
+	@Test(description="description column is optional, other columns are not", expectedExceptions=IllegalArgumentException.class)
+	public void testCsvHeaderMustNameRequiredColumns() throws Exception {
+		AssertJUnit.assertNull(readCsv("issuetype,component,summary\nBug,Core,x\n").get(0).getDescription());
+		readCsv("issuetype,summary\nBug,x\n");
+	}
+}
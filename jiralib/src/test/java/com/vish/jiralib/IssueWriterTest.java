@@ -0,0 +1,58 @@
+package com.vish.jiralib;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.vish.jiralib.IssueWriter.Format;
+
+public class IssueWriterTest {
+	private static final String[] FIELDS = { IssueProjection.SUMMARY, IssueProjection.STATUS };
+
+	private static String write(Format format, String... columns) throws Exception {
+		StringWriter out = new StringWriter();
+		IssueWriter writer = new IssueWriter(out, format, columns);
+		writer.writeAll(Arrays.asList(
+				IssueProjection.of("TEST-1", FIELDS, new String[] { "a \"quoted\", multi\nline\tsummary \\ café", "Open" }),
+				IssueProjection.of("TEST-2", FIELDS, new String[] { "plain", null })));
+		writer.close();
+		return out.toString();
+	}
+
+	@Test(description="each format escapes separators, quotes and line breaks")
+	public void testFormats() throws Exception {
+		AssertJUnit.assertEquals("key,summary,status\n"
+				+ "TEST-1,\"a \"\"quoted\"\", multi\nline\tsummary \\ café\",Open\n"
+				+ "TEST-2,plain,\n", write(Format.CSV, "key", "summary", "status"));
+		AssertJUnit.assertEquals("key\tsummary\tstatus\n"
+				+ "TEST-1\ta \"quoted\", multi\\nline\\tsummary \\\\ café\tOpen\n"
+				+ "TEST-2\tplain\t\n", write(Format.TSV, "key", "summary", "status"));
+		AssertJUnit.assertEquals("{\"key\":\"TEST-1\",\"status\":\"Open\"}\n"
+				+ "{\"key\":\"TEST-2\",\"status\":null}\n", write(Format.JSONL, "key", "status"));
+		AssertJUnit.assertEquals("{\"summary\":\"a \\\"quoted\\\", multi\\nline\\tsummary \\\\ café\"}\n"
+				+ "{\"summary\":\"plain\"}\n", write(Format.JSONL, "summary"));
+		AssertJUnit.assertEquals("SUMMARY\t\tKEY\n"
+				+ "a \"quoted\", multi\nline\tsummary \\ café\t\tTEST-1\n"
+				+ "plain\t\tTEST-2\n", write(Format.TABLE, "summary", "key"));
+	}
+
+	@Test(description="the table cuts long values")
+	public void testTableWidth() throws Exception {
+		StringWriter out = new StringWriter();
+		IssueWriter writer = new IssueWriter(out, Format.TABLE, "summary");
+		writer.write(IssueProjection.of("TEST-1", FIELDS, new String[] { "0123456789012345678901234567890123456789overflow", null }));
+		writer.flush();
+		AssertJUnit.assertEquals("SUMMARY\n0123456789012345678901234567890123456789...\n", out.toString());
+	}
+
+	@Test(description="an empty result still gets a header")
+	public void testEmpty() throws Exception {
+		StringWriter out = new StringWriter();
+		IssueWriter writer = new IssueWriter(out, Format.CSV, "key");
+		AssertJUnit.assertEquals(0, writer.writeAll(Arrays.<IssueProjection>asList()));
+		writer.flush();
+		AssertJUnit.assertEquals("key\n", out.toString());
+	}
+}
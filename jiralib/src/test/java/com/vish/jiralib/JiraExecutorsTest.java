@@ -0,0 +1,150 @@
+package com.vish.jiralib;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.methods.HttpGet;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.sun.net.httpserver.HttpServer;
+import com.vish.jiralib.JiraExecutors.Mode;
+
+public class JiraExecutorsTest {
+
+	@Test(description="virtual mode runs each task on a named virtual thread, platform mode on daemon threads")
+	public void testModes() throws Exception {
+		ExecutorService virtual = JiraExecutors.newExecutor(Mode.VIRTUAL, "test", 0);
+		try {
+			Thread t = virtual.submit(Thread::currentThread).get();
+			AssertJUnit.assertTrue(t.isVirtual());
+			AssertJUnit.assertTrue(t.getName().startsWith("test-"));
+		} finally {
+			virtual.shutdown();
+		}
+		ExecutorService platform = JiraExecutors.newExecutor(Mode.PLATFORM, "test", 2);
+		try {
+			Thread t = platform.submit(Thread::currentThread).get();
+			AssertJUnit.assertFalse(t.isVirtual());
+			AssertJUnit.assertTrue(t.isDaemon());
+		} finally {
+			platform.shutdown();
+		}
+	}
+
+	@Test(description="the default mode follows the system property")
+	public void testDefaultMode() throws Exception {
+		String old = System.getProperty(JiraExecutors.MODE_PROPERTY);
+		try {
+			System.clearProperty(JiraExecutors.MODE_PROPERTY);
+			AssertJUnit.assertEquals(Mode.VIRTUAL, JiraExecutors.defaultMode());
+			System.setProperty(JiraExecutors.MODE_PROPERTY, "Platform");
+			AssertJUnit.assertEquals(Mode.PLATFORM, JiraExecutors.defaultMode());
+		} finally {
+			if (old == null) System.clearProperty(JiraExecutors.MODE_PROPERTY);
+			else System.setProperty(JiraExecutors.MODE_PROPERTY, old);
+		}
+	}
+
+	/** a JIRA stand-in answering every request with {@code {}} after a few milliseconds. */
+	private static HttpServer slowServer() throws Exception {
+		//headers and body are separate writes: without this, Nagle and delayed ACKs add ~40 ms per call
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			try {
+				Thread.sleep(2);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			byte[] body = "{}".getBytes("UTF-8");
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		});
+		server.setExecutor(Executors.newFixedThreadPool(8, Jira.daemonThreads("stub")));
+		server.start();
+		return server;
+	}
+
+	@Test(description="a fan-out over 2,000 keys in virtual mode keeps at most the parallelism in progress and completes through the governor")
+	public void testFanOutThroughGovernor() throws Exception {
+		HttpServer server = slowServer();
+		HttpTransport transport = new HttpTransport("Basic x", 8, 8);
+		RequestGovernor governor = new RequestGovernor();
+		governor.setMaxConcurrency(4);
+		transport.setGovernor(governor);
+		ListeningExecutorService virtual = MoreExecutors.listeningDecorator(JiraExecutors.newExecutor(Mode.VIRTUAL, "test", 0));
+		try {
+			String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/rest/api/2/issue/";
+			List<String> keys = new ArrayList<String>();
+			for (int i = 1; i <= 2000; i++) keys.add("TEST-" + i);
+			AtomicInteger running = new AtomicInteger();
+			AtomicInteger maxRunning = new AtomicInteger();
+			List<ListenableFuture<HttpTransport.Response>> responses = JiraExecutors.fanOut(virtual, keys, 16, key -> () -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					return transport.execute(new HttpGet(url + key));
+				} finally {
+					running.decrementAndGet();
+				}
+			});
+			AssertJUnit.assertEquals(keys.size(), responses.size());
+			for (Future<HttpTransport.Response> f : responses) {
+				AssertJUnit.assertEquals(200, f.get(60, TimeUnit.SECONDS).getStatus());
+			}
+			AssertJUnit.assertTrue("max running: " + maxRunning, maxRunning.get() <= 16);
+			AssertJUnit.assertEquals(0, governor.getInFlight());
+		} finally {
+			virtual.shutdownNow();
+			transport.close();
+			server.stop(0);
+		}
+	}
+
+	@Test(description="a failed submission cancels the tasks already submitted")
+	public void testFanOutFailedSubmission() throws Exception {
+		ListeningExecutorService virtual = MoreExecutors.listeningDecorator(JiraExecutors.newExecutor(Mode.VIRTUAL, "test", 0));
+		CountDownLatch started = new CountDownLatch(2);
+		CountDownLatch interrupted = new CountDownLatch(2);
+		try {
+			JiraExecutors.fanOut(virtual, Arrays.asList(1, 2, 3), 3, i -> {
+				if (i == 3) {
+					Uninterruptibles.awaitUninterruptibly(started);
+					throw new IllegalStateException("no task for " + i);
+				}
+				return () -> {
+					started.countDown();
+					try {
+						Thread.sleep(60000);
+					} catch (InterruptedException e) {
+						interrupted.countDown();
+					}
+					return i;
+				};
+			});
+			AssertJUnit.fail("expected the failure to be passed on");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+		try {
+			AssertJUnit.assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+		} finally {
+			virtual.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.vish.jiralib;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+
+import javax.management.ObjectName;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.vish.jiralib.JiraMetrics.Operation;
+
+public class JiraMetricsTest {
+
+	@Test(description="latencies land in power-of-two microsecond buckets")
+	public void testBuckets() throws Exception {
+		AssertJUnit.assertEquals(0, OperationMetrics.bucket(999));
+		AssertJUnit.assertEquals(1, OperationMetrics.bucket(1000));
+		AssertJUnit.assertEquals(11, OperationMetrics.bucket(1500000));
+		AssertJUnit.assertEquals(OperationMetrics.BUCKETS - 1, OperationMetrics.bucket(Long.MAX_VALUE));
+	}
+
+	@Test(description="calls, errors by status and percentiles add up under concurrent recording")
+	public void testConcurrentRecording() throws Exception {
+		final OperationMetrics m = new OperationMetrics("op");
+		final CountDownLatch go = new CountDownLatch(1);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						go.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < 1000; i++) {
+						//99% at 1 ms, 1% at 100 ms and failing with 503
+						if (i % 100 == 0) m.record(100000000L, 503);
+						else m.record(1000000L, 0);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		go.countDown();
+		for (Thread t : threads) t.join();
+
+		OperationMetrics.Snapshot s = m.snapshot();
+		AssertJUnit.assertEquals(4000, s.getCalls());
+		AssertJUnit.assertEquals(40, s.getErrors());
+		AssertJUnit.assertEquals(Long.valueOf(40), s.getErrorsByStatus().get(503));
+		AssertJUnit.assertEquals(100.0, s.getMaxMillis(), 0.001);
+		//1 ms is in the bucket below 1.024 ms
+		AssertJUnit.assertEquals(1.024, s.getPercentileMillis(0.5), 0.001);
+		AssertJUnit.assertEquals(100.0, s.getPercentileMillis(0.995), 0.001);
+		m.reset();
+		AssertJUnit.assertEquals(0, m.getCalls());
+		AssertJUnit.assertTrue(m.getErrorsByStatus().isEmpty());
+	}
+
+	@Test(description="every operation is published and removed again over JMX")
+	public void testRegisterMBeans() throws Exception {
+		JiraMetrics metrics = new JiraMetrics();
+		metrics.failed(Operation.CREATE_ISSUE, JiraMetrics.start(), new Exception("no response"));
+		metrics.registerMBeans("test");
+		ObjectName name = new ObjectName(JiraMetrics.JMX_DOMAIN + ":type=Jira,name=\"test\",operation=createIssue");
+		try {
+			AssertJUnit.assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Errors"));
+			AssertJUnit.assertEquals(Long.valueOf(1), metrics.snapshot().get("createIssue").getErrorsByStatus().get(OperationMetrics.NO_STATUS));
+		} finally {
+			metrics.unregisterMBeans();
+		}
+		AssertJUnit.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+	}
+}
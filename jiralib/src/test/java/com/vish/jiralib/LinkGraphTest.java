@@ -0,0 +1,52 @@
+package com.vish.jiralib;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+public class LinkGraphTest {
+
+	@Test(description="links seen from both ends are kept once; adjacency follows the outward direction")
+	public void testAdjacency() throws Exception {
+		LinkGraph g = new LinkGraph();
+		AssertJUnit.assertTrue(g.add("TEST-1", 0));
+		AssertJUnit.assertFalse(g.add("TEST-1", 0));
+		g.add("TEST-2", 1);
+		g.add("TEST-3", 1);
+		g.link("TEST-1", "TEST-2", "Blocks");
+		//the same link, read from TEST-2
+		g.link("TEST-1", "TEST-2", "Blocks");
+		g.link("TEST-1", "TEST-2", "Duplicate");
+		g.link("TEST-3", "TEST-1", "Blocks");
+
+		AssertJUnit.assertEquals(3, g.getLinkCount());
+		AssertJUnit.assertEquals(Arrays.asList("TEST-2", "TEST-2"), g.getOutward("TEST-1"));
+		AssertJUnit.assertEquals(Arrays.asList("TEST-3"), g.getInward("TEST-1"));
+		AssertJUnit.assertEquals(Arrays.asList("TEST-1", "TEST-1"), g.getInward("TEST-2"));
+		AssertJUnit.assertEquals(Arrays.asList("Blocks", "Duplicate"), g.getLinkTypes("TEST-1", "TEST-2"));
+		AssertJUnit.assertTrue(g.getLinkTypes("TEST-2", "TEST-1").isEmpty());
+		AssertJUnit.assertEquals(1, g.getDepth("TEST-3"));
+		AssertJUnit.assertEquals(-1, g.getDepth("TEST-4"));
+
+		//adding after a query rebuilds the adjacency
+		g.add("TEST-4", 2);
+		g.link("TEST-2", "TEST-4", "Blocks");
+		AssertJUnit.assertEquals(Arrays.asList("TEST-4"), g.getOutward("TEST-2"));
+	}
+
+	@Test(description="clusters are connected groups of two or more issues, largest first")
+	public void testClusters() throws Exception {
+		LinkGraph g = new LinkGraph();
+		for (int i = 1; i <= 7; i++) g.add("TEST-" + i, 0);
+		g.link("TEST-5", "TEST-6", "Duplicate");
+		g.link("TEST-1", "TEST-2", "Duplicate");
+		g.link("TEST-3", "TEST-2", "Duplicate");
+		g.link("TEST-3", "TEST-1", "Duplicate");
+		List<List<String>> clusters = g.getClusters();
+		AssertJUnit.assertEquals(2, clusters.size());
+		AssertJUnit.assertEquals(Arrays.asList("TEST-1", "TEST-2", "TEST-3"), clusters.get(0));
+		AssertJUnit.assertEquals(Arrays.asList("TEST-5", "TEST-6"), clusters.get(1));
+	}
+}
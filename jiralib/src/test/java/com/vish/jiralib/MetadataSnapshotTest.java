@@ -0,0 +1,80 @@
+package com.vish.jiralib;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.atlassian.jira.rest.client.api.domain.BasicComponent;
+import com.atlassian.jira.rest.client.api.domain.IssueType;
+
+public class MetadataSnapshotTest {
+
+	private static MetadataSnapshot snapshot() {
+		MetadataSnapshot retVal = new MetadataSnapshot("TEST");
+		retVal.issueTypes = new ArrayList<IssueType>(Arrays.asList(
+				new IssueType(URI.create("http://localhost/rest/api/2/issuetype/1"), 1L, "Bug", false, null, null),
+				new IssueType(URI.create("http://localhost/rest/api/2/issuetype/5"), 5L, "Sub-task", true, null, null)));
+		retVal.components = new ArrayList<BasicComponent>(Arrays.asList(
+				new BasicComponent(URI.create("http://localhost/rest/api/2/component/10000"), 10000L, "Core", null)));
+		retVal.issueLinkTypes = new ArrayList<String>(Arrays.asList("Blocks", "Duplicate"));
+		return retVal;
+	}
+
+	@Test(description="a snapshot reads back as written; stale ones and those of other projects are ignored")
+	public void testRoundTrip() throws Exception {
+		File dir = Files.createTempDirectory("snapshot").toFile();
+		File file = new File(dir, "TEST.metadata");
+		try {
+			snapshot().write(file);
+			snapshot().write(file);
+			AssertJUnit.assertEquals("no temporary file is left", Arrays.asList("TEST.metadata"), Arrays.asList(dir.list()));
+
+			MetadataSnapshot read = MetadataSnapshot.read(file, "test", 60000);
+			AssertJUnit.assertEquals(2, read.issueTypes.size());
+			AssertJUnit.assertEquals("Sub-task", read.issueTypes.get(1).getName());
+			AssertJUnit.assertEquals(Long.valueOf(5), read.issueTypes.get(1).getId());
+			AssertJUnit.assertTrue(read.issueTypes.get(1).isSubtask());
+			AssertJUnit.assertEquals("Core", read.components.get(0).getName());
+			AssertJUnit.assertEquals(URI.create("http://localhost/rest/api/2/component/10000"), read.components.get(0).getSelf());
+			AssertJUnit.assertEquals(Arrays.asList("Blocks", "Duplicate"), read.issueLinkTypes);
+
+			AssertJUnit.assertNull("stale", MetadataSnapshot.read(file, "TEST", -1));
+			AssertJUnit.assertNull("other project", MetadataSnapshot.read(file, "OTHER", 60000));
+
+			MetadataSnapshot linkTypesOnly = new MetadataSnapshot("TEST");
+			linkTypesOnly.issueLinkTypes = Arrays.asList("Relates");
+			linkTypesOnly.write(file);
+			read = MetadataSnapshot.read(file, "TEST", 60000);
+			AssertJUnit.assertNull("sections never loaded are absent", read.issueTypes);
+			AssertJUnit.assertEquals(Arrays.asList("Relates"), read.issueLinkTypes);
+		} finally {
+			file.delete();
+			dir.delete();
+		}
+	}
+
+	@Test(description="a session given a fresh snapshot serves the metadata without any REST call")
+	public void testSessionUsesSnapshot() throws Exception {
+		File file = File.createTempFile("snapshot", ".metadata");
+		//no REST client: any metadata call would fail
+		Jira jira = new Jira("http://localhost", null, Jira.basicCredentials("user", "password"), null, "TEST", false);
+		try {
+			snapshot().write(file);
+			AssertJUnit.assertFalse(jira.isProjectMetadataLoaded());
+			jira.setMetadataSnapshot(file, 60000);
+			AssertJUnit.assertTrue(jira.isProjectMetadataLoaded());
+			AssertJUnit.assertEquals(2, jira.getIssueTypes().size());
+			AssertJUnit.assertEquals(Long.valueOf(1), jira.getIssueTypeByName("bug").getId());
+			AssertJUnit.assertEquals("Core", jira.getComponentByName("CORE").getName());
+			AssertJUnit.assertEquals(Arrays.asList("Blocks", "Duplicate"), jira.getIssueLinkTypes());
+		} finally {
+			jira.close();
+			file.delete();
+		}
+	}
+}
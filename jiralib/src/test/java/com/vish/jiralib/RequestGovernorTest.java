@@ -0,0 +1,148 @@
+package com.vish.jiralib;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class RequestGovernorTest {
+
+	private static RequestGovernor fastGovernor() {
+		RequestGovernor g = new RequestGovernor();
+		g.setBaseBackoffMillis(1);
+		g.setMaxBackoffMillis(5);
+		return g;
+	}
+
+	@Test(description="429 is retried for any call, 5xx and I/O errors only for idempotent ones")
+	public void testRetryClassification() throws Exception {
+		RequestGovernor g = fastGovernor();
+		AssertJUnit.assertTrue(g.retryDelay(429, null, false, 0, -1) >= 0);
+		AssertJUnit.assertEquals(-1, g.retryDelay(503, null, false, 0, -1));
+		AssertJUnit.assertTrue(g.retryDelay(503, null, true, 0, -1) >= 0);
+		AssertJUnit.assertTrue(g.retryDelay(OperationMetrics.NO_STATUS, new IOException("reset"), true, 0, -1) >= 0);
+		AssertJUnit.assertEquals(-1, g.retryDelay(OperationMetrics.NO_STATUS, new IllegalStateException(), true, 0, -1));
+		AssertJUnit.assertEquals(-1, g.retryDelay(400, null, true, 0, -1));
+		AssertJUnit.assertEquals(-1, g.retryDelay(429, null, true, g.getMaxRetries(), -1));
+		AssertJUnit.assertEquals("Retry-After is capped at the max backoff", 5, g.retryDelay(429, null, true, 0, 60000));
+		AssertJUnit.assertEquals(2000, RequestGovernor.parseRetryAfter(" 2 "));
+		AssertJUnit.assertEquals(-1, RequestGovernor.parseRetryAfter("soon"));
+	}
+
+	@Test(description="throttling halves the concurrency limit, successes grow it back by one per round")
+	public void testAdaptiveConcurrency() throws Exception {
+		RequestGovernor g = new RequestGovernor();
+		g.setMaxConcurrency(8);
+		g.throttled();
+		AssertJUnit.assertEquals(4, g.getConcurrencyLimit());
+		g.throttled();
+		AssertJUnit.assertEquals("a burst of 429s counts once", 4, g.getConcurrencyLimit());
+		for (int i = 0; i < 4; i++) g.succeeded();
+		AssertJUnit.assertEquals(5, g.getConcurrencyLimit());
+	}
+
+	@Test(description="an idempotent call failing with I/O errors is retried until it succeeds")
+	public void testCallRetries() throws Exception {
+		RequestGovernor g = fastGovernor();
+		final AtomicInteger attempts = new AtomicInteger();
+		String result = g.call(true, new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				if (attempts.incrementAndGet() < 3) throw new IOException("connection reset");
+				return "ok";
+			}
+		});
+		AssertJUnit.assertEquals("ok", result);
+		AssertJUnit.assertEquals(2, g.getRetryCount());
+		AssertJUnit.assertEquals(0, g.getInFlight());
+	}
+
+	@Test(description="async calls over the concurrency limit are queued and sent as slots free up")
+	public void testCallAsyncQueues() throws Exception {
+		RequestGovernor g = fastGovernor();
+		g.setMaxConcurrency(1);
+		final List<SettableFuture<String>> sent = new ArrayList<SettableFuture<String>>();
+		List<CompletableFuture<String>> results = new ArrayList<CompletableFuture<String>>();
+		for (int i = 0; i < 3; i++) {
+			results.add(g.callAsync(true, () -> {
+				SettableFuture<String> f = SettableFuture.create();
+				sent.add(f);
+				return f;
+			}));
+		}
+		AssertJUnit.assertEquals("one in flight, two queued", 1, sent.size());
+		AssertJUnit.assertEquals(1, g.getInFlight());
+		sent.get(0).set("a");
+		AssertJUnit.assertEquals("a", results.get(0).get());
+		AssertJUnit.assertEquals(2, sent.size());
+		sent.get(1).set("b");
+		sent.get(2).set("c");
+		AssertJUnit.assertEquals("c", results.get(2).get());
+		AssertJUnit.assertEquals(0, g.getInFlight());
+	}
+
+	@Test(description="a failed idempotent async call is resent after a backoff")
+	public void testCallAsyncRetries() throws Exception {
+		RequestGovernor g = fastGovernor();
+		final AtomicInteger attempts = new AtomicInteger();
+		CompletableFuture<String> result = g.callAsync(true, () -> {
+			SettableFuture<String> f = SettableFuture.create();
+			if (attempts.incrementAndGet() < 3) f.setException(new IOException("connection reset"));
+			else f.set("ok");
+			return f;
+		});
+		AssertJUnit.assertEquals("ok", result.get(5, TimeUnit.SECONDS));
+		AssertJUnit.assertEquals(3, attempts.get());
+		AssertJUnit.assertEquals(0, g.getInFlight());
+
+		CompletableFuture<String> rejected = g.callAsync(false, () -> {
+			SettableFuture<String> f = SettableFuture.create();
+			f.setException(new IOException("connection reset"));
+			return f;
+		});
+		AssertJUnit.assertTrue(rejected.isCompletedExceptionally());
+	}
+
+	@Test(description="the transport retries a throttled POST after Retry-After and returns the final response")
+	public void testTransportHonoursRetryAfter() throws Exception {
+		final AtomicInteger requests = new AtomicInteger();
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] body = "{}".getBytes("UTF-8");
+				if (requests.incrementAndGet() == 1) exchange.getResponseHeaders().set("Retry-After", "0");
+				exchange.sendResponseHeaders(requests.get() == 1 ? 429 : 201, body.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+		server.start();
+		HttpTransport transport = new HttpTransport("Basic x", 2, 2);
+		RequestGovernor g = fastGovernor();
+		transport.setGovernor(g);
+		try {
+			HttpTransport.Response response = transport.postJson("http://127.0.0.1:" + server.getAddress().getPort() + "/bulk", "{}");
+			AssertJUnit.assertEquals(201, response.getStatus());
+			AssertJUnit.assertEquals(2, requests.get());
+			AssertJUnit.assertEquals(1, g.getThrottledCount());
+		} finally {
+			transport.close();
+			server.stop(0);
+		}
+	}
+}
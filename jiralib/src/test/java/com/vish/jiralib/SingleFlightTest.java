@@ -0,0 +1,67 @@
+package com.vish.jiralib;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.vish.jiralib.JiraExecutors.Mode;
+
+public class SingleFlightTest {
+
+	@Test(description="concurrent callers for one key share a single load; a later call loads again")
+	public void testShared() throws Exception {
+		final SingleFlight<String, String> flight = new SingleFlight<String, String>();
+		final AtomicInteger loads = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = JiraExecutors.newExecutor(Mode.VIRTUAL, "test", 0);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(() -> flight.call("TEST-1", () -> {
+					loads.incrementAndGet();
+					release.await();
+					return "issue";
+				})));
+			}
+			while (flight.getLoadCount() + flight.getJoinedCount() < 8) Thread.sleep(1);
+			release.countDown();
+			for (Future<String> f : results) AssertJUnit.assertEquals("issue", f.get(5, TimeUnit.SECONDS));
+			AssertJUnit.assertEquals(1, loads.get());
+			AssertJUnit.assertEquals(7, flight.getJoinedCount());
+			AssertJUnit.assertEquals(0, flight.size());
+			flight.call("TEST-1", () -> "again");
+			AssertJUnit.assertEquals(2, flight.getLoadCount());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(description="a failed load fails every caller that joined it")
+	public void testFailureShared() throws Exception {
+		SingleFlight<String, String> flight = new SingleFlight<String, String>();
+		CompletableFuture<String> loading = new CompletableFuture<String>();
+		CompletableFuture<String> first = flight.callAsync("TEST-1", () -> loading);
+		CompletableFuture<String> second = flight.callAsync("TEST-1", () -> CompletableFuture.completedFuture("unused"));
+		second.cancel(true);
+		CompletableFuture<String> third = flight.callAsync("TEST-1", () -> CompletableFuture.completedFuture("unused"));
+		loading.completeExceptionally(new IOException("reset"));
+		AssertJUnit.assertTrue(first.isCompletedExceptionally());
+		AssertJUnit.assertTrue("cancelling one view leaves the others", third.isCompletedExceptionally() && !third.isCancelled());
+		try {
+			flight.call("TEST-2", () -> { throw new IOException("reset"); });
+			AssertJUnit.fail("expected the load's exception");
+		} catch (IOException e) {
+			AssertJUnit.assertEquals("reset", e.getMessage());
+		}
+		AssertJUnit.assertEquals(0, flight.size());
+	}
+}
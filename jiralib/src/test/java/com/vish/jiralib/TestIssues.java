@@ -0,0 +1,32 @@
+package com.vish.jiralib;
+
+import java.net.URI;
+
+import com.atlassian.jira.rest.client.api.domain.Issue;
+
+/**
+ * issues built without a server, for tests that only need keys and IDs.
+ * @author vish
+ *
+ */
+final class TestIssues {
+
+	private TestIssues() {
+	}
+
+	/**
+	 * @param key
+	 * @param id
+	 * @return an issue with {@code key}, {@code id} and a summary; all other fields empty.
+	 */
+	static Issue issue(String key, long id) {
+		return new Issue("summary of " + key, URI.create("http://localhost/rest/api/2/issue/" + id), key, id,
+				null, null, null, null, null, null, //project, issuetype, status, description, priority, resolution
+				null, null, null, //attachments, reporter, assignee
+				null, null, null, //created, updated, due
+				null, null, null, null, //affected versions, fix versions, components, time tracking
+				null, null, null, null, //fields, comments, transitions URI, issue links
+				null, null, null, null, //votes, worklogs, watchers, expandos
+				null, null, null); //subtasks, changelog, labels
+	}
+}
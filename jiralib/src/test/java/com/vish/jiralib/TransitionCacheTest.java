@@ -0,0 +1,49 @@
+package com.vish.jiralib;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import com.atlassian.jira.rest.client.api.domain.Transition;
+
+public class TransitionCacheTest {
+
+	@Test(description="entries are served until the TTL passes")
+	public void testEntriesExpire() throws Exception {
+		TransitionCache cache = new TransitionCache();
+		List<Transition> transitions = new ArrayList<Transition>();
+		String key = TransitionCache.keyOf("TEST", "1", "3");
+
+		AssertJUnit.assertNull(cache.get(key));
+		cache.put(key, transitions);
+		AssertJUnit.assertSame(transitions, cache.get(key));
+		AssertJUnit.assertEquals(1, cache.getHits());
+		AssertJUnit.assertEquals(1, cache.getMisses());
+
+		cache.setTtlMillis(-1);
+		cache.put(key, transitions);
+		AssertJUnit.assertNull("expired entry was served", cache.get(key));
+		AssertJUnit.assertEquals(0, cache.size());
+	}
+
+	@Test(description="groups differing only in status do not share an entry")
+	public void testKeyIncludesStatus() throws Exception {
+		TransitionCache cache = new TransitionCache();
+		cache.put(TransitionCache.keyOf("TEST", "1", "3"), new ArrayList<Transition>());
+		AssertJUnit.assertNull(cache.get(TransitionCache.keyOf("TEST", "1", "4")));
+	}
+
+	@Test(description="destinations are kept per step and transition and dropped with the step")
+	public void testDestinations() throws Exception {
+		TransitionCache cache = new TransitionCache();
+		String key = TransitionCache.keyOf("TEST", "1", "3");
+		cache.putDestination(key, 5, "5");
+		AssertJUnit.assertEquals("5", cache.getDestination(key, 5));
+		AssertJUnit.assertNull(cache.getDestination(key, 2));
+		AssertJUnit.assertNull(cache.getDestination(TransitionCache.keyOf("TEST", "1", "4"), 5));
+		cache.invalidate(key);
+		AssertJUnit.assertNull(cache.getDestination(key, 5));
+	}
+}
@@ -0,0 +1,108 @@
+package com.vish.jiralib;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Collections;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+public class WebhookReceiverTest {
+
+	/** trimmed from a JIRA 6 {@code jira:issue_updated} delivery. */
+	private static final String ISSUE_UPDATED = "{\"timestamp\":1450000000000,\"webhookEvent\":\"jira:issue_updated\","
+			+ "\"user\":{\"name\":\"vish\"},\"issue\":{\"id\":\"10001\",\"key\":\"TEST-1\",\"fields\":{"
+			+ "\"summary\":\"login fails\",\"description\":null,\"status\":{\"name\":\"In Progress\",\"id\":\"3\"},"
+			+ "\"issuetype\":{\"name\":\"Bug\"},\"priority\":{\"name\":\"Major\"},\"resolution\":null,"
+			+ "\"assignee\":{\"name\":\"vish\"},\"reporter\":{\"name\":\"qa\"},"
+			+ "\"components\":[{\"name\":\"Core\"},{\"name\":\"UI\"}],\"project\":{\"key\":\"TEST\"}}},"
+			+ "\"changelog\":{\"items\":[{\"field\":\"status\",\"fromString\":\"Open\",\"toString\":\"In Progress\"}]}}";
+	/** comment events carry the issue without its fields. */
+	private static final String COMMENT_CREATED = "{\"webhookEvent\":\"comment_created\",\"comment\":{\"id\":\"10500\",\"body\":\"seen\"},"
+			+ "\"issue\":{\"id\":\"10001\",\"key\":\"TEST-1\",\"self\":\"http://localhost/rest/api/2/issue/10001\"}}";
+	private static final String ISSUE_DELETED = "{\"webhookEvent\":\"jira:issue_deleted\",\"issue\":{\"id\":\"10002\",\"key\":\"TEST-2\",\"fields\":{}}}";
+	private static final String LINK_CREATED = "{\"webhookEvent\":\"issuelink_created\",\"issueLink\":{\"id\":10200,"
+			+ "\"sourceIssueId\":10003,\"destinationIssueId\":10004,\"issueLinkType\":{\"name\":\"Duplicate\"}}}";
+	private static final String PROJECT_UPDATED = "{\"webhookEvent\":\"project_updated\",\"project\":{\"key\":\"TEST\"}}";
+
+	private static int post(WebhookReceiver receiver, String query, String payload) throws Exception {
+		URL url = new URL("http://127.0.0.1:" + receiver.getPort() + WebhookReceiver.DEFAULT_PATH + query);
+		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		conn.setRequestMethod("POST");
+		conn.setDoOutput(true);
+		conn.setRequestProperty("Content-Type", "application/json");
+		OutputStream out = conn.getOutputStream();
+		out.write(payload.getBytes("UTF-8"));
+		out.close();
+		int status = conn.getResponseCode();
+		conn.disconnect();
+		return status;
+	}
+
+	@Test(description="posted payloads invalidate cached issues and patch mirrors; requests without the secret are refused")
+	public void testPostedPayloads() throws Exception {
+		IssueCache cache = new IssueCache();
+		TransitionCache transitions = new TransitionCache();
+		cache.put("TEST-1", TestIssues.issue("TEST-1", 10001), cache.generation());
+		cache.put("TEST-3", TestIssues.issue("TEST-3", 10003), cache.generation());
+		transitions.put("TEST/1/1", Collections.emptyList());
+		File file = File.createTempFile("mirror", ".bin");
+		file.delete();
+		IssueMirror mirror = new IssueMirror(null, "TEST", file);
+		mirror.put(IssueProjection.of("TEST-2", IssueMirror.FIELDS, new String[IssueMirror.FIELDS.length]));
+
+		WebhookReceiver receiver = new WebhookReceiver(cache, transitions, () -> Collections.<Jira>emptyList());
+		receiver.setSecret("s3cret");
+		receiver.addMirror(mirror);
+		receiver.start(new InetSocketAddress("127.0.0.1", 0), WebhookReceiver.DEFAULT_PATH);
+		try {
+			AssertJUnit.assertEquals(403, post(receiver, "", ISSUE_UPDATED));
+			AssertJUnit.assertNotNull("refused events change nothing", cache.get("TEST-1"));
+
+			long generation = cache.generation();
+			AssertJUnit.assertEquals(204, post(receiver, "?secret=s3cret", ISSUE_UPDATED));
+			AssertJUnit.assertNull(cache.get("TEST-1"));
+			AssertJUnit.assertTrue(cache.generation() > generation);
+			IssueProjection patched = mirror.get("TEST-1");
+			AssertJUnit.assertEquals("In Progress", patched.get(IssueProjection.STATUS));
+			AssertJUnit.assertEquals("Core,UI", patched.get(IssueProjection.COMPONENTS));
+			AssertJUnit.assertNull(patched.get(IssueProjection.DESCRIPTION));
+			AssertJUnit.assertNull(patched.get(IssueProjection.RESOLUTION));
+
+			cache.put("TEST-1", TestIssues.issue("TEST-1", 10001), cache.generation());
+			AssertJUnit.assertEquals(204, post(receiver, "?secret=s3cret", COMMENT_CREATED));
+			AssertJUnit.assertNull("comments invalidate the issue", cache.get("TEST-1"));
+			AssertJUnit.assertEquals("but leave mirrored fields alone", "In Progress", mirror.get("TEST-1").get(IssueProjection.STATUS));
+
+			AssertJUnit.assertEquals(204, post(receiver, "?secret=s3cret", ISSUE_DELETED));
+			AssertJUnit.assertNull(mirror.get("TEST-2"));
+			AssertJUnit.assertEquals(1, mirror.size());
+
+			AssertJUnit.assertNotNull(cache.get("TEST-3"));
+			AssertJUnit.assertEquals(204, post(receiver, "?secret=s3cret", LINK_CREATED));
+			AssertJUnit.assertNull("link events invalidate by issue ID", cache.get("TEST-3"));
+
+			AssertJUnit.assertEquals(204, post(receiver, "?secret=s3cret", PROJECT_UPDATED));
+			AssertJUnit.assertNull(transitions.get("TEST/1/1"));
+
+			AssertJUnit.assertEquals(400, post(receiver, "?secret=s3cret", "not json"));
+			AssertJUnit.assertEquals(7, receiver.getReceivedCount());
+			AssertJUnit.assertEquals(5, receiver.getAppliedCount());
+			AssertJUnit.assertEquals(2, receiver.getRejectedCount());
+		} finally {
+			receiver.close();
+			file.delete();
+		}
+	}
+
+	@Test(description="events without an issue, link or project change are ignored")
+	public void testIgnored() throws Exception {
+		WebhookReceiver receiver = new WebhookReceiver(new IssueCache(), new TransitionCache(), () -> Collections.<Jira>emptyList());
+		AssertJUnit.assertFalse(receiver.apply("{\"webhookEvent\":\"user_created\",\"user\":{\"name\":\"x\"}}"));
+		AssertJUnit.assertFalse(receiver.apply("{\"timestamp\":1}"));
+		AssertJUnit.assertEquals(0, receiver.getAppliedCount());
+	}
+}